@@ -31,6 +31,8 @@ import no.met.jtimeseries.data.item.NumberValueItem;
 import no.met.jtimeseries.data.model.GenericDataModel;
 import no.met.jtimeseries.marinogram.MarinogramPlot;
 import no.met.jtimeseries.marinogram.MarinogramWrapper;
+import no.met.jtimeseries.metrics.RequestMetrics;
+import no.met.jtimeseries.metrics.RequestMetrics.Stage;
 import no.met.jtimeseries.parser.ForecastParser;
 import no.met.jtimeseries.parser.LocationForecastAddressFactory;
 import no.met.jtimeseries.parser.LocationForecastJsonParseScheme;
@@ -41,9 +43,6 @@ import no.met.phenomenen.SymbolPhenomenon;
 import no.met.phenomenen.filter.*;
 import no.met.phenomenen.weatherapi.PhenomenonName;
 import org.apache.commons.lang.time.DateUtils;
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.io.SAXReader;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.axis.NumberTickUnit;
@@ -81,6 +80,9 @@ public class MeteogramWrapper {
 
     private Locale locale;
 
+    // expiry of the forecast the last chart was created from
+    private Date dataExpires;
+
     public MeteogramWrapper(String language) {
 
         locale = new Locale(language);
@@ -99,16 +101,13 @@ public class MeteogramWrapper {
         return forecastParser.populateModelWithData();
     }
 
-    public static GenericDataModel getModel(Reader xmlReader) throws ParseException, IOException, DocumentException {
+    public static GenericDataModel getModel(Reader xmlReader) throws ParseException, IOException {
 
         GenericDataModel model = new GenericDataModel();
         LocationForecastParseScheme locationForecastParser = new LocationForecastParseScheme();
         locationForecastParser.setModel(model);
 
-        SAXReader saxReader = new SAXReader();
-        Document document = saxReader.read(xmlReader);
-
-        locationForecastParser.parse(document);
+        locationForecastParser.parse(xmlReader);
 
         return model;
     }
@@ -117,6 +116,15 @@ public class MeteogramWrapper {
         return getModel(LocationForecastAddressFactory.getURL(location).toString(), timePeriod);
     }
 
+    /**
+     * @return The time the forecast behind the last created chart expires, or
+     *         null if that chart was not created from downloaded data (for
+     *         instance an error chart).
+     */
+    public Date getDataExpires() {
+        return dataExpires;
+    }
+
     public JFreeChart createMeteogram(ChartPlottingInfo cpi, int numHours) {
 
         // if all paramerter are false then do not parse just create a plot
@@ -142,16 +150,11 @@ public class MeteogramWrapper {
      * @return
      */
     private static Date adapt(Date date, int snapTo) {
-        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        cal.setTime(date);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
+        long hour = Utility.truncateToHourUTC(date.getTime());
+        // the hour of the morning or afternoon, as Calendar.HOUR
+        int offset = (snapTo - (Utility.getHourOfDayUTC(hour) % 12 % snapTo));
 
-        int offset = (snapTo - (cal.get(Calendar.HOUR) % snapTo));
-        cal.add(Calendar.HOUR, offset);
-
-        return cal.getTime();
+        return new Date(Utility.addHours(hour, offset));
     }
 
     public JFreeChart createShortTermMeteogram(ChartPlottingInfo cpi, int numHours) {
@@ -164,10 +167,13 @@ public class MeteogramWrapper {
 
         TimePeriod periodToUse = timePeriod.adapt(snapTo);
 
+        dataExpires = null;
         try {
             GenericDataModel model = getModel(new Location(cpi.getLongitude(), cpi.getLatitude()), periodToUse);
 
-            return createShortTermMeteogram(model, periodToUse, cpi);
+            JFreeChart chart = createShortTermMeteogram(model, periodToUse, cpi);
+            dataExpires = model.getExpires();
+            return chart;
         } catch (Exception exception) {
             LogUtils.logException(logger, exception.getMessage(), exception);
             return Utility.createErrorChart(cpi.getWidth());
@@ -181,6 +187,8 @@ public class MeteogramWrapper {
      */
     public JFreeChart createShortTermMeteogram(GenericDataModel model, TimePeriod timePeriod, ChartPlottingInfo cpi) {
 
+        RequestMetrics metrics = RequestMetrics.getInstance();
+        long start = System.nanoTime();
         JFreeChart jchart = null;
 
         ChartPlotter plotter = new ChartPlotter(language);
@@ -284,7 +292,9 @@ public class MeteogramWrapper {
         plotDomainRangeAndMarkers(model, plotter, cpi, 1, timePeriod);
 
         // create the chart
+        start = metrics.record(Stage.MODEL, start);
         jchart = plotter.createOverlaidChart("");
+        metrics.record(Stage.PLOT, start);
         return jchart;
 
     }
@@ -303,9 +313,12 @@ public class MeteogramWrapper {
         periodToUse = new TimePeriod(periodToUse.getStart(),
                 Utility.getDateWithAddedHours(periodToUse.getEnd(), snapTo * -2));
 
+        dataExpires = null;
         try {
             GenericDataModel model = getModel(new Location(cpi.getLongitude(), cpi.getLatitude()), periodToUse);
-            return createLongTermMeteogram(model, periodToUse, cpi);
+            JFreeChart chart = createLongTermMeteogram(model, periodToUse, cpi);
+            dataExpires = model.getExpires();
+            return chart;
         } catch (Exception exception) {
             LogUtils.logException(logger, exception.getMessage(), exception);
             return Utility.createErrorChart(cpi.getWidth());
@@ -314,6 +327,8 @@ public class MeteogramWrapper {
 
     public JFreeChart createLongTermMeteogram(GenericDataModel model, TimePeriod timePeriod, ChartPlottingInfo cpi) {
 
+        RequestMetrics metrics = RequestMetrics.getInstance();
+        long start = System.nanoTime();
         ChartPlotter plotter = new ChartPlotter(language);
         // default setting
         plotter.setHeight(cpi.getHeight());
@@ -413,7 +428,10 @@ public class MeteogramWrapper {
         plotDomainRangeAndMarkers(model, plotter, cpi, 6, timePeriod);
 
         // create the chart
-        return plotter.createOverlaidChart("");
+        start = metrics.record(Stage.MODEL, start);
+        JFreeChart jchart = plotter.createOverlaidChart("");
+        metrics.record(Stage.PLOT, start);
+        return jchart;
 
     }
 
@@ -38,7 +38,12 @@ import no.met.jtimeseries.data.item.NumberValueItem;
 
 public class CardinalSpline {
 
-    private List<ControlPoint> splinePoints;
+    // number of intervals (i.e. parametric curve would be
+    // evaluted n+1 times)
+    private static final int MINIMUM_N = 1;
+    private static final int MAXIMUM_N = 4;
+
+    private SplinePoints splinePoints;
 
     public CardinalSpline(List<NumberValueItem> items) {
         this(items, 0.5);
@@ -59,49 +64,73 @@ public class CardinalSpline {
      * @param tension
      * @return
      */
-    private List<ControlPoint> generateSplinePoints(List<NumberValueItem> items, double tension) {
-        List<ControlPoint> points = new ArrayList<ControlPoint>();
-        splinePoints = new ArrayList<ControlPoint>();
+    private SplinePoints generateSplinePoints(List<NumberValueItem> items, double tension) {
+        SplinePoints points = new SplinePoints(SplinePoints.Duplicates.KEEP, items.size());
         for( NumberValueItem item : items ){
-        	points.add(new ControlPoint(item.getTimeFrom().getTime(), item.getValue()));
+        	points.add(item.getTimeFrom().getTime(), item.getValue());
         }
-        // construct spline
-        // number of intervals (i.e. parametric curve would be
-        // evaluted n+1 times)
-        int minimumN = 1;
-        int maximumN = 4;
-        // add two more points at the top and the end for drawing the curve
-        // between the first two and last two points
-        points.add(0, points.get(0));
-        points.add(points.get(points.size() - 1));
+        splinePoints = new SplinePoints(SplinePoints.Duplicates.SKIP_EQUAL_POINT, items.size() * 2);
+        addControlPoints(points, tension, splinePoints);
+        return splinePoints;
+    }
+
+    /**
+     * Evaluate the cardinal spline through the given points, and add the
+     * resulting control points to out. Whether duplicate control points are
+     * kept is decided by out.
+     *
+     * @param points
+     *            the points to spline, at least two
+     * @param tension
+     *            the tension of the spline
+     * @param out
+     *            receives the control points
+     */
+    public static void addControlPoints(SplinePoints points, double tension, SplinePoints out) {
+        int n = points.size();
+        if (n < 2) {
+            throw new IllegalArgumentException("Requires at least two points.");
+        }
+        double[] weights = new double[4];
 
-        List<ControlPoint> newPoints;
-        double smallDistance = Math.pow(
-                Math.pow(points.get(3).x
-                        - points.get(0).x, 2)
-                        + Math.pow(points.get(3).y
-                                - points.get(0).y, 2), 0.5);
+        // the first and last points are used twice, for drawing the curve
+        // between the first two and last two points
+        int paddedSize = n + 2;
+        double smallDistance = distance(points, padded(0, n), padded(3, n));
         double currentDistance;
         double currentN;
-        for (int i = 0; i < points.size() - 3; i++) {
-            currentDistance = Math
-                    .pow(Math.pow(points.get(i + 3).x
-                            - points.get(i).x, 2)
-                            + Math.pow(points.get(i + 3).y
-                                    - points.get(i).y, 2), 0.5);
-            currentN = minimumN * currentDistance / smallDistance;
-            currentN = currentN > maximumN ? maximumN : currentN;
-            newPoints = evaluateCardinal2DAtNplusOneValues(
-                    points.get(i),
-                    points.get(i + 1),
-                    points.get(i + 2),
-                    points.get(i + 3), tension, (int) currentN);
-            for (int j = 0; j < newPoints.size(); j++) {
-                if (!splinePoints.contains(newPoints.get(j)))
-                    splinePoints.add(newPoints.get(j));
+        for (int i = 0; i < paddedSize - 3; i++) {
+            int i0 = padded(i, n);
+            int i1 = padded(i + 1, n);
+            int i2 = padded(i + 2, n);
+            int i3 = padded(i + 3, n);
+            currentDistance = distance(points, i0, i3);
+            currentN = MINIMUM_N * currentDistance / smallDistance;
+            currentN = currentN > MAXIMUM_N ? MAXIMUM_N : currentN;
+
+            // evaluate at N+1 values, with uniform parameterization
+            int segments = (int) currentN;
+            float u = 0;
+            addCardinal2D(points, i0, i1, i2, i3, tension, u, weights, out);
+            float du = 1.0f / segments;
+            for (int j = 1; j < segments + 1; j++) {
+                u = j * du;
+                addCardinal2D(points, i0, i1, i2, i3, tension, u, weights, out);
             }
         }
-        return splinePoints;
+    }
+
+    /**
+     * @return the index in points of the given index in the list of points
+     *         where the first and last point is repeated
+     */
+    private static int padded(int index, int n) {
+        return Math.min(Math.max(index - 1, 0), n - 1);
+    }
+
+    private static double distance(SplinePoints points, int i, int j) {
+        return Math.pow(Math.pow(points.getX(j) - points.getX(i), 2)
+                + Math.pow(points.getY(j) - points.getY(i), 2), 0.5);
     }
 
     /**
@@ -111,7 +140,7 @@ public class CardinalSpline {
     public List<Date> cardinalSplineX() {
         List<Date> values = new ArrayList<Date>();
         for (int i = 0; i < splinePoints.size(); i++) {
-            values.add(new Date((long) splinePoints.get(i).x));
+            values.add(new Date((long) splinePoints.getX(i)));
         }
         return values;
     }
@@ -123,7 +152,7 @@ public class CardinalSpline {
     public List<Double> cardinalSplineY() {
         List<Double> values = new ArrayList<Double>();
         for (int i = 0; i < splinePoints.size(); i++) {
-            values.add(splinePoints.get(i).y);
+            values.add(splinePoints.getY(i));
         }
         return values;
     }
@@ -131,8 +160,8 @@ public class CardinalSpline {
     public List<NumberValueItem> cardinalSpline() {
     	
     	List<NumberValueItem> items = new ArrayList<NumberValueItem>();
-    	for( ControlPoint point : splinePoints ){
-    		items.add(new NumberValueItem(new Date((long)point.x), point.y));
+        for (int i = 0; i < splinePoints.size(); i++) {
+            items.add(new NumberValueItem(new Date((long) splinePoints.getX(i)), splinePoints.getY(i)));
     	}
     	return items;
     }
@@ -140,158 +169,51 @@ public class CardinalSpline {
     /**
      * P0,P1,P2,P3 are given four points. Each have x and y values. P1 and P2
      * are endpoints of curve. P0 and P3 are used to calculate the slope of the
-     * endpoints (i.e slope of P1 and P2).
+     * endpoints (i.e slope of P1 and P2). The point on the curve at u is added
+     * to out.
+     *
+     * This is the product of the row vector (u^3, u^2, u, 1), the cardinal
+     * matrix and the column vector of the four points, with the terms summed
+     * in the same order as a matrix multiplication.
      *
-     * @param p0
-     * @param p1
-     * @param p2
-     * @param p3
      * @param t
      *            The tension
      * @param u
      *            The parameter at which spline is evaluated
-     * @return A control point
+     * @param weights
+     *            work space for the weights of the four points
      */
-    private ControlPoint evaluateCardinal2D(ControlPoint p0, ControlPoint p1,
-            ControlPoint p2, ControlPoint p3, double t, double u) {
+    private static void addCardinal2D(SplinePoints points, int p0, int p1, int p2, int p3, double t, float u,
+            double[] weights, SplinePoints out) {
         double s = (1 - t) / 2.0;
-        double[][] cardinalMatrix = new double[][] { { -s, 2 - s, s - 2, s },
-                { 2 * s, s - 3, 3 - (2 * s), -s }, { -s, 0, s, 0 },
-                { 0, 1, 0, 0 } };
-        double[][] ghx = new double[][] { { p0.x }, { p1.x }, { p2.x },
-                { p3.x } };
-        double[][] ghy = new double[][] { { p0.y }, { p1.y }, { p2.y },
-                { p3.y } };
-        double[][] uMatrix = new double[][] { { Math.pow(u, 3), Math.pow(u, 2),
-                u, 1 } };
-        double newPointx = matrixMultiply(
-                matrixMultiply(uMatrix, cardinalMatrix), ghx)[0][0];
-        double newPointy = matrixMultiply(
-                matrixMultiply(uMatrix, cardinalMatrix), ghy)[0][0];
-        ControlPoint contrlPoint = new ControlPoint(newPointx, newPointy);
-        return contrlPoint;
-    }
-
-    /**
-     * Evaluate cardinal spline at N+1 values for given four points and tesion.
-     * Uniform parameterization is used. P0,P1,P2 and P3 are given four points.
-     *
-     * @param p0
-     * @param p1
-     * @param p2
-     * @param p3
-     * @param t
-     *            Tension
-     * @param n
-     *            The number of intervals (spline is evaluted at N+1 values).
-     * @return A list of control points
-     */
-    private List<ControlPoint> evaluateCardinal2DAtNplusOneValues(
-            ControlPoint p0, ControlPoint p1, ControlPoint p2, ControlPoint p3,
-            double t, int n) {
-        List<ControlPoint> cpList = new ArrayList<ControlPoint>();
-        float u = 0;
-        ControlPoint p = evaluateCardinal2D(p0, p1, p2, p3, t, u);
-        cpList.add(p);
-        float du = 1.0f / n;
-        for (int i = 1; i < n + 1; i++) {
-            u = i * du;
-            p = evaluateCardinal2D(p0, p1, p2, p3, t, u);
-            cpList.add(p);
-        }
-        return cpList;
-    }
-
-    /**
-     * Multiple two matrixes
-     *
-     * @param m1
-     *            The first matrix
-     * @param m2
-     *            The second matrix
-     * @return The result of matrix
-     */
-    private static double[][] matrixMultiply(double[][] m1, double[][] m2) {
-        double[][] result = null;
-        if (m1 != null && m2 != null && m1[0].length == m2.length) {
-            double sum;
-            result = new double[m1.length][m2[0].length];
-            for (int i = 0; i < m1.length; i++) {
-                for (int j = 0; j < m2[0].length; j++) {
-                    sum = 0;
-                    for (int k = 0; k < m1[0].length; k++) {
-                        sum += m1[i][k] * m2[k][j];
-                    }
-                    result[i][j] = sum;
-                }
-            }
-        }
-        return result;
+        double u3 = Math.pow(u, 3);
+        double u2 = Math.pow(u, 2);
+        // columns of the cardinal matrix
+        // { { -s, 2 - s, s - 2, s }, { 2 * s, s - 3, 3 - (2 * s), -s }, { -s, 0, s, 0 }, { 0, 1, 0, 0 } }
+        weights[0] = weight(u3, u2, u, -s, 2 * s, -s, 0);
+        weights[1] = weight(u3, u2, u, 2 - s, s - 3, 0, 1);
+        weights[2] = weight(u3, u2, u, s - 2, 3 - (2 * s), s, 0);
+        weights[3] = weight(u3, u2, u, s, -s, 0, 0);
+
+        double x = 0;
+        double y = 0;
+        x += weights[0] * points.getX(p0);
+        x += weights[1] * points.getX(p1);
+        x += weights[2] * points.getX(p2);
+        x += weights[3] * points.getX(p3);
+        y += weights[0] * points.getY(p0);
+        y += weights[1] * points.getY(p1);
+        y += weights[2] * points.getY(p2);
+        y += weights[3] * points.getY(p3);
+        out.add(x, y);
     }
 
-    /**
-     * Represents a control point. Each control point is a point on a curve. A
-     * curve consists a lot of lines which connect control points one by one
-     * from left to right in order
-     */
-    class ControlPoint {
-
-        /** The x-coordinate. */
-        public double x;
-
-        /** The y-coordinate. */
-        public double y;
-
-        /**
-         * Creates a new control point.
-         *
-         * @param x
-         *            the x-coordinate.
-         * @param y
-         *            the y-coordinate.
-         */
-        public ControlPoint(double x, double y) {
-            this.x = x;
-            this.y = y;
-        }
-
-        /**
-         * Tests this point for equality with an arbitrary object.
-         *
-         * @param obj
-         *            the object (<code>null</code> permitted.
-         *
-         * @return A boolean.
-         */
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == this) {
-                return true;
-            }
-            if (!(obj instanceof ControlPoint)) {
-                return false;
-            }
-            ControlPoint that = (ControlPoint) obj;
-            if (this.x != that.x) {
-                return false;
-            }
-            if (this.y != that.y) {
-                return false;
-            }
-            return true;
-        }
-
-        /**
-         * Implement hashcode for object when the object implements equals
-         * Hashcode will return different values for different objects
-         *
-         * @return
-         */
-        public int hashcode() {
-            int result = 17;
-            result = 31 * result + (int) Double.doubleToLongBits(x);
-            result = 31 * result + (int) Double.doubleToLongBits(y);
-            return result;
-        }
+    private static double weight(double u3, double u2, double u, double c0, double c1, double c2, double c3) {
+        double sum = 0;
+        sum += u3 * c0;
+        sum += u2 * c1;
+        sum += u * c2;
+        sum += 1 * c3;
+        return sum;
     }
 }
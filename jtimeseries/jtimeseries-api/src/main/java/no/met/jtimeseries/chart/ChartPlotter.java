@@ -925,16 +925,14 @@ public class ChartPlotter {
         int imageSize = getWeatherSymbolImageSize();
 
         for (SymbolValueItem symbol : symbols) {
-            Image image = Symbols.getSymbolImage(symbol.getName());
-            image = image.getScaledInstance(imageSize, imageSize,
-                    Image.SCALE_SMOOTH);
+            Image image = Symbols.getSymbolImage(symbol.getName(), imageSize);
             if (followPhenomenon) { // plot over the phenomenon curve
-                Double val = phenomenon.getValueByTime(symbol.getTimeFrom());
-                if (val != null) {
+                double val = phenomenon.getValueByTime(symbol.getTimeFrom().getTime());
+                if (!Double.isNaN(val)) {
                     double padding = 0.08; // space between curve and symbol in
                     // phenomenon units
                     imageannotation = new XYImageAnnotation(symbol.getTimeFrom()
-                            .getTime(), val.doubleValue()
+                            .getTime(), val
                             + padding
                             * (plot.getRangeAxis().getUpperBound() - plot
                             .getRangeAxis().getLowerBound()), image,
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.chart;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+
+import org.jfree.chart.plot.PlotRenderingInfo;
+import org.jfree.chart.renderer.xy.XYItemRendererState;
+import org.jfree.data.xy.XYDataset;
+
+/**
+ * Renderer state for renderers that translate and rotate the graphics for
+ * each item. Instead of creating a new graphics object per item, one is
+ * created for each series pass and reset to its original transform before
+ * each item is drawn.
+ */
+public class ItemGraphicsRendererState extends XYItemRendererState {
+
+    private final RenderingHints renderHints;
+    private Graphics2D graphics;
+    private AffineTransform transform;
+
+    public ItemGraphicsRendererState(PlotRenderingInfo info, RenderingHints renderHints) {
+        super(info);
+        this.renderHints = renderHints;
+    }
+
+    /**
+     * Get the graphics object to draw the next item with. Any transform set
+     * while drawing the previous item is undone, but paint and stroke are
+     * not, so the renderer must set those itself.
+     * 
+     * @param g2 the graphics object given to the renderer
+     * @return a graphics object derived from g2
+     */
+    public Graphics2D getItemGraphics(Graphics2D g2) {
+        if (graphics == null) {
+            graphics = (Graphics2D) g2.create();
+            graphics.setRenderingHints(renderHints);
+            transform = graphics.getTransform();
+        } else {
+            graphics.setTransform(transform);
+        }
+        return graphics;
+    }
+
+    @Override
+    public void endSeriesPass(XYDataset dataset, int series, int firstItem, int lastItem, int pass, int passCount) {
+        super.endSeriesPass(dataset, series, firstItem, lastItem, pass, passCount);
+        if (graphics != null) {
+            graphics.dispose();
+            graphics = null;
+        }
+    }
+}
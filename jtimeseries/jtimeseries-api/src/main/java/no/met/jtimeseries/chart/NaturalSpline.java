@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.chart;
+
+/**
+ * Natural cubic spline through a list of points. The algorithm is the one
+ * used by the JFreeChart XYSplineRenderer class.
+ */
+public class NaturalSpline {
+
+    private NaturalSpline() {
+    }
+
+    /**
+     * Interpolate a natural cubic spline through the given points.
+     * 
+     * @param nodes the points to interpolate, with at least three points and
+     *            x increasing
+     * @param precision the number of line segments between two points
+     * @param out receives the first point, followed by precision points for
+     *            each interval between two points
+     */
+    public static void interpolate(SplinePoints nodes, int precision, SplinePoints out) {
+        if (precision <= 0) {
+            throw new IllegalArgumentException("Requires precision > 0.");
+        }
+        int np = nodes.size(); // number of points
+        if (np < 3) {
+            throw new IllegalArgumentException("Requires at least three points.");
+        }
+        double[] d = new double[np]; // Newton form coefficients
+        double[] x = new double[np]; // x-coordinates of nodes
+        double[] a = new double[np];
+        double[] h = new double[np];
+
+        for (int i = 0; i < np; i++) {
+            x[i] = nodes.getX(i);
+            d[i] = nodes.getY(i);
+        }
+
+        for (int i = 1; i <= np - 1; i++) {
+            h[i] = x[i] - x[i - 1];
+        }
+        double[] sub = new double[np - 1];
+        double[] diag = new double[np - 1];
+        double[] sup = new double[np - 1];
+
+        for (int i = 1; i <= np - 2; i++) {
+            diag[i] = (h[i] + h[i + 1]) / 3;
+            sup[i] = h[i + 1] / 6;
+            sub[i] = h[i] / 6;
+            a[i] = (d[i + 1] - d[i]) / h[i + 1]
+                       - (d[i] - d[i - 1]) / h[i];
+        }
+        solveTridiag(sub, diag, sup, a, np - 2);
+
+        // note that a[0]=a[np-1]=0
+        out.add(x[0], d[0]);
+        for (int i = 1; i <= np - 1; i++) {
+            // loop over intervals between nodes
+            for (int j = 1; j <= precision; j++) {
+                double t1 = (h[i] * j) / precision;
+                double t2 = h[i] - t1;
+                double y = ((-a[i - 1] / 6 * (t2 + h[i]) * t1 + d[i - 1])
+                        * t2 + (-a[i] / 6 * (t1 + h[i]) * t2
+                        + d[i]) * t1) / h[i];
+                out.add(x[i - 1] + t1, y);
+            }
+        }
+    }
+
+    /**
+     * Solve linear system with tridiagonal n by n matrix a using Gaussian
+     * elimination *without* pivoting, where a(i,i-1) = sub[i] for 2<=i<=n,
+     * a(i,i) = diag[i] for 1<=i<=n and a(i,i+1) = sup[i] for 1<=i<=n-1 (the
+     * values sub[1], sup[n] are ignored). The right hand side vector b[1:n]
+     * is overwritten with solution. NOTE: 1...n is used in all arrays, 0 is
+     * unused
+     */
+    private static void solveTridiag(double[] sub, double[] diag, double[] sup,
+            double[] b, int n) {
+        int i;
+        for (i = 2; i <= n; i++) {
+            sub[i] = sub[i] / diag[i - 1];
+            diag[i] = diag[i] - sub[i] * sup[i - 1];
+            b[i] = b[i] - sub[i] * b[i - 1];
+        }
+        b[n] = b[n] / diag[n];
+        for (i = n - 1; i >= 1; i--) {
+            b[i] = (b[i] - sup[i] * b[i + 1]) / diag[i];
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.chart;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of points with primitive coordinates, used as input and
+ * output of the spline calculations.
+ * 
+ * The list can skip points that are equal to a point already in it. Points
+ * are normally added in order of increasing x, and then a duplicate can only
+ * be among the last points added, so the check costs O(1). If x ever
+ * decreases, the check falls back to scanning all points.
+ */
+public class SplinePoints {
+
+    /**
+     * Which points to skip when adding
+     */
+    public enum Duplicates {
+        /** add all points */
+        KEEP,
+        /** skip points with the same x as a point in the list */
+        SKIP_EQUAL_X,
+        /** skip points with the same x and y as a point in the list */
+        SKIP_EQUAL_POINT
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Duplicates duplicates;
+    private double[] x;
+    private double[] y;
+    private int size;
+    // whether x has never decreased, so that scans for duplicates can stop early
+    private boolean increasing = true;
+
+    public SplinePoints(Duplicates duplicates) {
+        this(duplicates, INITIAL_CAPACITY);
+    }
+
+    public SplinePoints(Duplicates duplicates, int capacity) {
+        this.duplicates = duplicates;
+        this.x = new double[Math.max(capacity, 1)];
+        this.y = new double[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Add a point, unless it is a duplicate of a point in the list
+     * 
+     * @return true if the point was added
+     */
+    public boolean add(double px, double py) {
+        if (duplicates != Duplicates.KEEP && contains(px, py)) {
+            return false;
+        }
+        if (size == x.length) {
+            int capacity = size + (size >> 1) + 1;
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+        }
+        if (size > 0 && !(px >= x[size - 1])) {
+            increasing = false;
+        }
+        x[size] = px;
+        y[size] = py;
+        size++;
+        return true;
+    }
+
+    private boolean contains(double px, double py) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (x[i] == px && (duplicates == Duplicates.SKIP_EQUAL_X || y[i] == py)) {
+                return true;
+            }
+            if (increasing && x[i] < px) {
+                // all earlier points have smaller x
+                return false;
+            }
+        }
+        return false;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all points, keeping the allocated buffers for reuse
+     */
+    public void clear() {
+        size = 0;
+        increasing = true;
+    }
+}
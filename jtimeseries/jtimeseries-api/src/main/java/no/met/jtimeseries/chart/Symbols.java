@@ -21,12 +21,15 @@
  *******************************************************************************/
 package no.met.jtimeseries.chart;
 
+import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import javax.imageio.ImageIO;
@@ -43,6 +46,19 @@ public class Symbols {
     private static String symbolFilePath = "/images/symbols/";
     private static String windFilePath = "/disk1/project/timeserieschart/source/jtimeseries/jtimeseries-webservices/src/main/webapp/images/wind/";
 
+    // decoded weather symbols, by symbol name
+    private static final ConcurrentMap<String, BufferedImage> symbolImages = new ConcurrentHashMap<>();
+    // scaled weather symbols, by symbol name and size. Sizes are at most the
+    // original 38 pixels, so this is bounded by the number of symbols.
+    private static final ConcurrentMap<String, BufferedImage> scaledSymbolImages = new ConcurrentHashMap<>();
+
+    // angular resolution of the rotated wind symbols, in degrees
+    public static final int WIND_IMAGE_DEGREE_STEP = 1;
+    // decoded wind symbols, by title
+    private static final ConcurrentMap<String, BufferedImage> windImages = new ConcurrentHashMap<>();
+    // rotated wind symbols, by title and direction. At most 360 / WIND_IMAGE_DEGREE_STEP per title.
+    private static final ConcurrentMap<String, BufferedImage> rotatedWindImages = new ConcurrentHashMap<>();
+
     public Symbols() {
     }
 
@@ -54,39 +70,91 @@ public class Symbols {
      * @return Symbol image.
      */
     public static Image getSymbolImage(int i) {
-        BufferedImage bufferedImage = null;
-        StringBuilder imageName = new StringBuilder();
-        imageName.append(symbolFilePath);
-        imageName.append(String.valueOf(i));
-        imageName.append(".png");
-        try {
-            InputStream in = Symbols.class.getResourceAsStream(imageName.toString());
-            bufferedImage = ImageIO.read(in);
-        } catch (IOException e) {
-            LogUtils.logException(logger, "Failed to read symbol image for i'the image i=" + i, e);
+        return getSymbolImage(String.valueOf(i));
+    }
+
+    /**
+     * Get symbol image object for the specified weather symbol. The image is
+     * decoded once and then shared, so it must not be drawn on.
+     * 
+     * @param name The name of the symbol.
+     * 
+     * @return Symbol image.
+     */
+    public static Image getSymbolImage(String name) {
+        BufferedImage bufferedImage = symbolImages.get(name);
+        if (bufferedImage == null) {
+            bufferedImage = readSymbolImage(name);
+            if (bufferedImage != null) {
+                BufferedImage existing = symbolImages.putIfAbsent(name, bufferedImage);
+                if (existing != null) {
+                    bufferedImage = existing;
+                }
+            }
         }
+        return bufferedImage;
+    }
 
+    /**
+     * Get the image for the specified weather symbol, smoothly scaled to the
+     * given size. The image is scaled once and then shared, so it must not be
+     * drawn on.
+     * 
+     * @param name The name of the symbol.
+     * @param size The width and height of the image, in pixels.
+     * 
+     * @return Symbol image.
+     */
+    public static Image getSymbolImage(String name, int size) {
+        String key = name + '@' + size;
+        BufferedImage bufferedImage = scaledSymbolImages.get(key);
+        if (bufferedImage == null) {
+            Image image = getSymbolImage(name);
+            if (image == null) {
+                return null;
+            }
+            bufferedImage = scaleImage(image, size);
+            BufferedImage existing = scaledSymbolImages.putIfAbsent(key, bufferedImage);
+            if (existing != null) {
+                bufferedImage = existing;
+            }
+        }
         return bufferedImage;
     }
 
-    public static Image getSymbolImage(String name) {
+    private static BufferedImage readSymbolImage(String name) {
         BufferedImage bufferedImage = null;
         StringBuilder imageName = new StringBuilder();
         imageName.append(symbolFilePath);
-        imageName.append(String.valueOf(name));
+        imageName.append(name);
         imageName.append(".png");
-        try {
-            InputStream in = Symbols.class.getResourceAsStream(imageName.toString());
+        try (InputStream in = Symbols.class.getResourceAsStream(imageName.toString())) {
             bufferedImage = ImageIO.read(in);
         } catch (IOException e) {
             LogUtils.logException(logger, "Failed to read symbol image for i'the image i=" + name, e);
         }
+        return bufferedImage;
+    }
 
+    /**
+     * Scale the image the same way as Image.getScaledInstance with
+     * SCALE_SMOOTH, but into a BufferedImage which is cheap to draw repeatedly.
+     */
+    private static BufferedImage scaleImage(Image image, int size) {
+        Image scaled = image.getScaledInstance(size, size, Image.SCALE_SMOOTH);
+        BufferedImage bufferedImage = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics2d = bufferedImage.createGraphics();
+        graphics2d.setComposite(AlphaComposite.Src);
+        graphics2d.drawImage(scaled, 0, 0, null);
+        graphics2d.dispose();
         return bufferedImage;
     }
 
     /**
-     * Get symbol image object for the specified wind symbol
+     * Get symbol image object for the specified wind symbol. The rotated
+     * images are created once for each direction, in steps of
+     * WIND_IMAGE_DEGREE_STEP degrees, and then shared, so they must not be
+     * drawn on.
      * 
      * @param String
      *            The name of the wind symbol.
@@ -96,17 +164,44 @@ public class Symbols {
      * @return wind image.
      */
     public static Image getWindImage(String title, double degree) {
-        BufferedImage bufferedImage = null;
-        StringBuilder imageName = new StringBuilder();
-        imageName.append(windFilePath);
-        imageName.append(title);
-        imageName.append(".png");
-        try {
-            InputStream ins = Symbols.class.getResourceAsStream(imageName.toString());
-            bufferedImage = ImageIO.read(ins);
-            bufferedImage = rotateImage(bufferedImage, degree);
-        } catch (IOException e) {
-            LogUtils.logException(logger, "Failed to read wind symbol image: " + title + ", " + degree, e);
+        int quantizedDegree = (int) Math.round(degree / WIND_IMAGE_DEGREE_STEP) * WIND_IMAGE_DEGREE_STEP;
+        quantizedDegree = ((quantizedDegree % 360) + 360) % 360;
+        String key = title + '@' + quantizedDegree;
+        BufferedImage bufferedImage = rotatedWindImages.get(key);
+        if (bufferedImage == null) {
+            BufferedImage windImage = getWindImage(title);
+            if (windImage == null) {
+                return null;
+            }
+            bufferedImage = rotateImage(windImage, quantizedDegree);
+            BufferedImage existing = rotatedWindImages.putIfAbsent(key, bufferedImage);
+            if (existing != null) {
+                bufferedImage = existing;
+            }
+        }
+        return bufferedImage;
+    }
+
+    /**
+     * Get the unrotated image of a wind symbol, decoding it only once
+     */
+    private static BufferedImage getWindImage(String title) {
+        BufferedImage bufferedImage = windImages.get(title);
+        if (bufferedImage == null) {
+            StringBuilder imageName = new StringBuilder();
+            imageName.append(windFilePath);
+            imageName.append(title);
+            imageName.append(".png");
+            try (InputStream ins = Symbols.class.getResourceAsStream(imageName.toString())) {
+                bufferedImage = ImageIO.read(ins);
+            } catch (IOException e) {
+                LogUtils.logException(logger, "Failed to read wind symbol image: " + title, e);
+                return null;
+            }
+            BufferedImage existing = windImages.putIfAbsent(title, bufferedImage);
+            if (existing != null) {
+                bufferedImage = existing;
+            }
         }
         return bufferedImage;
     }
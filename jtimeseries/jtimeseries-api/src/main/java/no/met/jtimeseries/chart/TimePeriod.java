@@ -21,9 +21,7 @@
  *******************************************************************************/
 package no.met.jtimeseries.chart;
 
-import java.util.Calendar;
 import java.util.Date;
-import java.util.TimeZone;
 
 /**
  * Helper class to define a period of time. Joda time library could be used instead.
@@ -58,20 +56,12 @@ public class TimePeriod {
      * @return The modified TimePeriod
      */
     public TimePeriod adapt(int snapTo) {
-    	Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-    	cal.setTime(getStart());
-    	cal.set(Calendar.MINUTE, 0);
-    	cal.set(Calendar.SECOND, 0);
-    	cal.set(Calendar.MILLISECOND, 0);
+    	long hour = Utility.truncateToHourUTC(getStart().getTime());
+    	// the hour of the morning or afternoon, as Calendar.HOUR
+    	int offset = (snapTo - (Utility.getHourOfDayUTC(hour) % 12 % snapTo));
 
-    	int offset = (snapTo - (cal.get(Calendar.HOUR) % snapTo));
-    	cal.add(Calendar.HOUR, offset);
-
-    	Date start = cal.getTime();
-
-    	cal.setTime(getEnd());
-    	cal.add(Calendar.HOUR, offset);
-    	Date end = cal.getTime();
+    	Date start = new Date(Utility.addHours(hour, offset));
+    	Date end = Utility.getDateWithAddedHours(getEnd(), offset);
     	
     	return new TimePeriod(start, end);
     }
@@ -100,9 +90,17 @@ public class TimePeriod {
 //            end = new Date(cal.getTimeInMillis());
 //    	}
 
+        return inside(date.getTime());
+    }
+
+    /**
+     * Returns true if the time, in milliseconds since the epoch, is between or
+     * equal to current start/end time.
+     */
+    public boolean inside(long time) {
         if (isDefined()) {
-            return ((start.getTime() <= date.getTime()) && 
-                    (date.getTime() <= end.getTime()));
+            return ((start.getTime() <= time) && 
+                    (time <= end.getTime()));
         }
         return false;
     }
@@ -25,13 +25,11 @@ import java.awt.Color;
 import java.awt.GradientPaint;
 import java.awt.Image;
 import java.awt.Paint;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
-import java.util.TimeZone;
 
 import no.met.jtimeseries.data.dataset.ArrowDataset;
 import no.met.jtimeseries.data.dataset.CloudDataset;
@@ -59,6 +57,13 @@ public class Utility {
 
     public static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
 
+    public static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+    public static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    // the fixed layout of DATE_FORMAT, with 0 where the digits go
+    private static final String DATE_TEMPLATE = "0000-00-00T00:00:00Z";
+    private static final int DATE_LENGTH = DATE_TEMPLATE.length();
+
     /**
      * Calculate the time at the threshold value
      * 
@@ -75,8 +80,6 @@ public class Utility {
      * @return The time at the threshold
      */
     public static Date timeOfThreshold(Date time1, double value1, Date time2, double value2, double value3) {
-        DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
         long date3 = 0;
         long date1 = time1.getTime();
         long date2 = time2.getTime();
@@ -101,10 +104,16 @@ public class Utility {
     }
 
     public static int getHourOfDayUTC(Date time) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTimeZone(TimeZone.getTimeZone("UTC"));
-        calendar.setTime(time);
-        return calendar.get(Calendar.HOUR_OF_DAY);
+        return getHourOfDayUTC(time.getTime());
+    }
+
+    /**
+     * @param time
+     *            milliseconds since the epoch
+     * @return the hour of the day in UTC, from 0 to 23
+     */
+    public static int getHourOfDayUTC(long time) {
+        return (int) (floorMod(time, MILLIS_PER_DAY) / MILLIS_PER_HOUR);
     }
 
     /**
@@ -115,13 +124,233 @@ public class Utility {
      * @return A new date object with the specified number of hours added to it.
      */
     public static Date getDateWithAddedHours(Date orig, int hours) {
+        return new Date(addHours(orig.getTime(), hours));
+    }
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTimeZone(TimeZone.getTimeZone("UTC"));
-        calendar.setTime(orig);
-        calendar.add(Calendar.HOUR_OF_DAY, hours);
-        return calendar.getTime();
+    /**
+     * @param time
+     *            milliseconds since the epoch
+     * @param hours
+     *            The number of hours to add, may be negative
+     * @return the time with the hours added. UTC has no daylight saving time,
+     *         so this is the same as adding hours in a UTC calendar.
+     */
+    public static long addHours(long time, int hours) {
+        return time + hours * MILLIS_PER_HOUR;
+    }
+
+    /**
+     * @param time
+     *            milliseconds since the epoch
+     * @return the start of the UTC hour the time is in
+     */
+    public static long truncateToHourUTC(long time) {
+        return time - floorMod(time, MILLIS_PER_HOUR);
+    }
+
+    /**
+     * @param time
+     *            milliseconds since the epoch
+     * @return the start of the UTC day the time is in
+     */
+    public static long truncateToDayUTC(long time) {
+        return time - floorMod(time, MILLIS_PER_DAY);
+    }
+
+    private static long floorMod(long x, long y) {
+        long mod = x % y;
+        return mod < 0 ? mod + y : mod;
+    }
+
+    /**
+     * Parse a time in the format of {@link #DATE_FORMAT}, like
+     * 2012-04-10T11:00:00Z, without creating a SimpleDateFormat.
+     * 
+     * @param text
+     *            the time to parse
+     * @return the time in milliseconds since the epoch
+     * @throws ParseException
+     *             if the text is not a time in the expected format
+     */
+    public static long parseDateUTC(CharSequence text) throws ParseException {
+        if (text == null) {
+            throw new ParseException("Unparseable date: \"null\"", 0);
+        }
+        return parseDateUTC(text, null, 0, text.length());
+    }
+
+    /**
+     * Parse a time in the format of {@link #DATE_FORMAT} from part of a
+     * character buffer, such as the one of a streaming parser.
+     * 
+     * @param text
+     *            the buffer holding the time
+     * @param offset
+     *            the index of the first character of the time
+     * @param length
+     *            the number of characters of the time
+     * @return the time in milliseconds since the epoch
+     * @throws ParseException
+     *             if the text is not a time in the expected format
+     */
+    public static long parseDateUTC(char[] text, int offset, int length) throws ParseException {
+        return parseDateUTC(null, text, offset, length);
+    }
+
+    // reads from either the sequence or the array, so that neither has to be
+    // copied into the other
+    private static long parseDateUTC(CharSequence sequence, char[] array, int offset, int length)
+            throws ParseException {
+        if (length != DATE_LENGTH || charAt(sequence, array, offset + 4) != '-'
+                || charAt(sequence, array, offset + 7) != '-' || charAt(sequence, array, offset + 10) != 'T'
+                || charAt(sequence, array, offset + 13) != ':' || charAt(sequence, array, offset + 16) != ':'
+                || charAt(sequence, array, offset + 19) != 'Z') {
+            throw unparseableDate(sequence, array, offset, length, 0);
+        }
+        int year = 0, month = 0, day = 0, hour = 0, minute = 0, second = 0;
+        for (int i = 0; i < DATE_LENGTH; i++) {
+            char c = charAt(sequence, array, offset + i);
+            if (i == 4 || i == 7 || i == 10 || i == 13 || i == 16 || i == 19) {
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw unparseableDate(sequence, array, offset, length, i);
+            }
+            int digit = c - '0';
+            if (i < 4) {
+                year = year * 10 + digit;
+            } else if (i < 7) {
+                month = month * 10 + digit;
+            } else if (i < 10) {
+                day = day * 10 + digit;
+            } else if (i < 13) {
+                hour = hour * 10 + digit;
+            } else if (i < 16) {
+                minute = minute * 10 + digit;
+            } else {
+                second = second * 10 + digit;
+            }
+        }
+        if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 59) {
+            throw unparseableDate(sequence, array, offset, length, 0);
+        }
+        long days = daysFromCivil(year, month, day);
+        return days * MILLIS_PER_DAY + hour * MILLIS_PER_HOUR + minute * 60000L + second * 1000L;
+    }
+
+    private static char charAt(CharSequence sequence, char[] array, int index) {
+        return sequence != null ? sequence.charAt(index) : array[index];
+    }
+
+    private static ParseException unparseableDate(CharSequence sequence, char[] array, int offset, int length,
+            int errorOffset) {
+        String text = sequence != null ? sequence.toString() : new String(array, offset, length);
+        return new ParseException("Unparseable date: \"" + text + "\"", errorOffset);
+    }
+
+    /**
+     * Format a time in the format of {@link #DATE_FORMAT}.
+     * 
+     * @param time
+     *            milliseconds since the epoch
+     * @return the formatted time, like 2012-04-10T11:00:00Z
+     */
+    public static String formatDateUTC(long time) {
+        char[] text = new char[DATE_LENGTH];
+        formatDateUTC(time, text, 0);
+        return new String(text);
+    }
 
+    /**
+     * Write a time in the format of {@link #DATE_FORMAT} into a character
+     * buffer. Any milliseconds are left out.
+     * 
+     * @param time
+     *            milliseconds since the epoch, from year 0 to 9999
+     * @param out
+     *            the buffer to write to
+     * @param offset
+     *            where in the buffer to start writing
+     * @return the index in the buffer after the written time
+     */
+    public static int formatDateUTC(long time, char[] out, int offset) {
+        long fields = getDateFields(time);
+        for (int i = DATE_LENGTH - 1; i >= 0; i--) {
+            char c = DATE_TEMPLATE.charAt(i);
+            if (c == '0') {
+                out[offset + i] = (char) ('0' + fields % 10);
+                fields /= 10;
+            } else {
+                out[offset + i] = c;
+            }
+        }
+        return offset + DATE_LENGTH;
+    }
+
+    /**
+     * Write a time in the format of {@link #DATE_FORMAT} as ascii into a byte
+     * buffer. Any milliseconds are left out.
+     * 
+     * @param time
+     *            milliseconds since the epoch, from year 0 to 9999
+     * @param out
+     *            the buffer to write to
+     * @param offset
+     *            where in the buffer to start writing
+     * @return the index in the buffer after the written time
+     */
+    public static int formatDateUTC(long time, byte[] out, int offset) {
+        long fields = getDateFields(time);
+        for (int i = DATE_LENGTH - 1; i >= 0; i--) {
+            char c = DATE_TEMPLATE.charAt(i);
+            if (c == '0') {
+                out[offset + i] = (byte) ('0' + fields % 10);
+                fields /= 10;
+            } else {
+                out[offset + i] = (byte) c;
+            }
+        }
+        return offset + DATE_LENGTH;
+    }
+
+    /**
+     * @return the UTC date and time as the decimal digits yyyyMMddHHmmss
+     */
+    private static long getDateFields(long time) {
+        long days = (time - floorMod(time, MILLIS_PER_DAY)) / MILLIS_PER_DAY;
+        int secondOfDay = (int) (floorMod(time, MILLIS_PER_DAY) / 1000);
+
+        // the inverse of daysFromCivil
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthFromMarch = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthFromMarch + 2) / 5 + 1;
+        int month = monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9;
+        long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            throw new IllegalArgumentException("Time outside of year 0 to 9999: " + time);
+        }
+
+        long date = (year * 100 + month) * 100 + day;
+        int clock = (secondOfDay / 3600 * 100 + secondOfDay / 60 % 60) * 100 + secondOfDay % 60;
+        return date * 1000000 + clock;
+    }
+
+    /**
+     * @return the number of days from 1970-01-01 to the given date in the
+     *         proleptic Gregorian calendar
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        // count years from March, so that the leap day is the last day of the year
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
     }
 
     /**
@@ -240,8 +469,15 @@ public class Utility {
      * @return The hour difference
      */
     public static int hourDifference(Date timeFrom, Date timeTo) {
-        double diff = (timeTo.getTime() - timeFrom.getTime()) / 1000 / 60 / 60;
-        return new Double(diff).intValue();
+        return hourDifference(timeFrom.getTime(), timeTo.getTime());
+    }
+
+    /**
+     * @return the number of whole hours from one time to another, rounded
+     *         towards zero
+     */
+    public static int hourDifference(long timeFrom, long timeTo) {
+        return (int) ((timeTo - timeFrom) / MILLIS_PER_HOUR);
     }
 
     /**
@@ -290,37 +526,36 @@ public class Utility {
      * Create a JFreeChart WindDataset from WindDirection and WindSpeed
      */
     public static WindDataset toChartWindDataset(NumberPhenomenon direction, NumberPhenomenon speed) {
-        List<Date> timeList = direction.getTime();
-        List<Double> degreeList = direction.getValue();
-        List<Double> speedList = speed.getValue();
-
-        Object[][] timeSeries = new Object[timeList.size()][];
-        for (int i = 0; i < timeList.size(); i++) {
-            timeSeries[i] = new Object[] { new Date(timeList.get(i).getTime()), new Double(degreeList.get(i)),
-                    new Double(speedList.get(i)) };
+        Object[][] timeSeries = new Object[direction.size()][];
+        for (int i = 0; i < direction.size(); i++) {
+            timeSeries[i] = new Object[] { new Date(direction.getTimeFromMillis(i)), direction.getValueAt(i),
+                    speed.getValueAt(i) };
         }
         Object[][][] dataSetArray = { timeSeries };
         return new DefaultWindDataset(dataSetArray);
     }
 
+    /**
+     * Create an ArrowDataset from a direction. If position is given, each
+     * arrow follows the position value at the time of the arrow. Arrows
+     * outside the time range of the position are placed in the middle.
+     */
     public static ArrowDataset toChartArrowDataset(NumberPhenomenon direction, NumberPhenomenon position, double offset) {
-        List<Date> timeList = direction.getTime();
-        List<Double> degreeList = direction.getValue();
-        List<Double> positionList = new ArrayList<Double>();
         if (offset < -1 || offset > 1) {
             offset = 0.1;
         }
-        for (int i = 0; i < degreeList.size(); i++) {
-            positionList.add(null);
-        }
-
-        if (position != null)
-            positionList = position.getValue();
 
-        Object[][] timeSeries = new Object[timeList.size()][];
-        for (int i = 0; i < timeList.size(); i++) {
-            timeSeries[i] = new Object[] { new Date(timeList.get(i).getTime()), new Double(degreeList.get(i)),
-                    positionList.get(i) == null ? null : new Double(positionList.get(i)), new Double(offset) };
+        Object[][] timeSeries = new Object[direction.size()][];
+        for (int i = 0; i < direction.size(); i++) {
+            long time = direction.getTimeFromMillis(i);
+            Double positionValue = null;
+            if (position != null) {
+                double value = position.getValueByTime(time);
+                if (!Double.isNaN(value)) {
+                    positionValue = value;
+                }
+            }
+            timeSeries[i] = new Object[] { new Date(time), direction.getValueAt(i), positionValue, offset };
         }
         Object[][][] dataSetArray = { timeSeries };
         return new DefaultArrowDataset(dataSetArray);
@@ -357,13 +592,13 @@ public class Utility {
 
         // assume all phenomenon has same size. Should be ok for data from
         // api.met.no
-        int numItems = fog.getTimes().size();
-        Object[][] timeSeries = new Object[fog.getTimes().size()][];
+        int numItems = fog.size();
+        Object[][] timeSeries = new Object[numItems][];
         for (int i = 0; i < numItems; i++) {
-            timeSeries[i] = new Object[] { fog.getItem(i).getTimeFrom(), ((NumberValueItem) fog.getItem(i)).getValue(),
-                    ((NumberValueItem) highClouds.getItem(i)).getValue(),
-                    ((NumberValueItem) mediumClouds.getItem(i)).getValue(),
-                    ((NumberValueItem) lowClouds.getItem(i)).getValue() };
+            timeSeries[i] = new Object[] { new Date(fog.getTimeFromMillis(i)), fog.getValueAt(i),
+                    highClouds.getValueAt(i),
+                    mediumClouds.getValueAt(i),
+                    lowClouds.getValueAt(i) };
         }
 
         Object[][][] dataSetArray = { timeSeries };
@@ -23,9 +23,6 @@ package no.met.jtimeseries.chart;
 
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Vector;
 
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.event.RendererChangeEvent;
@@ -51,7 +48,17 @@ public class XYHybridSplineRenderer extends XYLineAndShapeRenderer {
     /**
      * To collect data points for later splining.
      */
-    private Vector<ControlPoint> points;
+    private transient SplinePoints points;
+
+    /**
+     * To collect cardinal spline control points for later splining.
+     */
+    private transient SplinePoints cardinalPoints;
+
+    /**
+     * To collect the points of the spline.
+     */
+    private transient SplinePoints splinePoints;
 
     /**
      * Resolution of splines (number of line segments between points)
@@ -171,7 +178,9 @@ public class XYHybridSplineRenderer extends XYLineAndShapeRenderer {
 
         State state = (State) super.initialise(g2, dataArea, plot, data, info);
         state.setProcessVisibleItemsOnly(false);
-        this.points = new Vector<ControlPoint>();
+        this.points = new SplinePoints(SplinePoints.Duplicates.SKIP_EQUAL_X);
+        this.cardinalPoints = new SplinePoints(SplinePoints.Duplicates.SKIP_EQUAL_X);
+        this.splinePoints = new SplinePoints(SplinePoints.Duplicates.KEEP);
         setDrawSeriesLineAsPath(true);
 
         setBaseShapesVisible(false);
@@ -223,13 +232,10 @@ public class XYHybridSplineRenderer extends XYLineAndShapeRenderer {
 
         // collect points
         if (!Double.isNaN(transX1) && !Double.isNaN(transY1)) {
-            ControlPoint p = new ControlPoint(
-                    plot.getOrientation() == PlotOrientation.HORIZONTAL ? (float) transY1
-                            : (float) transX1,
-                    plot.getOrientation() == PlotOrientation.HORIZONTAL ? (float) transX1
-                            : (float) transY1);
-            if (!this.points.contains(p)) {
-                this.points.add(p);
+            if (plot.getOrientation() == PlotOrientation.HORIZONTAL) {
+                this.points.add((float) transY1, (float) transX1);
+            } else {
+                this.points.add((float) transX1, (float) transY1);
             }
         }
         if (item == dataset.getItemCount(series) - 1) {
@@ -237,265 +243,48 @@ public class XYHybridSplineRenderer extends XYLineAndShapeRenderer {
             // construct path
             if (this.points.size() > 1) {
                 // we need at least two points to draw something
-                ControlPoint cp0 = this.points.get(0);
-                s.seriesPath.moveTo(cp0.x, cp0.y);
+                s.seriesPath.moveTo(this.points.getX(0), this.points.getY(0));
                 if (this.points.size() == 2) {
                     // we need at least 3 points to spline. Draw simple line
                     // for two points
-                    ControlPoint cp1 = this.points.get(1);
-                    s.seriesPath.lineTo(cp1.x, cp1.y);
+                    s.seriesPath.lineTo(this.points.getX(1), this.points.getY(1));
                 } else {
                     // construct spline
 
                     // add some cardinal spline control points
-                    this.points = addCardinalSplinePoints(this.points, tension);
+                    addCardinalSplinePoints(this.points, tension, this.cardinalPoints);
 
                     // applying standard spline
-                    int np = this.points.size(); // number of points
-                    float[] d = new float[np]; // Newton form coefficients
-                    float[] x = new float[np]; // x-coordinates of nodes
-                    float y;
-                    float t;
-                    float oldy = 0;
-                    float oldt = 0;
-
-                    float[] a = new float[np];
-                    float t1;
-                    float t2;
-                    float[] h = new float[np];
-
-                    for (int i = 0; i < np; i++) {
-                        ControlPoint cpi = this.points.get(i);
-                        x[i] = cpi.x;
-                        d[i] = cpi.y;
-                    }
-
-                    for (int i = 1; i <= np - 1; i++) {
-                        h[i] = x[i] - x[i - 1];
-                    }
-                    float[] sub = new float[np - 1];
-                    float[] diag = new float[np - 1];
-                    float[] sup = new float[np - 1];
-
-                    for (int i = 1; i <= np - 2; i++) {
-                        diag[i] = (h[i] + h[i + 1]) / 3;
-                        sup[i] = h[i + 1] / 6;
-                        sub[i] = h[i] / 6;
-                        a[i] = (d[i + 1] - d[i]) / h[i + 1] - (d[i] - d[i - 1])
-                                / h[i];
-                    }
-                    solveTridiag(sub, diag, sup, a, np - 2);
-
-                    // note that a[0]=a[np-1]=0
-                    // draw
-                    oldt = x[0];
-                    oldy = d[0];
-                    s.seriesPath.moveTo(oldt, oldy);
-                    for (int i = 1; i <= np - 1; i++) {
-                        // loop over intervals between nodes
-                        for (int j = 1; j <= this.precision; j++) {
-                            t1 = (h[i] * j) / this.precision;
-                            t2 = h[i] - t1;
-                            y = ((-a[i - 1] / 6 * (t2 + h[i]) * t1 + d[i - 1])
-                                    * t2 + (-a[i] / 6 * (t1 + h[i]) * t2 + d[i])
-                                    * t1)
-                                    / h[i];
-                            t = x[i - 1] + t1;
-                            s.seriesPath.lineTo(t, y);
-                            oldt = t;
-                            oldy = y;
-                        }
+                    this.splinePoints.clear();
+                    NaturalSpline.interpolate(this.cardinalPoints, this.precision, this.splinePoints);
+                    s.seriesPath.moveTo(this.splinePoints.getX(0), this.splinePoints.getY(0));
+                    for (int i = 1; i < this.splinePoints.size(); i++) {
+                        s.seriesPath.lineTo(this.splinePoints.getX(i), this.splinePoints.getY(i));
                     }
                 }
                 // draw path
                 drawFirstPassShape(g2, pass, series, item, s.seriesPath);
             }
 
-            // reset points vector
-            this.points = new Vector<ControlPoint>();
+            // reset points
+            this.points.clear();
         }
     }
 
     /**
-     * Add cardinal spline control points in points vector
-     * @param points The points vector
+     * Add cardinal spline control points to cardinalPoints
+     * @param points The points to spline
      * @param tension The tension value to construct cardinal spline
-     * @return Cardinal spline control points
+     * @param cardinalPoints Receives the cardinal spline control points
      */
-    private Vector<ControlPoint> addCardinalSplinePoints(
-            Vector<ControlPoint> points, float tension) {
-        Vector<ControlPoint> cardinalPoints = new Vector<ControlPoint>();
-        // construct spline
-
-        // set the minimum resolution
-        int minimumN = 1;
-        // set the maximum resolution
-        int maximumN = 4;
-
-        // add two more points at the top and the end for drawing the curve
-        // between the first two and last two points
-        points.add(0, points.get(0));
-        points.add(points.get(points.size() - 1));
-
-        // set the minimum distance when using minimumN
-        double smallDistance = Math.pow(
-                Math.pow(points.get(3).x
-                        - points.get(0).x, 2)
-                        + Math.pow(points.get(3).y
-                                - points.get(0).y, 2), 0.5);
-
-        double currentDistance;
-        // number of intervals (i.e. parametric curve would be
-        // evaluted currentN times)
-        double currentN;
-
-        List<ControlPoint> newPoints;
-        for (int i = 0; i < points.size() - 3; i++) {
-            currentDistance = Math
-                    .pow(Math.pow(points.get(i + 3).x
-                            - points.get(i).x, 2)
-                            + Math.pow(points.get(i + 3).y
-                                    - points.get(i).y, 2), 0.5);
-            currentN = minimumN * currentDistance / smallDistance;
-            currentN = currentN > maximumN ? maximumN : currentN;
-            newPoints = evaluateCardinal2DAtNplusOneValues(
-                    points.get(i),
-                    points.get(i + 1),
-                    points.get(i + 2),
-                    points.get(i + 3), tension, (int) currentN);
-            for (int j = 0; j < newPoints.size(); j++) {
-                if (!cardinalPoints.contains(newPoints.get(j)))
-                    cardinalPoints.add(new ControlPoint(newPoints.get(j).x,
-                            newPoints.get(j).y));
-            }
-        }
+    private void addCardinalSplinePoints(SplinePoints points, float tension,
+            SplinePoints cardinalPoints) {
+        cardinalPoints.clear();
+        CardinalSpline.addControlPoints(points, tension, cardinalPoints);
         // change a small value of the last point in points and add it to control points
         // for the purpose of spline the line between last two points
-        cardinalPoints.add(new ControlPoint(points.get(points.size()-1).x+0.01f,
-                points.get(points.size()-1).y+0.01f));
-        return cardinalPoints;
-    }
-
-    /**
-     * P0,P1,P2,P3 are given four points. Each have x and y values. P1 and P2
-     * are endpoints of curve. P0 and P3 are used to calculate the slope of the
-     * endpoints (i.e slope of P1 and P2).
-     *
-     * @param p0
-     * @param p1
-     * @param p2
-     * @param p3
-     * @param t
-     *            The tension
-     * @param u
-     *            The parameter at which spline is evaluated
-     * @return A control point
-     */
-    private ControlPoint evaluateCardinal2D(ControlPoint p0, ControlPoint p1,
-            ControlPoint p2, ControlPoint p3, float t, float u) {
-        float s = (1 - t) / 2.0f;
-        float[][] cardinalMatrix = new float[][] { { -s, 2 - s, s - 2, s },
-                { 2 * s, s - 3, 3 - (2 * s), -s }, { -s, 0, s, 0 },
-                { 0, 1, 0, 0 } };
-        float[][] ghx = new float[][] { { p0.x }, { p1.x }, { p2.x }, { p3.x } };
-        float[][] ghy = new float[][] { { p0.y }, { p1.y }, { p2.y }, { p3.y } };
-        float[][] uMatrix = new float[][] { { (float) Math.pow(u, 3),
-                (float) Math.pow(u, 2), u, 1 } };
-        float newPointx = matrixMultiply(
-                matrixMultiply(uMatrix, cardinalMatrix), ghx)[0][0];
-        float newPointy = matrixMultiply(
-                matrixMultiply(uMatrix, cardinalMatrix), ghy)[0][0];
-        ControlPoint contrlPoint = new ControlPoint(newPointx, newPointy);
-        return contrlPoint;
-    }
-
-    /**
-     * Evaluate cardinal spline at N+1 values for given four points and tesion.
-     * Uniform parameterization is used. P0,P1,P2 and P3 are given four points.
-     *
-     * @param p0
-     * @param p1
-     * @param p2
-     * @param p3
-     * @param t
-     *            Tension
-     * @param n
-     *            The number of intervals (spline is evaluted at N+1 values).
-     * @return A list of control points
-     */
-    public List<ControlPoint> evaluateCardinal2DAtNplusOneValues(
-            ControlPoint p0, ControlPoint p1, ControlPoint p2, ControlPoint p3,
-            float t, int n) {
-        List<ControlPoint> cpList = new ArrayList<ControlPoint>();
-        float u = 0;
-        ControlPoint p = evaluateCardinal2D(p0, p1, p2, p3, t, u);
-        cpList.add(p);
-        float du = 1.0f / n;
-        for (int i = 1; i < n + 1; i++) {
-            u = i * du;
-            p = evaluateCardinal2D(p0, p1, p2, p3, t, u);
-            cpList.add(p);
-        }
-        return cpList;
-    }
-
-    /**
-     * Multiple two matrixes
-     *
-     * @param m1
-     *            The first matrix
-     * @param m2
-     *            The second matrix
-     * @return The result of matrix
-     */
-    private static float[][] matrixMultiply(float[][] m1, float[][] m2) {
-        float[][] result = null;
-        if (m1 != null && m2 != null && m1[0].length == m2.length) {
-            float sum;
-            result = new float[m1.length][m2[0].length];
-            for (int i = 0; i < m1.length; i++) {
-                for (int j = 0; j < m2[0].length; j++) {
-                    sum = 0;
-                    for (int k = 0; k < m1[0].length; k++) {
-                        sum += m1[i][k] * m2[k][j];
-                    }
-                    result[i][j] = sum;
-                }
-            }
-        }
-        return result;
-    }
-
-    /**
-     * Document me!
-     *
-     * @param sub
-     * @param diag
-     * @param sup
-     * @param b
-     * @param n
-     */
-    private void solveTridiag(float[] sub, float[] diag, float[] sup,
-            float[] b, int n) {
-        /*
-         * solve linear system with tridiagonal n by n matrix a using Gaussian
-         * elimination *without* pivoting where a(i,i-1) = sub[i] for 2<=i<=n
-         * a(i,i) = diag[i] for 1<=i<=n a(i,i+1) = sup[i] for 1<=i<=n-1 (the
-         * values sub[1], sup[n] are ignored) right hand side vector b[1:n] is
-         * overwritten with solution NOTE: 1...n is used in all arrays, 0 is
-         * unused
-         */
-        int i;
-        /* factorization and forward substitution */
-        for (i = 2; i <= n; i++) {
-            sub[i] = sub[i] / diag[i - 1];
-            diag[i] = diag[i] - sub[i] * sup[i - 1];
-            b[i] = b[i] - sub[i] * b[i - 1];
-        }
-        b[n] = b[n] / diag[n];
-        for (i = n - 1; i >= 1; i--) {
-            b[i] = (b[i] - sup[i] * b[i + 1]) / diag[i];
-        }
+        int last = points.size() - 1;
+        cardinalPoints.add(points.getX(last) + 0.01f, points.getY(last) + 0.01f);
     }
 
     /**
@@ -520,54 +309,4 @@ public class XYHybridSplineRenderer extends XYLineAndShapeRenderer {
         }
         return super.equals(obj);
     }
-
-    /**
-     * Represents a control point.
-     */
-    class ControlPoint {
-
-        /** The x-coordinate. */
-        public float x;
-
-        /** The y-coordinate. */
-        public float y;
-
-        /**
-         * Creates a new control point.
-         *
-         * @param x
-         *            the x-coordinate.
-         * @param y
-         *            the y-coordinate.
-         */
-        public ControlPoint(float x, float y) {
-            this.x = x;
-            this.y = y;
-        }
-
-        /**
-         * Tests this point for equality with an arbitrary object.
-         *
-         * @param obj
-         *            the object (<code>null</code> permitted.
-         *
-         * @return A boolean.
-         */
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == this) {
-                return true;
-            }
-            if (!(obj instanceof ControlPoint)) {
-                return false;
-            }
-            ControlPoint that = (ControlPoint) obj;
-            if (this.x != that.x) {
-                return false;
-            }
-            /* && y == ((ControlPoint) obj).y */;
-            return true;
-        }
-
-    }
 }
@@ -23,7 +23,6 @@ package no.met.jtimeseries.chart;
 
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
-import java.util.Vector;
 
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.event.RendererChangeEvent;
@@ -50,7 +49,12 @@ public class XYSplineRenderer extends XYLineAndShapeRenderer {
     /**
      * To collect data points for later splining.
      */
-    private Vector<ControlPoint> points;
+    private transient SplinePoints points;
+
+    /**
+     * To collect the points of the spline.
+     */
+    private transient SplinePoints splinePoints;
 
     /**
      * Resolution of splines (number of line segments between points)
@@ -127,7 +131,8 @@ public class XYSplineRenderer extends XYLineAndShapeRenderer {
 
         State state = (State) super.initialise(g2, dataArea, plot, data, info);
         state.setProcessVisibleItemsOnly(false);
-        this.points = new Vector<ControlPoint>();
+        this.points = new SplinePoints(SplinePoints.Duplicates.SKIP_EQUAL_X);
+        this.splinePoints = new SplinePoints(SplinePoints.Duplicates.KEEP);
         setDrawSeriesLineAsPath(true);
 
         setBaseShapesVisible(false);
@@ -170,13 +175,10 @@ public class XYSplineRenderer extends XYLineAndShapeRenderer {
 
         // collect points
         if (!Double.isNaN(transX1) && !Double.isNaN(transY1)) {
-            ControlPoint p = new ControlPoint(plot.getOrientation()
-                                == PlotOrientation.HORIZONTAL ? (float) transY1
-                                : (float) transX1, plot.getOrientation()
-                                == PlotOrientation.HORIZONTAL ? (float) transX1
-                                        : (float) transY1);
-            if (!this.points.contains(p)) {
-                this.points.add(p);
+            if (plot.getOrientation() == PlotOrientation.HORIZONTAL) {
+                this.points.add((float) transY1, (float) transX1);
+            } else {
+                this.points.add((float) transX1, (float) transY1);
             }
         }
         if (item == dataset.getItemCount(series) - 1) {
@@ -184,109 +186,26 @@ public class XYSplineRenderer extends XYLineAndShapeRenderer {
             // construct path
             if (this.points.size() > 1) {
                 // we need at least two points to draw something
-                ControlPoint cp0 = this.points.get(0);
-                s.seriesPath.moveTo(cp0.x, cp0.y);
+                s.seriesPath.moveTo(this.points.getX(0), this.points.getY(0));
                 if (this.points.size() == 2) {
                     // we need at least 3 points to spline. Draw simple line
                     // for two points
-                    ControlPoint cp1 = this.points.get(1);
-                    s.seriesPath.lineTo(cp1.x, cp1.y);
+                    s.seriesPath.lineTo(this.points.getX(1), this.points.getY(1));
                 }
                 else {
                     // construct spline
-                    int np = this.points.size(); // number of points
-                    float[] d = new float[np]; // Newton form coefficients
-                    float[] x = new float[np]; // x-coordinates of nodes
-                    float y;
-                    float t;
-                    float oldy = 0;
-                    float oldt = 0;
-
-                    float[] a = new float[np];
-                    float t1;
-                    float t2;
-                    float[] h = new float[np];
-
-                    for (int i = 0; i < np; i++) {
-                        ControlPoint cpi = this.points.get(i);
-                        x[i] = cpi.x;
-                        d[i] = cpi.y;
-                    }
-
-                    for (int i = 1; i <= np - 1; i++) {
-                        h[i] = x[i] - x[i - 1];
-                    }
-                    float[] sub = new float[np - 1];
-                    float[] diag = new float[np - 1];
-                    float[] sup = new float[np - 1];
-
-                    for (int i = 1; i <= np - 2; i++) {
-                        diag[i] = (h[i] + h[i + 1]) / 3;
-                        sup[i] = h[i + 1] / 6;
-                        sub[i] = h[i] / 6;
-                        a[i] = (d[i + 1] - d[i]) / h[i + 1]
-                                   - (d[i] - d[i - 1]) / h[i];
-                    }
-                    solveTridiag(sub, diag, sup, a, np - 2);
-
-                    // note that a[0]=a[np-1]=0
-                    // draw
-                    oldt = x[0];
-                    oldy = d[0];
-                    s.seriesPath.moveTo(oldt, oldy);
-                    for (int i = 1; i <= np - 1; i++) {
-                        // loop over intervals between nodes
-                        for (int j = 1; j <= this.precision; j++) {
-                            t1 = (h[i] * j) / this.precision;
-                            t2 = h[i] - t1;
-                            y = ((-a[i - 1] / 6 * (t2 + h[i]) * t1 + d[i - 1])
-                                    * t2 + (-a[i] / 6 * (t1 + h[i]) * t2
-                                    + d[i]) * t1) / h[i];
-                            t = x[i - 1] + t1;
-                            s.seriesPath.lineTo(t, y);
-                            oldt = t;
-                            oldy = y;
-                        }
+                    this.splinePoints.clear();
+                    NaturalSpline.interpolate(this.points, this.precision, this.splinePoints);
+                    for (int i = 1; i < this.splinePoints.size(); i++) {
+                        s.seriesPath.lineTo(this.splinePoints.getX(i), this.splinePoints.getY(i));
                     }
                 }
                 // draw path
                 drawFirstPassShape(g2, pass, series, item, s.seriesPath);
             }
 
-            // reset points vector
-            this.points = new Vector<ControlPoint>();
-        }
-    }
-
-    /**
-     * Document me!
-     *
-     * @param sub
-     * @param diag
-     * @param sup
-     * @param b
-     * @param n
-     */
-    private void solveTridiag(float[] sub, float[] diag, float[] sup,
-            float[] b, int n) {
-/*      solve linear system with tridiagonal n by n matrix a
-        using Gaussian elimination *without* pivoting
-        where   a(i,i-1) = sub[i]  for 2<=i<=n
-        a(i,i)   = diag[i] for 1<=i<=n
-        a(i,i+1) = sup[i]  for 1<=i<=n-1
-        (the values sub[1], sup[n] are ignored)
-        right hand side vector b[1:n] is overwritten with solution
-        NOTE: 1...n is used in all arrays, 0 is unused */
-        int i;
-/*                  factorization and forward substitution */
-        for (i = 2; i <= n; i++) {
-            sub[i] = sub[i] / diag[i - 1];
-            diag[i] = diag[i] - sub[i] * sup[i - 1];
-            b[i] = b[i] - sub[i] * b[i - 1];
-        }
-        b[n] = b[n] / diag[n];
-        for (i = n - 1; i >= 1; i--) {
-            b[i] = (b[i] - sup[i] * b[i + 1]) / diag[i];
+            // reset points
+            this.points.clear();
         }
     }
 
@@ -311,51 +230,4 @@ public class XYSplineRenderer extends XYLineAndShapeRenderer {
         }
         return super.equals(obj);
     }
-
-    /**
-     * Represents a control point.
-     */
-    class ControlPoint {
-
-        /** The x-coordinate. */
-        public float x;
-
-        /** The y-coordinate. */
-        public float y;
-
-        /**
-         * Creates a new control point.
-         *
-         * @param x  the x-coordinate.
-         * @param y  the y-coordinate.
-         */
-        public ControlPoint(float x, float y) {
-            this.x = x;
-            this.y = y;
-        }
-
-        /**
-         * Tests this point for equality with an arbitrary object.
-         *
-         * @param obj  the object (<code>null</code> permitted.
-         *
-         * @return A boolean.
-         */
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == this) {
-                return true;
-            }
-            if (!(obj instanceof ControlPoint)) {
-                return false;
-            }
-            ControlPoint that = (ControlPoint) obj;
-            if (this.x != that.x) {
-                return false;
-            }
-            /*&& y == ((ControlPoint) obj).y*/;
-            return true;
-        }
-
-    }
 }
@@ -64,6 +64,11 @@ public class XYWindArrowRenderer extends AbstractXYItemRenderer implements XYIte
     // to avoid recalculation of arrow size on each plot
     private int cachedPlotHeight = -1;
     private double zeroWindLimit=0.2;
+    // shapes and strokes depending only on the arrow size, recreated on resize
+    private transient BasicStroke featherStroke;
+    private transient Polygon polygonHead;
+    private transient Ellipse2D.Double circleHead;
+    private static final BasicStroke LINE_STROKE = new BasicStroke(1);
 
     private RenderingHints renderHints;
 
@@ -77,15 +82,28 @@ public class XYWindArrowRenderer extends AbstractXYItemRenderer implements XYIte
     }
 
     private void resizeArrowByPlotHeight(int plotHeight) {
-        if (plotHeight == cachedPlotHeight) // values are same as last time
+        if (plotHeight == cachedPlotHeight && featherStroke != null) // values are same as last time
             return;
         arrowHeight = (int) (plotHeight * 0.6);
         arrowWidth = 1 + (arrowHeight / 20);
         arrowHeadSize = 4 + arrowWidth;
         featherWidth = 2 + (4 * arrowWidth);
+        featherStroke = new BasicStroke(arrowWidth);
+        polygonHead = getPolygonHead(arrowHeadSize, arrowHeight);
+        circleHead = getCircleHead(arrowHeadSize, arrowHeight);
         cachedPlotHeight = plotHeight;
     }
 
+    /**
+     * Creates the state that holds the graphics object shared by the arrows
+     * of a series.
+     */
+    @Override
+    public XYItemRendererState initialise(Graphics2D g2, Rectangle2D dataArea, XYPlot plot, XYDataset data,
+            PlotRenderingInfo info) {
+        return new ItemGraphicsRendererState(info, renderHints);
+    }
+
     /**
      * Draws the visual representation of a single wind arrow.
      */
@@ -94,9 +112,8 @@ public class XYWindArrowRenderer extends AbstractXYItemRenderer implements XYIte
             XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis, XYDataset dataset, int series, int item,
             CrosshairState crosshairState, int pass) {
         resizeArrowByPlotHeight((int) plotArea.getHeight());
-        // Needs a new graphics object to use translate() and rotate()
-        Graphics2D g2 = (Graphics2D) g2d.create();
-        g2.setRenderingHints(renderHints);
+        // Needs a separate graphics object to use translate() and rotate()
+        Graphics2D g2 = ((ItemGraphicsRendererState) state).getItemGraphics(g2d);
         RectangleEdge domainAxisLocation = plot.getDomainAxisEdge();
         double middleY = plotArea.getCenterY();
 
@@ -118,15 +135,15 @@ public class XYWindArrowRenderer extends AbstractXYItemRenderer implements XYIte
             drawArrow(g2, wforce.doubleValue());
 
             if (useArrowHead) {
-                g2.fill(getPolygonHead(arrowHeadSize, arrowHeight));
+                g2.fill(polygonHead);
             } else {
-                g2.draw(getCircleHead(arrowHeadSize, arrowHeight));
+                g2.draw(circleHead);
             }
         }
     }
 
     private void drawCircle(Graphics2D g) {
-        g.setStroke(new BasicStroke(1));
+        g.setStroke(LINE_STROKE);
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING , RenderingHints.VALUE_ANTIALIAS_ON);
         g.drawOval(-arrowHeight/2, -arrowHeight/2, arrowHeight, arrowHeight);
     }
@@ -158,7 +175,7 @@ public class XYWindArrowRenderer extends AbstractXYItemRenderer implements XYIte
 
         // draw full feathers (representing 5 ms each)
         int fullFeathers = (int) remainingSpeed / 5;
-        g.setStroke(new BasicStroke(arrowWidth));
+        g.setStroke(featherStroke);
         for (int i = 0; i < fullFeathers; i++) {
             int yValue = (arrowHeight / 2) - (featherOffset * featherHeight);
             yValue -= (arrowWidth / 2); // allign with start of arrow
@@ -183,7 +200,7 @@ public class XYWindArrowRenderer extends AbstractXYItemRenderer implements XYIte
             featherOffset += 1;
         }
 
-        g.setStroke(new BasicStroke(1));
+        g.setStroke(LINE_STROKE);
     }
 
     private Polygon getPolygonHead(int size, int lineHeight) {
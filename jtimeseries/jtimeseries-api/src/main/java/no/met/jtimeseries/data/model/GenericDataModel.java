@@ -42,10 +42,25 @@ public class GenericDataModel extends DataModel implements Jsonizer {
 	//String is used as key because in case of NETCDF files name of phenomenon might not known in advance. 
     //If it is known in advance then AbstractPhenomenon.Names enum can be used
     Map<String, AbstractPhenomenon> phenomena = new TreeMap<String, AbstractPhenomenon>();
+
+    // the time the source of this model says it should be fetched again, null if unknown
+    private Date expires;
         
     public GenericDataModel() {
         super();
     }
+
+    /**
+     * @return The time when the data source should be fetched again, or null
+     *         if the model was not read from a source with an expiry time.
+     */
+    public Date getExpires() {
+        return expires;
+    }
+
+    public void setExpires(Date expires) {
+        this.expires = expires;
+    }
     
     @Override
     public Date getTimeFrom() {
@@ -100,10 +100,10 @@ public class MarinogramCurrentPlot extends MarinogramPlot {
 		// plot style
 		PlotStyle.Builder currentStyleBuilder = new PlotStyle.Builder("Current");
 		PlotStyle plotStyle;
-		NumberPhenomenon currentDirection = getOceanForecastDataModel()
-				.getPhenomenen(PhenomenonName.CurrentDirection.toString(), NumberPhenomenon.class);
-		NumberPhenomenon currentSpeed = getOceanForecastDataModel()
-                .getPhenomenen(PhenomenonName.CurrentSpeed.toString(), NumberPhenomenon.class);
+		NumberPhenomenon currentDirection = copyNumberPhenomenon(getOceanForecastDataModel(),
+				PhenomenonName.CurrentDirection.toString());
+		NumberPhenomenon currentSpeed = copyNumberPhenomenon(getOceanForecastDataModel(),
+				PhenomenonName.CurrentSpeed.toString());
         if (currentSpeed == null || currentDirection == null) {
             return  null;
         }
@@ -176,12 +176,11 @@ public class MarinogramCurrentPlot extends MarinogramPlot {
 					currentDirection.getTime(), 2,1);
 			InListFromDateFilter symbolTimesFilter = new InListFromDateFilter(symbolTimes);
 			currentDirection.filter(symbolTimesFilter);
-			currentSpeed = null;
 			if (plotCurrentSpeed) {
-				currentSpeed = getOceanForecastDataModel()
-                        .getPhenomenen(PhenomenonName.CurrentSpeed.toString(), NumberPhenomenon.class);
 				currentSpeed.filter(symbolTimesFilter);
 				currentSpeed=currentSpeed.scaling(1/100.0/KNOT);
+			} else {
+				currentSpeed = null;
 			}
 
 			plotStyle = currentStyleBuilder.seriesColor(currentDirectionColor).build();
@@ -31,6 +31,7 @@ import java.util.ResourceBundle;
 import java.util.TimeZone;
 
 import no.met.jtimeseries.data.model.GenericDataModel;
+import no.met.phenomenen.NumberPhenomenon;
 
 import org.jfree.chart.plot.XYPlot;
 
@@ -69,6 +70,18 @@ public abstract class MarinogramPlot {
 	    messages = ResourceBundle.getBundle("messages", locale);
 	}
 
+	/**
+	 * Get a copy of a number phenomenon from a model. The models may be shared
+	 * by several plots, so plots must work on copies of the phenomena they
+	 * modify.
+	 * 
+	 * @return the copy, or null if the model does not have the phenomenon
+	 */
+	protected static NumberPhenomenon copyNumberPhenomenon(GenericDataModel model, String name) {
+		NumberPhenomenon phenomenon = model.getNumberPhenomenon(name);
+		return phenomenon == null ? null : phenomenon.clone();
+	}
+
 	public GenericDataModel getLocationForecastDataModel() {
 		return locationForecastDataModel;
 	}
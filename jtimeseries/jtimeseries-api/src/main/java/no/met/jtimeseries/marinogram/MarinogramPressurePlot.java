@@ -78,8 +78,8 @@ public class MarinogramPressurePlot extends MarinogramPlot {
             plotter.setHeight(this.getHeight());
             plotter.setWidth(this.getWidth());
             plotter.setPlotDefaultProperties("", "");
-            NumberPhenomenon pressure = getLocationForecastDataModel()
-                    .getPhenomenen(PhenomenonName.Pressure.toString(), NumberPhenomenon.class);
+            NumberPhenomenon pressure = copyNumberPhenomenon(getLocationForecastDataModel(),
+                    PhenomenonName.Pressure.toString());
             List<Date> shortTermTime = pressure.getTime();
             Color pressureColor = new Color(11, 164, 42);
             
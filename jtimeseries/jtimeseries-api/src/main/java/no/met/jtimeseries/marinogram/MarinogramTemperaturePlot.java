@@ -118,8 +118,8 @@ public class MarinogramTemperaturePlot extends MarinogramPlot {
         double maxValue=-100;
         int plotIndex=0;
         if (plotAirTemp) {
-            aTemperature = getLocationForecastDataModel().getPhenomenen(PhenomenonName.AirTemperature.toString(),
-                    NumberPhenomenon.class);
+            aTemperature = copyNumberPhenomenon(getLocationForecastDataModel(),
+                    PhenomenonName.AirTemperature.toString());
             minValue=aTemperature.getMinValue()<minValue?aTemperature.getMinValue():minValue;
             maxValue=aTemperature.getMaxValue()>maxValue?aTemperature.getMaxValue():maxValue;
             startTime = aTemperature.getTime().get(0);
@@ -130,8 +130,8 @@ public class MarinogramTemperaturePlot extends MarinogramPlot {
         }
 
         if (plotWaterTemp) {
-            wTemperature = getOceanForecastDataModel().getPhenomenen(PhenomenonName.seaTemperature.toString(),
-                    NumberPhenomenon.class);
+            wTemperature = copyNumberPhenomenon(getOceanForecastDataModel(),
+                    PhenomenonName.seaTemperature.toString());
             // only plot water temperature if it is availbe for this location
             if (wTemperature != null) {
                 minValue=wTemperature.getMinValue()<minValue?wTemperature.getMinValue():minValue;
@@ -145,8 +145,8 @@ public class MarinogramTemperaturePlot extends MarinogramPlot {
         }
         
         if (plotDewpointTemp) {
-            dTemperature = getLocationForecastDataModel().getPhenomenen(PhenomenonName.dewPointTemperature.toString(),
-                    NumberPhenomenon.class);
+            dTemperature = copyNumberPhenomenon(getLocationForecastDataModel(),
+                    PhenomenonName.dewPointTemperature.toString());
             minValue=dTemperature.getMinValue()<minValue?dTemperature.getMinValue():minValue;
             maxValue=dTemperature.getMaxValue()>maxValue?dTemperature.getMaxValue():maxValue;
             startTime = dTemperature.getTime().get(0);
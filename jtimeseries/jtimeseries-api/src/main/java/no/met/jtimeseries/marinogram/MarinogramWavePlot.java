@@ -94,10 +94,10 @@ public class MarinogramWavePlot extends MarinogramPlot {
 		// plot style
 		PlotStyle.Builder waveStyleBuilder = new PlotStyle.Builder("Wave");
 		PlotStyle plotStyle;
-		NumberPhenomenon waveDirection = getOceanForecastDataModel()
-				.getPhenomenen(PhenomenonName.WaveDirection.toString(), NumberPhenomenon.class);
-		NumberPhenomenon waveHeight = getOceanForecastDataModel()
-                .getPhenomenen(PhenomenonName.WaveHeight.toString(), NumberPhenomenon.class);
+		NumberPhenomenon waveDirection = copyNumberPhenomenon(getOceanForecastDataModel(),
+				PhenomenonName.WaveDirection.toString());
+		NumberPhenomenon waveHeight = copyNumberPhenomenon(getOceanForecastDataModel(),
+				PhenomenonName.WaveHeight.toString());
         if (waveHeight == null || waveDirection == null) {
             return  null;
         }
@@ -167,11 +167,10 @@ public class MarinogramWavePlot extends MarinogramPlot {
 					waveDirection.getTime(), 2,1);
 			InListFromDateFilter symbolTimesFilter = new InListFromDateFilter(symbolTimes);
 			waveDirection.filter(symbolTimesFilter);
-			waveHeight = null;
 			if (plotWaveHeight) {
-				waveHeight = getOceanForecastDataModel()
-                        .getPhenomenen(PhenomenonName.WaveHeight.toString(), NumberPhenomenon.class);
 				waveHeight.filter(symbolTimesFilter);
+			} else {
+				waveHeight = null;
 			}
 
 			plotStyle = waveStyleBuilder.seriesColor(waveDirectionColor).build();
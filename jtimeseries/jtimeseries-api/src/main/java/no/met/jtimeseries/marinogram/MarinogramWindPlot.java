@@ -98,10 +98,10 @@ public class MarinogramWindPlot extends MarinogramPlot {
         // plot style
         PlotStyle.Builder currentStyleBuilder = new PlotStyle.Builder("Wind");
         PlotStyle plotStyle;
-        NumberPhenomenon windDirection = getLocationForecastDataModel().getPhenomenen(
-                PhenomenonName.WindDirectionDegree.toString(), NumberPhenomenon.class);
-        NumberPhenomenon windSpeed = getLocationForecastDataModel().getPhenomenen(
-                PhenomenonName.WindSpeedMPS.toString(), NumberPhenomenon.class);
+        NumberPhenomenon windDirection = copyNumberPhenomenon(getLocationForecastDataModel(),
+                PhenomenonName.WindDirectionDegree.toString());
+        NumberPhenomenon windSpeed = copyNumberPhenomenon(getLocationForecastDataModel(),
+                PhenomenonName.WindSpeedMPS.toString());
         if (windSpeed == null || windDirection == null) {
             return null;
         }
@@ -173,12 +173,11 @@ public class MarinogramWindPlot extends MarinogramPlot {
             List<Date> symbolTimes = Utility.filterMinimumHourInterval(windDirection.getTime(), 2, 1);
             InListFromDateFilter symbolTimesFilter = new InListFromDateFilter(symbolTimes);
             windDirection.filter(symbolTimesFilter);
-            windSpeed = null;
             if (plotWindSpeed) {
-                windSpeed = getLocationForecastDataModel().getPhenomenen(PhenomenonName.WindSpeedMPS.toString(),
-                        NumberPhenomenon.class);
                 windSpeed.filter(symbolTimesFilter);
                 windSpeed = windSpeed.scaling(1 / KNOT);
+            } else {
+                windSpeed = null;
             }
 
             plotStyle = currentStyleBuilder.seriesColor(windDirectionColor).build();
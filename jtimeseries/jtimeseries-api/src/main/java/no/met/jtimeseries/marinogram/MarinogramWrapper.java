@@ -30,6 +30,13 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import no.met.halo.common.LogUtils;
@@ -41,6 +48,8 @@ import no.met.jtimeseries.chart.ChartPlottingInfo;
 import no.met.jtimeseries.chart.Symbols;
 import no.met.jtimeseries.chart.TimePeriod;
 import no.met.jtimeseries.data.model.GenericDataModel;
+import no.met.jtimeseries.metrics.RequestMetrics;
+import no.met.jtimeseries.metrics.RequestMetrics.Stage;
 import no.met.jtimeseries.parser.ForecastParser;
 import no.met.jtimeseries.parser.OceanForecastAddressFactory;
 import no.met.jtimeseries.parser.OceanForecastParseScheme;
@@ -64,6 +73,31 @@ public class MarinogramWrapper extends MarinogramPlot {
     private List<MarinogramPlot> plots;
     private StackedXYPlot combiPlot;
     private static String language;
+    // earliest expiry of the forecasts the marinogram was created from
+    private Date dataExpires;
+
+    private static final int FETCH_THREADS = 16;
+    // fetches oceanforecast data while the requesting thread fetches locationforecast data
+    private static final ExecutorService fetchExecutor = Executors.newFixedThreadPool(FETCH_THREADS,
+            createThreadFactory("marinogram-fetch-"));
+
+    // builds the sub-plots of a marinogram in parallel. Plot building is cpu bound,
+    // so there is no point in having more threads than processors.
+    private static final ExecutorService plotExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), createThreadFactory("marinogram-plot-"));
+
+    private static ThreadFactory createThreadFactory(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, prefix + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
 
     public MarinogramWrapper(int width, int height, String timezone, String language) {
         super(width, height, timezone, language);
@@ -87,6 +121,24 @@ public class MarinogramWrapper extends MarinogramPlot {
         this.totalPlotHeight = totalPlotHeight;
     }
 
+    /**
+     * @return The earliest expiry time of the forecasts behind the created
+     *         marinogram, or null if it was not created from downloaded data.
+     */
+    public Date getDataExpires() {
+        return dataExpires;
+    }
+
+    private static Date earliest(Date expires, GenericDataModel model) {
+        if (model == null || model.getExpires() == null) {
+            return expires;
+        }
+        if (expires == null || model.getExpires().before(expires)) {
+            return model.getExpires();
+        }
+        return expires;
+    }
+
     @Override
     public void addPlot(MarinogramPlot plot) {
         this.plots.add(plot);
@@ -103,9 +155,10 @@ public class MarinogramWrapper extends MarinogramPlot {
         if (combiPlot != null) {
             return combiPlot;
         }
+        List<XYPlot> built = buildPlots();
         for (int i = plots.size() - 1; i >= 0; i--) {
             MarinogramPlot marinogramPlot = plots.get(i);
-            XYPlot plot = marinogramPlot.getPlot();
+            XYPlot plot = built.get(i);
             
             if (combiPlot == null) {
                 // create a stacked plot with the domain axis of the first plot
@@ -156,16 +209,41 @@ public class MarinogramWrapper extends MarinogramPlot {
         try {
         	TimePeriod timePeriod = new TimePeriod(new Date(), MeteogramWrapper.SHORT_TERM_HOURS).adapt(3);
         	
-            // parse oceanforecast data from api.met.no
             Location location = new Location(cpi.getLongitude(),
                     cpi.getLatitude());
-            // The curve will not be shown if too many data points when setDrawSeriesLineAsPath(true) in render;
-            OceanForecastParseScheme oceanForecastParseScheme = new OceanForecastParseScheme(timePeriod);
-            ForecastParser forecastParser = new ForecastParser(
-                    oceanForecastParseScheme, OceanForecastAddressFactory.getURL(location).toString());
-            // parse locationforcast data from api.met.no
+
+            // fetch each data source at most once, and both at the same time.
+            // The plots do not modify the models, so they can share them.
+            Future<GenericDataModel> oceanForecast = null;
+            if (cpi.isShowWaterTemperature() || cpi.isShowCurrentDirection() || cpi.isShowCurrentSpeed()
+                    || cpi.isShowWaveDirection() || cpi.isShowWaveHeight()) {
+                // The curve will not be shown if too many data points when setDrawSeriesLineAsPath(true) in render;
+                OceanForecastParseScheme oceanForecastParseScheme = new OceanForecastParseScheme(timePeriod);
+                final ForecastParser forecastParser = new ForecastParser(
+                        oceanForecastParseScheme, OceanForecastAddressFactory.getURL(location).toString());
+                oceanForecast = fetchExecutor.submit(new Callable<GenericDataModel>() {
+                    @Override
+                    public GenericDataModel call() throws Exception {
+                        return forecastParser.populateModelWithData();
+                    }
+                });
+            }
+
             GenericDataModel locationForecastDataModel = null;
             GenericDataModel model = null;
+            try {
+                if (cpi.isShowAirTemperature() || cpi.isShowDewpointTemperature() || cpi.isShowPressure()
+                        || cpi.isShowWindDirection() || cpi.isShowWindSpeed()) {
+                    locationForecastDataModel = MeteogramWrapper.getModel(location, timePeriod);
+                }
+                if (oceanForecast != null) {
+                    model = oceanForecast.get();
+                }
+            } finally {
+                if (oceanForecast != null) {
+                    oceanForecast.cancel(true);
+                }
+            }
 
             if (cpi.isShowAirTemperature() || cpi.isShowWaterTemperature() || cpi.isShowDewpointTemperature()) {
                 MarinogramTemperaturePlot mp = new MarinogramTemperaturePlot(
@@ -175,9 +253,7 @@ public class MarinogramWrapper extends MarinogramPlot {
                 mp.setShowAirTemp(cpi.isShowAirTemperature());
                 mp.setShowSeaTemp(cpi.isShowWaterTemperature());
                 mp.setShowDewTemp(cpi.isShowDewpointTemperature());
-                locationForecastDataModel = MeteogramWrapper.getModel(location, timePeriod);
                 mp.setLocationForecastDataModel(locationForecastDataModel);
-                model = forecastParser.populateModelWithData();
                 mp.setOceanForecastDataModel(model);
                 this.addPlot(mp);
 
@@ -191,10 +267,6 @@ public class MarinogramWrapper extends MarinogramPlot {
                 mp.setShowCurrentSpeed(cpi.isShowCurrentSpeed());
                 mp.setShowCurrentDirection(cpi.isShowCurrentDirection());
 
-                // extra check if model has no data
-                if (model == null) {
-                    model = forecastParser.populateModelWithData();
-                }
                 mp.setOceanForecastDataModel(model);
                 this.addPlot(mp);
 
@@ -208,10 +280,6 @@ public class MarinogramWrapper extends MarinogramPlot {
                 mp.setShowWaveHeight(cpi.isShowWaveHeight());
                 mp.setShowWaveDirection(cpi.isShowWaveDirection());
 
-                // extra check if model has no data
-                if (model == null) {
-                    model = forecastParser.populateModelWithData();
-                }
                 mp.setOceanForecastDataModel(model);
                 this.addPlot(mp);
 
@@ -222,10 +290,6 @@ public class MarinogramWrapper extends MarinogramPlot {
                         cpi.getWidth(), cpi.getWidth() / 7, cpi.getTimezone(), cpi.getLanguage());
                 totalPlotHeight += cpi.getWidth() / 7;
                 pressurePlot.setShowPressure(cpi.isShowPressure());
-                // extra check if locationForecastDataModel has no data
-                if (locationForecastDataModel == null) {
-                    locationForecastDataModel = MeteogramWrapper.getModel(location, timePeriod);
-                }
                 pressurePlot.setLocationForecastDataModel(locationForecastDataModel);
                 this.addPlot(pressurePlot);
             }
@@ -237,19 +301,15 @@ public class MarinogramWrapper extends MarinogramPlot {
                 mp.setDescription("Wind Plot");
                 mp.setShowWindSpeed(cpi.isShowWindSpeed());
                 mp.setShowWindDirection(cpi.isShowWindDirection());
-
-                // extra check if model has no data
-                if (model == null) {
-                    model = forecastParser.populateModelWithData();
-                }
-                locationForecastDataModel = MeteogramWrapper.getModel(location, timePeriod);
                 mp.setLocationForecastDataModel(locationForecastDataModel);
-                mp.setOceanForecastDataModel(model);
                 this.addPlot(mp);
 
             }
             
+            long start = System.nanoTime();
             jchart = createJFreeChart("", this.getPlot(), this.getWidth());
+            RequestMetrics.getInstance().record(Stage.PLOT, start);
+            dataExpires = earliest(earliest(null, locationForecastDataModel), model);
 
         } catch (Exception e) {
             LogUtils.logException(logger, "Failure during marinogram generation with "+cpi.toString(), e);
@@ -261,6 +321,60 @@ public class MarinogramWrapper extends MarinogramPlot {
         return jchart;
     }
 
+    /**
+     * Build all sub-plots concurrently. The sub-plots are independent of each
+     * other, so the time taken is that of the slowest one rather than the sum.
+     * 
+     * @return the sub-plots, in the same order as the plots were added
+     */
+    private List<XYPlot> buildPlots() throws ParseException {
+        List<Future<XYPlot>> futures = new ArrayList<Future<XYPlot>>(plots.size());
+        try {
+            // the requesting thread builds the first plot itself
+            for (int i = 1; i < plots.size(); i++) {
+                final MarinogramPlot marinogramPlot = plots.get(i);
+                futures.add(plotExecutor.submit(new Callable<XYPlot>() {
+                    @Override
+                    public XYPlot call() throws ParseException {
+                        return marinogramPlot.getPlot();
+                    }
+                }));
+            }
+
+            List<XYPlot> built = new ArrayList<XYPlot>(plots.size());
+            if (!plots.isEmpty()) {
+                built.add(plots.get(0).getPlot());
+            }
+            for (Future<XYPlot> future : futures) {
+                built.add(getPlot(future));
+            }
+            return built;
+        } finally {
+            for (Future<XYPlot> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static XYPlot getPlot(Future<XYPlot> future) throws ParseException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while creating marinogram", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ParseException) {
+                throw (ParseException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
     private static JFreeChart createJFreeChart(String title, Plot plot, int width) {
         JFreeChart chart = new JFreeChart(title, JFreeChart.DEFAULT_TITLE_FONT, plot, true);
         chart.setBorderVisible(false);
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with fixed buckets, cheap enough to update on
+ * every request.
+ *
+ * Recording a duration takes a scan of the bucket bounds and two atomic
+ * increments, with no locking and no allocation.
+ */
+public class LatencyHistogram {
+
+    // the upper bounds of the buckets, in seconds, as written in the output
+    private static final String[] BOUNDS = { "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05",
+            "0.1", "0.25", "0.5", "1", "2.5", "5", "10", "30" };
+
+    private static final long[] BOUND_NANOS = createBoundNanos();
+
+    // the last bucket holds everything above the largest bound
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+    private final AtomicLong sum = new AtomicLong();
+
+    private static long[] createBoundNanos() {
+        long[] nanos = new long[BOUNDS.length];
+        for (int i = 0; i < BOUNDS.length; i++) {
+            nanos[i] = Math.round(Double.parseDouble(BOUNDS[i]) * 1e9);
+        }
+        return nanos;
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param nanos the duration, in nanoseconds
+     */
+    public void observe(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUND_NANOS.length && nanos > BOUND_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        sum.addAndGet(nanos);
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the sum of the recorded durations, in nanoseconds
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Write the histogram in the Prometheus text format, as the bucket, sum
+     * and count series of the given metric
+     *
+     * @param out where to write the histogram
+     * @param name the name of the metric
+     * @param labels the labels identifying this histogram, like
+     *            <code>stage="fetch"</code>, or an empty string
+     */
+    public void write(StringBuilder out, String name, String labels) {
+        String separator = labels.isEmpty() ? "" : ",";
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+            String bound = i < BOUNDS.length ? BOUNDS[i] : "+Inf";
+            out.append(name).append("_bucket{").append(labels).append(separator).append("le=\"").append(bound)
+                    .append("\"} ").append(count).append('\n');
+        }
+        String braced = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(braced).append(' ').append(sum.get() / 1e9).append('\n');
+        out.append(name).append("_count").append(braced).append(' ').append(count).append('\n');
+    }
+}
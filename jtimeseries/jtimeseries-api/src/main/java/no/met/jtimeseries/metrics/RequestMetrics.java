@@ -0,0 +1,192 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings of the stages of chart and forecast requests, and counts of the
+ * requests served, for export in the Prometheus text format.
+ *
+ * Stages are timed with {@link System#nanoTime()}. The stage histograms are
+ * not split by endpoint, since the work of one request may be spread over
+ * several threads. Instead the total time to serve a request is recorded as
+ * the serve stage, and the requests are counted by endpoint, format and
+ * status.
+ */
+public class RequestMetrics {
+
+    /**
+     * The stages of a request
+     */
+    public enum Stage {
+        /** Getting a forecast from the upstream service or the cache */
+        FETCH,
+        /** Reading a forecast document into a data model */
+        PARSE,
+        /** Filtering the data model and adding it to the plotter */
+        MODEL,
+        /** Building the chart from the plotted data */
+        PLOT,
+        /** Drawing the chart */
+        DRAW,
+        /** Encoding the drawn chart as an image */
+        ENCODE,
+        /** The whole request, as seen by the service */
+        SERVE;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+
+        /**
+         * @return the name of the stage in the exported metrics
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final String STAGE_DURATION = "jtimeseries_stage_duration_seconds";
+    private static final String REQUESTS = "jtimeseries_requests_total";
+
+    private static final RequestMetrics instance = new RequestMetrics();
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+
+    // keyed on the labels of the counter, so that the output is sorted
+    private final ConcurrentMap<String, AtomicLong> requests = new ConcurrentSkipListMap<>();
+
+    public RequestMetrics() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @return the metrics shared by all requests
+     */
+    public static RequestMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Record the time spent in a stage
+     *
+     * @param stage the stage that has just completed
+     * @param start the value of {@link System#nanoTime()} when the stage
+     *            started
+     * @return the current value of {@link System#nanoTime()}, for use as the
+     *         start of the next stage
+     */
+    public long record(Stage stage, long start) {
+        long now = System.nanoTime();
+        stages[stage.ordinal()].observe(now - start);
+        return now;
+    }
+
+    /**
+     * @return the durations recorded for the stage
+     */
+    public LatencyHistogram getHistogram(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * Count a served request
+     *
+     * @param endpoint the name of the service
+     * @param format the format of the response, like "png" or "json"
+     * @param status the http status of the response
+     */
+    public void countRequest(String endpoint, String format, int status) {
+        String key = createLabels(endpoint, format, status);
+        AtomicLong count = requests.get(key);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = requests.putIfAbsent(key, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * @return the number of requests counted with the given labels
+     */
+    public long getRequests(String endpoint, String format, int status) {
+        AtomicLong count = requests.get(createLabels(endpoint, format, status));
+        return count != null ? count.get() : 0;
+    }
+
+    private static String createLabels(String endpoint, String format, int status) {
+        return "endpoint=\"" + escape(endpoint) + "\",format=\"" + escape(format) + "\",status=\"" + status + "\"";
+    }
+
+    /**
+     * Write all metrics in the Prometheus text format
+     *
+     * @param out where to write the metrics
+     */
+    public void write(StringBuilder out) {
+        out.append("# HELP ").append(STAGE_DURATION).append(" Time spent in each stage of a request.\n");
+        out.append("# TYPE ").append(STAGE_DURATION).append(" histogram\n");
+        for (Stage stage : Stage.values()) {
+            getHistogram(stage).write(out, STAGE_DURATION, "stage=\"" + stage.getLabel() + "\"");
+        }
+
+        out.append("# HELP ").append(REQUESTS).append(" Requests served, by endpoint, format and status.\n");
+        out.append("# TYPE ").append(REQUESTS).append(" counter\n");
+        for (Map.Entry<String, AtomicLong> entry : requests.entrySet()) {
+            out.append(REQUESTS).append('{').append(entry.getKey()).append("} ").append(entry.getValue().get())
+                    .append('\n');
+        }
+    }
+
+    /**
+     * Write a single unlabelled value in the Prometheus text format
+     *
+     * @param out where to write the value
+     * @param name the name of the metric
+     * @param type "gauge" or "counter"
+     * @param help a description of the metric
+     * @param value the current value
+     */
+    public static void write(StringBuilder out, String name, String type, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Escape a label value as required by the Prometheus text format
+     */
+    static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,344 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.netcdf;
+
+import static no.met.jtimeseries.Constant.JTIMESERIES_ENV;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache of open netcdf files, shared by all requests, so that a file or
+ * OPeNDAP source is not opened again for every request that reads it.
+ * 
+ * Files are handed out with {@link #acquire(String)}, and must be given back
+ * with {@link #release(NetcdfFileExtractor)} when the caller is done with
+ * them. A file is only closed when nobody is using it: when it has been
+ * unused for longer than the idle time, or to keep the number of open files
+ * at the maximum. A local file that has been modified since it was opened is
+ * opened again.
+ */
+public class NetcdfFileCache {
+
+	private static final Logger logger = Logger.getLogger(NetcdfFileCache.class.getSimpleName());
+
+	private static final int DEFAULT_MAX_OPEN = 32;
+	private static final long DEFAULT_MAX_IDLE = 600000;
+
+	private static class Entry {
+		private final String resource;
+		private final FutureTask<NetcdfFileExtractor> open;
+		private NetcdfFileExtractor extractor = null;
+		private long modified;
+		private long lastUsed;
+		private int users = 0;
+
+		Entry(final String resource) {
+			this.resource = resource;
+			this.open = new FutureTask<NetcdfFileExtractor>(new Callable<NetcdfFileExtractor>() {
+				@Override
+				public NetcdfFileExtractor call() throws IOException {
+					return new NetcdfFileExtractor(resource);
+				}
+			});
+		}
+	}
+
+	private static final NetcdfFileCache instance = createInstance();
+
+	private final int maxOpen;
+	private final long maxIdle;
+
+	// access ordered, so that iteration starts with the least recently used file
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	// files that have been replaced while in use, to be closed when released
+	private final List<Entry> retired = new ArrayList<Entry>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param maxOpen the number of files to keep open. A value of zero or
+	 *            less disables the cache, so that every file is closed when
+	 *            released.
+	 * @param maxIdle how long, in milliseconds, an unused file is kept open.
+	 *            A value of zero or less keeps files open until evicted.
+	 */
+	public NetcdfFileCache(int maxOpen, long maxIdle) {
+		this.maxOpen = maxOpen;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * @return the cache shared by all netcdf requests
+	 */
+	public static NetcdfFileCache getInstance() {
+		return instance;
+	}
+
+	private static NetcdfFileCache createInstance() {
+		int maxOpen = DEFAULT_MAX_OPEN;
+		long maxIdle = DEFAULT_MAX_IDLE;
+		try {
+			no.met.halo.common.ConfigUtils cfg = new no.met.halo.common.ConfigUtils("/config/jtimeseries.properties",
+					JTIMESERIES_ENV);
+			maxOpen = Integer.parseInt(cfg.getRequired("netcdf.cache.maxopen"));
+			maxIdle = Long.parseLong(cfg.getRequired("netcdf.cache.maxidle"));
+		} catch (RuntimeException ex) {
+			logger.log(Level.WARNING, "Using default netcdf cache settings, invalid configuration: " + ex.getMessage(), ex);
+		}
+		return new NetcdfFileCache(maxOpen, maxIdle);
+	}
+
+	/**
+	 * Get an open file, opening it if it is not in the cache. Concurrent
+	 * requests for a file that is not open share one attempt to open it.
+	 * 
+	 * @param resource the file name or URL of the wanted resource
+	 * @return the opened file, which must be released after use
+	 * @throws IOException if the file could not be opened
+	 */
+	public NetcdfFileExtractor acquire(String resource) throws IOException {
+		if ( ! isEnabled() ) {
+			misses.incrementAndGet();
+			return new NetcdfFileExtractor(resource);
+		}
+
+		List<NetcdfFileExtractor> closing = new ArrayList<NetcdfFileExtractor>();
+		Entry entry;
+		boolean opening = false;
+		long modified = getModified(resource);
+		synchronized (this) {
+			evictIdle(closing);
+			entry = entries.get(resource);
+			if ( entry != null && entry.extractor != null && entry.modified != modified ) {
+				retire(entry, closing);
+				entry = null;
+			}
+			if ( entry == null ) {
+				entry = new Entry(resource);
+				entries.put(resource, entry);
+				opening = true;
+				misses.incrementAndGet();
+			}
+			else {
+				hits.incrementAndGet();
+			}
+			entry.users ++;
+		}
+		close(closing);
+
+		if ( opening ) {
+			entry.open.run();
+			synchronized (this) {
+				entry.extractor = getOpened(entry);
+				entry.modified = modified;
+				entry.lastUsed = System.currentTimeMillis();
+				evictExcess(closing);
+			}
+			close(closing);
+		}
+
+		return getOpened(entry);
+	}
+
+	/**
+	 * @return the result of opening the entry's file. If it could not be
+	 *         opened, the entry is removed so that the next request tries
+	 *         again.
+	 */
+	private NetcdfFileExtractor getOpened(Entry entry) throws IOException {
+		try {
+			return entry.open.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			discard(entry);
+			throw new InterruptedIOException("Interrupted while opening " + entry.resource);
+		} catch (ExecutionException e) {
+			discard(entry);
+			Throwable cause = e.getCause();
+			if ( cause instanceof IOException )
+				throw (IOException) cause;
+			if ( cause instanceof RuntimeException )
+				throw (RuntimeException) cause;
+			if ( cause instanceof Error )
+				throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	private synchronized void discard(Entry entry) {
+		entry.users --;
+		if ( entries.get(entry.resource) == entry )
+			entries.remove(entry.resource);
+	}
+
+	/**
+	 * Give back a file that was acquired from this cache
+	 */
+	public void release(NetcdfFileExtractor extractor) {
+		List<NetcdfFileExtractor> closing = new ArrayList<NetcdfFileExtractor>();
+		synchronized (this) {
+			Entry entry = find(extractor);
+			if ( entry == null ) {
+				closing.add(extractor);
+			}
+			else {
+				entry.users --;
+				entry.lastUsed = System.currentTimeMillis();
+				if ( entry.users == 0 && retired.remove(entry) )
+					closing.add(extractor);
+				evictExcess(closing);
+			}
+		}
+		close(closing);
+	}
+
+	private Entry find(NetcdfFileExtractor extractor) {
+		Entry entry = entries.get(extractor.getResource());
+		if ( entry != null && entry.extractor == extractor )
+			return entry;
+		for ( Entry r : retired )
+			if ( r.extractor == extractor )
+				return r;
+		return null;
+	}
+
+	/**
+	 * Remove an opened entry from the cache, closing it now if it is unused
+	 * or else when it is released
+	 */
+	private void retire(Entry entry, List<NetcdfFileExtractor> closing) {
+		entries.remove(entry.resource);
+		evictions.incrementAndGet();
+		if ( entry.users == 0 )
+			closing.add(entry.extractor);
+		else
+			retired.add(entry);
+	}
+
+	private void evictIdle(List<NetcdfFileExtractor> closing) {
+		if ( maxIdle <= 0 )
+			return;
+		long oldest = System.currentTimeMillis() - maxIdle;
+		Iterator<Entry> it = entries.values().iterator();
+		while ( it.hasNext() ) {
+			Entry entry = it.next();
+			if ( entry.users == 0 && entry.extractor != null && entry.lastUsed < oldest ) {
+				it.remove();
+				evictions.incrementAndGet();
+				closing.add(entry.extractor);
+			}
+		}
+	}
+
+	/**
+	 * Close the least recently used files until no more than the maximum are
+	 * open. Files in use are skipped, so the maximum may be exceeded while
+	 * many different files are being read.
+	 */
+	private void evictExcess(List<NetcdfFileExtractor> closing) {
+		Iterator<Entry> it = entries.values().iterator();
+		while ( entries.size() > maxOpen && it.hasNext() ) {
+			Entry entry = it.next();
+			if ( entry.users == 0 && entry.extractor != null ) {
+				it.remove();
+				evictions.incrementAndGet();
+				closing.add(entry.extractor);
+			}
+		}
+	}
+
+	private static void close(List<NetcdfFileExtractor> closing) {
+		for ( NetcdfFileExtractor extractor : closing ) {
+			try {
+				extractor.close();
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Failed to close " + extractor.getResource(), e);
+			}
+		}
+		closing.clear();
+	}
+
+	/**
+	 * @return the modification time of a local file, or zero for remote
+	 *         resources
+	 */
+	private static long getModified(String resource) {
+		File file = new File(resource);
+		return file.isFile() ? file.lastModified() : 0;
+	}
+
+	/**
+	 * Close all unused files, and those in use once they are released
+	 */
+	public void clear() {
+		List<NetcdfFileExtractor> closing = new ArrayList<NetcdfFileExtractor>();
+		synchronized (this) {
+			for ( Entry entry : new ArrayList<Entry>(entries.values()) )
+				if ( entry.extractor != null )
+					retire(entry, closing);
+		}
+		close(closing);
+	}
+
+	public boolean isEnabled() {
+		return maxOpen > 0;
+	}
+
+	public int getMaxOpen() {
+		return maxOpen;
+	}
+
+	/**
+	 * @return the number of files held by the cache, including any that are
+	 *         being opened
+	 */
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+}
@@ -25,6 +25,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
@@ -36,6 +38,7 @@ import java.util.logging.Logger;
 import no.met.halo.common.LogUtils;
 
 import no.met.jtimeseries.Location;
+import no.met.jtimeseries.data.model.GenericDataModel;
 import no.met.jtimeseries.netcdf.projection.GridLocation;
 import no.met.jtimeseries.netcdf.projection.LocationConverter;
 import no.met.jtimeseries.netcdf.projection.LocationConverterFactory;
@@ -47,6 +50,7 @@ import no.met.phenomenen.NumberPhenomenon;
 import org.jfree.util.Log;
 
 import ucar.ma2.Array;
+import ucar.ma2.Index;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Range;
 import ucar.nc2.Attribute;
@@ -55,20 +59,37 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 import ucar.nc2.dataset.NetcdfDataset;
 
+/**
+ * Reads data from a netcdf file or OPeNDAP source.
+ * 
+ * An extractor may be shared between threads, as is done by
+ * {@link NetcdfFileCache}. Reads from the file are synchronized.
+ */
 public class NetcdfFileExtractor {
 
 	private static final Logger logger = Logger.getLogger(NetcdfFileExtractor.class.getName());
+
+	// when batch reading, points this close on a grid row are read together
+	private static final int MAX_READ_GAP = 4;
+	// read all points in one box if it holds no more than this many cells per point
+	private static final int MAX_BOX_CELLS_PER_POINT = 4;
+
+	private final String resource;
 	private NetcdfFile ncFile;
 	
 	private HashSet<String> variables = new HashSet<String>();
 	private List<Date> validTimes = null;
+	private long[] validTimeMillis = null;
+	private LocationConverter locationConverter = null;
 
 	public NetcdfFileExtractor(URL resource) throws IOException {
-		ncFile = NetcdfDataset.openDataset(resource.toString());
+		this.resource = resource.toString();
+		ncFile = NetcdfDataset.openDataset(this.resource);
 		process();		
 	}
 	
 	public NetcdfFileExtractor(String resource) throws FileNotFoundException {
+		this.resource = resource;
 		try {
 			ncFile = NetcdfDataset.openDataset(resource);
 		} catch (IOException e) {
@@ -90,6 +111,20 @@ public class NetcdfFileExtractor {
 		}
 	}
 	
+	/**
+	 * @return the file name or URL this was opened from
+	 */
+	public String getResource() {
+		return resource;
+	}
+
+	/**
+	 * Close the underlying file
+	 */
+	public synchronized void close() throws IOException {
+		ncFile.close();
+	}
+
 	public Set<String> getVariables() {
 		return variables;
 	}
@@ -134,13 +169,16 @@ public class NetcdfFileExtractor {
 		return null; // not found
 	}
 	
-	public List<Date> getValidTimes() throws ParseException, IOException {
+	/**
+	 * @return the times of the file's time dimension. These are read once,
+	 *         and the returned list can not be modified.
+	 */
+	public synchronized List<Date> getValidTimes() throws ParseException, IOException {
 		if ( validTimes == null ) {
 			Variable time = getTimeDimension();
 			if ( time == null )
 				throw new ParseException("Unable to find time dimension in data", 0);
 			
-			validTimes = new Vector<Date>();
 			Array data = time.read();
 			if ( data.getSize() <= 1 )
 				throw new ParseException("Time dimension has size " + data.getSize(), 0);
@@ -153,16 +191,40 @@ public class NetcdfFileExtractor {
 				System.err.println(e.getMessage());
 				timeProvider = TimeProviderFactory.getDefaultTimeProvider();
 			}
-			for ( int i = 0; i < data.getSize(); i ++ ) {
+			Date[] times = new Date[(int) data.getSize()];
+			long[] millis = new long[times.length];
+			for ( int i = 0; i < times.length; i ++ ) {
 				long val = data.getLong(i);
-				validTimes.add(timeProvider.getDate(val));
+				times[i] = timeProvider.getDate(val);
+				millis[i] = times[i].getTime();
 			}
+			validTimes = Collections.unmodifiableList(Arrays.asList(times));
+			validTimeMillis = millis;
 		}
 		return validTimes;
 	}
 
+	/**
+	 * @return the same times as getValidTimes(), in milliseconds. The returned
+	 *         array must not be modified.
+	 */
+	private synchronized long[] getValidTimeMillis() throws ParseException, IOException {
+		getValidTimes();
+		return validTimeMillis;
+	}
+
+	/**
+	 * Get the converter for this file's grid. It is created on first use, so
+	 * that the coordinate axes are only read once per opened file.
+	 */
+	private synchronized LocationConverter getLocationConverter() throws ParseException, IOException {
+		if ( locationConverter == null )
+			locationConverter = LocationConverterFactory.get(ncFile);
+		return locationConverter;
+	}
+
 	private GridLocation getGridLocation(Location location) throws ParseException, IOException {
-		LocationConverter converter = LocationConverterFactory.get(ncFile);
+		LocationConverter converter = getLocationConverter();
 		GridLocation gridLocation = converter.convert(location.getLongitude(), location.getLatitude());
 		return gridLocation;
 	}
@@ -202,7 +264,11 @@ public class NetcdfFileExtractor {
 		return ret;
 	}
 
-	List<Double> getValues(String variable, Location location, Range[] ranges) throws IOException, ParseException, InvalidRangeException {
+	/**
+	 * @return the values of the variable, for each valid time, or null if
+	 *         the variable does not exist or the location is outside the grid
+	 */
+	synchronized double[] getValues(String variable, Location location, Range[] ranges) throws IOException, ParseException, InvalidRangeException {
 		Variable v = ncFile.findVariable(variable);
 		if ( v == null )
 			return null;
@@ -234,15 +300,10 @@ public class NetcdfFileExtractor {
 				return null;
 		}
 
-		Vector<Double> ret = new Vector<Double>();
-		for ( int i = 0; i < data.getSize(); i ++ ) {
-			double val = data.getDouble(i);
-			ret.add(new Double(val));
-		}
-		return ret;
+		return (double[]) data.get1DJavaArray(double.class);
 	}
 	
-	public List<String> getStringValues(String variable) {
+	public synchronized List<String> getStringValues(String variable) {
 		Vector<String> ret = new Vector<String>();
 		
 		Variable v = ncFile.findVariable(variable);
@@ -365,21 +426,163 @@ public class NetcdfFileExtractor {
 	
 	public NumberPhenomenon getPhenomenon(String variable, Location location, Range[] ranges) throws ParseException, IOException, InvalidRangeException {
 
-		List<Date> times = getValidTimes();
-		List<Double> values = getValues(variable, location, ranges);
+		long[] times = getValidTimeMillis();
+		double[] values = getValues(variable, location, ranges);
 				
 		if ( values == null ) {
 			Log.warn("Requested data outside grid");
-			values = Collections.nCopies(times.size(), Double.NaN);
+			values = getMissingValues(times.length);
 		}
 		
-		if ( times.size() != values.size() )
+		if ( times.length != values.length )
 			throw new IllegalArgumentException("date/varaiable size mismatch");
 		
 		NumberPhenomenon ret = new NumberPhenomenon(getName(variable, ranges), getUnit(variable));
-		for ( int i = 0; i < times.size(); i ++ )
-			ret.addValue(times.get(i), values.get(i));
+		ret.addAll(times, values);
 		
 		return ret;
 	}
+
+	private static double[] getMissingValues(int size) {
+		double[] ret = new double[size];
+		Arrays.fill(ret, Double.NaN);
+		return ret;
+	}
+
+	/**
+	 * Get the given variables for many locations at once.
+	 * 
+	 * Variables with time, y and x dimensions, in that order, are read with
+	 * as few reads as possible: one box around all locations if they are
+	 * close together, and otherwise one read for each group of nearby points
+	 * on a grid row. Other variables are read for each location separately.
+	 * 
+	 * @param variables names of the wanted variables. Missing variables are
+	 *            skipped.
+	 * @param locations the wanted locations
+	 * @return a data model for each location, in the order of the locations.
+	 *         Locations outside the grid get NaN values.
+	 */
+	public List<GenericDataModel> getDataModels(Iterable<String> variables, List<Location> locations) throws ParseException, IOException, InvalidRangeException {
+		long[] times = getValidTimeMillis();
+
+		// x and y index for each location, or null if outside the grid
+		int[][] cells = new int[locations.size()][];
+		for ( int i = 0; i < cells.length; i ++ ) {
+			GridLocation gridLocation = getGridLocation(locations.get(i));
+			if ( gridLocation != null )
+				cells[i] = new int[] { (int) Math.round(gridLocation.getX()), (int) Math.round(gridLocation.getY()) };
+		}
+		List<int[]> boxes = planReads(cells);
+
+		List<GenericDataModel> ret = new ArrayList<GenericDataModel>(locations.size());
+		for ( int i = 0; i < locations.size(); i ++ )
+			ret.add(new GenericDataModel());
+
+		Variable time = getTimeDimension();
+
+		for ( String variable : variables ) {
+			Variable v = ncFile.findVariable(variable);
+			if ( v == null )
+				continue;
+
+			if ( v.getRank() != 3 || ! v.getDimension(0).getName().equals(time.getName()) ) {
+				for ( int i = 0; i < locations.size(); i ++ )
+					ret.get(i).addPhenomenen(variable, getPhenomenon(variable, locations.get(i), null));
+				continue;
+			}
+
+			double[][] values = readCells(v, times.length, cells, boxes);
+			for ( int i = 0; i < locations.size(); i ++ ) {
+				NumberPhenomenon phenomenon = new NumberPhenomenon(getName(variable), getUnit(variable));
+				phenomenon.addAll(times, values[i] != null ? values[i] : getMissingValues(times.length));
+				ret.get(i).addPhenomenen(variable, phenomenon);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Decide which parts of the grid to read to cover the given cells
+	 * 
+	 * @return boxes of {first y, last y, first x, last x}
+	 */
+	static List<int[]> planReads(int[][] cells) {
+		// unique cells, sorted by row and then column
+		long[] keys = new long[cells.length];
+		int count = 0;
+		for ( int[] cell : cells )
+			if ( cell != null )
+				keys[count ++] = ((long) cell[1] << 32) | cell[0];
+		Arrays.sort(keys, 0, count);
+		int unique = 0;
+		for ( int i = 0; i < count; i ++ )
+			if ( unique == 0 || keys[i] != keys[unique -1] )
+				keys[unique ++] = keys[i];
+
+		List<int[]> ret = new ArrayList<int[]>();
+		if ( unique == 0 )
+			return ret;
+
+		int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+		int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+		for ( int i = 0; i < unique; i ++ ) {
+			int x = (int) keys[i];
+			int y = (int) (keys[i] >> 32);
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+		long boxCells = ((long) (maxX - minX + 1)) * (maxY - minY + 1);
+		if ( boxCells <= (long) unique * MAX_BOX_CELLS_PER_POINT ) {
+			ret.add(new int[] { minY, maxY, minX, maxX });
+			return ret;
+		}
+
+		int[] run = null;
+		for ( int i = 0; i < unique; i ++ ) {
+			int x = (int) keys[i];
+			int y = (int) (keys[i] >> 32);
+			if ( run != null && run[0] == y && x - run[3] <= MAX_READ_GAP ) {
+				run[3] = x;
+			}
+			else {
+				run = new int[] { y, y, x, x };
+				ret.add(run);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Read a variable with time, y and x dimensions for the given cells
+	 * 
+	 * @return the values for each cell, or null for null cells
+	 */
+	private synchronized double[][] readCells(Variable v, int timeSize, int[][] cells, List<int[]> boxes) throws IOException, InvalidRangeException {
+		double[][] ret = new double[cells.length][];
+		Range time = new Range(timeSize);
+		for ( int[] box : boxes ) {
+			List<Range> ranges = new Vector<Range>();
+			ranges.add(time);
+			ranges.add(new Range(box[0], box[1]));
+			ranges.add(new Range(box[2], box[3]));
+			Array data = v.read(ranges);
+			Index index = data.getIndex();
+
+			for ( int i = 0; i < cells.length; i ++ ) {
+				int[] cell = cells[i];
+				if ( cell == null || ret[i] != null )
+					continue;
+				if ( cell[1] < box[0] || cell[1] > box[1] || cell[0] < box[2] || cell[0] > box[3] )
+					continue;
+				double[] values = new double[timeSize];
+				for ( int t = 0; t < timeSize; t ++ )
+					values[t] = data.getDouble(index.set(t, cell[1] - box[0], cell[0] - box[2]));
+				ret[i] = values;
+			}
+		}
+		return ret;
+	}
 }
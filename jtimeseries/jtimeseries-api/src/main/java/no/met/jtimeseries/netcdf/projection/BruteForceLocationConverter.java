@@ -29,7 +29,8 @@ import ucar.nc2.NetcdfFile;
 
 /**
  * Does a simple linear search through lat/lon variables to find the closest 
- * matching index
+ * matching index. {@link KdTreeLocationConverter} is used for real grids,
+ * since this is far too slow for large ones.
  */
 public class BruteForceLocationConverter implements LocationConverter {
 
@@ -40,9 +41,13 @@ public class BruteForceLocationConverter implements LocationConverter {
 
 	
 	public BruteForceLocationConverter(NetcdfFile source) throws IOException, ParseException {
-		
-		// fill in this
-		
+		CurvilinearGrid grid = CurvilinearGrid.find(source);
+		if ( grid == null )
+			throw new ParseException("Unable to find latitude and longitude grids in data", 0);
+		xSize = grid.getXSize();
+		ySize = grid.getYSize();
+		longitudes = Array.factory(grid.getLongitudes());
+		latitudes = Array.factory(grid.getLatitudes());
 	}
 	
 	// for testing purposes
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.netcdf.projection;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+
+import ucar.ma2.Array;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+/**
+ * The two dimensional latitude and longitude variables of a curvilinear grid,
+ * such as a rotated or projected model grid. Values are stored row by row,
+ * so that the value for cell (x, y) is at index (y * xSize) + x.
+ */
+class CurvilinearGrid {
+
+	private final int xSize;
+	private final int ySize;
+	private final double[] longitudes;
+	private final double[] latitudes;
+
+	CurvilinearGrid(int xSize, int ySize, double[] longitudes, double[] latitudes) {
+		if ( longitudes.length != xSize * ySize || latitudes.length != xSize * ySize )
+			throw new IllegalArgumentException("Coordinate arrays do not match grid size");
+		this.xSize = xSize;
+		this.ySize = ySize;
+		this.longitudes = longitudes;
+		this.latitudes = latitudes;
+	}
+
+	/**
+	 * Read the latitude and longitude variables of the given file
+	 * 
+	 * @return the grid, or null if the file has no two dimensional latitude
+	 *         and longitude variables
+	 */
+	static CurvilinearGrid find(NetcdfFile source) throws IOException, ParseException {
+		Variable longitude = null;
+		Variable latitude = null;
+		for ( Variable var : source.getVariables() ) {
+			if ( var.getRank() != 2 )
+				continue;
+			if ( isCoordinate(var, "longitude", "degrees_east") ) {
+				if ( longitude != null )
+					throw new ParseException("Many longitude variables in document", 0);
+				longitude = var;
+			}
+			else if ( isCoordinate(var, "latitude", "degrees_north") ) {
+				if ( latitude != null )
+					throw new ParseException("Many latitude variables in document", 0);
+				latitude = var;
+			}
+		}
+		if ( longitude == null || latitude == null )
+			return null;
+
+		int[] shape = latitude.getShape();
+		if ( ! Arrays.equals(shape, longitude.getShape()) )
+			throw new ParseException("Latitude and longitude have different shapes", 0);
+
+		return new CurvilinearGrid(shape[1], shape[0], toArray(longitude.read()), toArray(latitude.read()));
+	}
+
+	private static boolean isCoordinate(Variable var, String standardName, String units) {
+		Attribute name = var.findAttribute("standard_name");
+		if ( name != null && name.isString() )
+			return name.getStringValue().equals(standardName);
+		String unitsString = var.getUnitsString();
+		return unitsString != null && unitsString.equals(units);
+	}
+
+	private static double[] toArray(Array a) {
+		return (double[]) a.get1DJavaArray(double.class);
+	}
+
+	int getXSize() {
+		return xSize;
+	}
+
+	int getYSize() {
+		return ySize;
+	}
+
+	double[] getLongitudes() {
+		return longitudes;
+	}
+
+	double[] getLatitudes() {
+		return latitudes;
+	}
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.netcdf.projection;
+
+import java.util.Arrays;
+
+/**
+ * Finds the nearest cell of a curvilinear grid, where each cell has its own
+ * latitude and longitude.
+ * 
+ * Cell centres are stored as points on the unit sphere, and indexed by a
+ * kd-tree. The straight line distance between two such points grows with
+ * the great circle distance between them, so the nearest point in the tree
+ * is also the nearest along the surface of the earth. The tree is built once,
+ * after which each lookup visits O(log n) cells.
+ * 
+ * A location is outside the grid if it is further from its nearest cell than
+ * that cell is from its neighbours.
+ */
+class KdTreeLocationConverter implements LocationConverter {
+
+	private final int xSize;
+	private final int ySize;
+
+	// x, y and z on the unit sphere for each grid index
+	private final float[] points;
+
+	// grid indices, ordered as an implicit balanced tree: the root of the
+	// range [low, high) is at the middle, with smaller values below it
+	private final int[] nodes;
+	private final byte[] splitDimensions;
+
+	private static class Nearest {
+		int index = -1;
+		double distance = Double.MAX_VALUE;
+	}
+
+	KdTreeLocationConverter(CurvilinearGrid grid) {
+		this(grid.getXSize(), grid.getYSize(), grid.getLongitudes(), grid.getLatitudes());
+	}
+
+	/**
+	 * @param longitudes the longitude of each cell, row by row
+	 * @param latitudes the latitude of each cell, row by row
+	 */
+	KdTreeLocationConverter(int xSize, int ySize, double[] longitudes, double[] latitudes) {
+		this.xSize = xSize;
+		this.ySize = ySize;
+
+		int size = xSize * ySize;
+		points = new float[size * 3];
+		int[] indices = new int[size];
+		int count = 0;
+		for ( int i = 0; i < size; i ++ ) {
+			// cells without coordinates can never be nearest
+			if ( Double.isNaN(longitudes[i]) || Double.isNaN(latitudes[i]) ) {
+				Arrays.fill(points, i * 3, (i * 3) + 3, Float.NaN);
+				continue;
+			}
+			double[] point = toPoint(longitudes[i], latitudes[i]);
+			points[i * 3] = (float) point[0];
+			points[(i * 3) + 1] = (float) point[1];
+			points[(i * 3) + 2] = (float) point[2];
+			indices[count ++] = i;
+		}
+		nodes = Arrays.copyOf(indices, count);
+		splitDimensions = new byte[count];
+		build(0, count);
+	}
+
+	private static double[] toPoint(double longitude, double latitude) {
+		double lon = Math.toRadians(longitude);
+		double lat = Math.toRadians(latitude);
+		double cosLat = Math.cos(lat);
+		return new double[] { cosLat * Math.cos(lon), cosLat * Math.sin(lon), Math.sin(lat) };
+	}
+
+	private float coordinate(int index, int dimension) {
+		return points[(index * 3) + dimension];
+	}
+
+	private void build(int low, int high) {
+		while ( high - low > 1 ) {
+			int dimension = getWidestDimension(low, high);
+			int middle = (low + high) >>> 1;
+			select(low, high - 1, middle, dimension);
+			splitDimensions[middle] = (byte) dimension;
+			build(low, middle);
+			low = middle + 1;
+		}
+	}
+
+	/**
+	 * Find the dimension in which the points in the range are most spread out
+	 */
+	private int getWidestDimension(int low, int high) {
+		float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+		float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		for ( int i = low; i < high; i ++ ) {
+			int offset = nodes[i] * 3;
+			for ( int dimension = 0; dimension < 3; dimension ++ ) {
+				float value = points[offset + dimension];
+				if ( value < min[dimension] )
+					min[dimension] = value;
+				if ( value > max[dimension] )
+					max[dimension] = value;
+			}
+		}
+		int ret = 0;
+		for ( int dimension = 1; dimension < 3; dimension ++ ) {
+			if ( max[dimension] - min[dimension] > max[ret] - min[ret] )
+				ret = dimension;
+		}
+		return ret;
+	}
+
+	/**
+	 * Partially sort nodes[low..high], so that the k'th node is in its sorted
+	 * position, with no larger values before it and no smaller values after.
+	 */
+	private void select(int low, int high, int k, int dimension) {
+		while ( low < high ) {
+			float pivot = coordinate(nodes[(low + high) >>> 1], dimension);
+			int i = low;
+			int j = high;
+			while ( i <= j ) {
+				while ( coordinate(nodes[i], dimension) < pivot )
+					i ++;
+				while ( coordinate(nodes[j], dimension) > pivot )
+					j --;
+				if ( i <= j ) {
+					int tmp = nodes[i];
+					nodes[i ++] = nodes[j];
+					nodes[j --] = tmp;
+				}
+			}
+			if ( k <= j )
+				high = j;
+			else if ( k >= i )
+				low = i;
+			else
+				return;
+		}
+	}
+
+	private double distance(int index, double[] point) {
+		double dx = point[0] - coordinate(index, 0);
+		double dy = point[1] - coordinate(index, 1);
+		double dz = point[2] - coordinate(index, 2);
+		return (dx * dx) + (dy * dy) + (dz * dz);
+	}
+
+	private void search(int low, int high, double[] point, Nearest nearest) {
+		if ( low >= high )
+			return;
+		int middle = (low + high) >>> 1;
+		int index = nodes[middle];
+		double distance = distance(index, point);
+		if ( distance < nearest.distance ) {
+			nearest.distance = distance;
+			nearest.index = index;
+		}
+		if ( high - low == 1 )
+			return;
+
+		double offset = point[splitDimensions[middle]] - coordinate(index, splitDimensions[middle]);
+		if ( offset < 0 ) {
+			search(low, middle, point, nearest);
+			if ( offset * offset < nearest.distance )
+				search(middle + 1, high, point, nearest);
+		}
+		else {
+			search(middle + 1, high, point, nearest);
+			if ( offset * offset < nearest.distance )
+				search(low, middle, point, nearest);
+		}
+	}
+
+	/**
+	 * @return the largest squared distance from the given cell to any of its
+	 *         neighbours, or -1 if it has none
+	 */
+	private double getCellSize(int x, int y) {
+		int index = (y * xSize) + x;
+		double[] point = { coordinate(index, 0), coordinate(index, 1), coordinate(index, 2) };
+		double ret = -1;
+		for ( int dy = -1; dy <= 1; dy ++ ) {
+			for ( int dx = -1; dx <= 1; dx ++ ) {
+				int nx = x + dx;
+				int ny = y + dy;
+				if ( (dx == 0 && dy == 0) || nx < 0 || ny < 0 || nx >= xSize || ny >= ySize )
+					continue;
+				int neighbour = (ny * xSize) + nx;
+				if ( Float.isNaN(coordinate(neighbour, 0)) )
+					continue;
+				ret = Math.max(ret, distance(neighbour, point));
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public GridLocation convert(double longitude, double latitude) {
+		Nearest nearest = new Nearest();
+		search(0, nodes.length, toPoint(longitude, latitude), nearest);
+		if ( nearest.index < 0 )
+			return null;
+
+		int x = nearest.index % xSize;
+		int y = nearest.index / xSize;
+		double cellSize = getCellSize(x, y);
+		if ( cellSize >= 0 && nearest.distance > cellSize )
+			return null;
+
+		return new GridLocation(x, y);
+	}
+}
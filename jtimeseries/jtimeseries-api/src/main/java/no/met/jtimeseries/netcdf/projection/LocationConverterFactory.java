@@ -28,7 +28,15 @@ import ucar.nc2.NetcdfFile;
 
 public class LocationConverterFactory {
 
+	/**
+	 * Get a converter for the given file's grid. Files with two dimensional
+	 * latitude and longitude variables are treated as curvilinear grids,
+	 * others must have one dimensional x and y axes.
+	 */
 	public static LocationConverter get(NetcdfFile ncFile) throws IOException, ParseException {
+		CurvilinearGrid grid = CurvilinearGrid.find(ncFile);
+		if ( grid != null )
+			return new KdTreeLocationConverter(grid);
 		return new LonLatGridLocationConverter(ncFile);
 	}
 }
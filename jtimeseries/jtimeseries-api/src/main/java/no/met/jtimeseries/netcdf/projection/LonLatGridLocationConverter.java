@@ -30,10 +30,14 @@ import ucar.nc2.Dimension;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 
+/**
+ * Converts coordinates for grids with one dimensional x and y axes. The axes
+ * are read once, and must be sorted, either rising or falling.
+ */
 class LonLatGridLocationConverter implements LocationConverter {
 
-	private Array x = null;
-	private Array y = null;
+	private double[] x = null;
+	private double[] y = null;
 
 	public LonLatGridLocationConverter(NetcdfFile source) throws IOException, ParseException {
 		for ( Dimension dimension : source.getDimensions() ) {
@@ -45,12 +49,12 @@ class LonLatGridLocationConverter implements LocationConverter {
 					if ( value.equals("X") ) {
 						if ( x != null )
 							throw new ParseException("Many x dimensions in document", 0);
-						x = var.read();
+						x = toArray(var.read());
 					}
 					else if ( value.equals("Y") ) {
 						if ( y != null )
 							throw new ParseException("Many y dimensions in document", 0);
-						y = var.read();
+						y = toArray(var.read());
 					}
 				}
 			}
@@ -65,29 +69,65 @@ class LonLatGridLocationConverter implements LocationConverter {
 	 * For testing
 	 */
 	LonLatGridLocationConverter(Array x, Array y) {
-		this.x = x;
-		this.y = y;
+		this.x = toArray(x);
+		this.y = toArray(y);
 	}
-	
-	private double nearestIndex(Array a, double wantedValue) {
 
-		boolean risingValues = a.getDouble(0) < a.getDouble(1);
+	private static double[] toArray(Array a) {
+		return (double[]) a.get1DJavaArray(double.class);
+	}
+
+	/**
+	 * @return the index of the first element in the rising array that is not
+	 *         smaller than the wanted value, or the array length if there is
+	 *         none
+	 */
+	private static int firstNotBelow(double[] a, double wantedValue) {
+		int low = 0;
+		int high = a.length;
+		while ( low < high ) {
+			int mid = (low + high) >>> 1;
+			if ( a[mid] < wantedValue )
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * @return the index of the first element in the falling array that is
+	 *         smaller than the wanted value, or the array length if there is
+	 *         none
+	 */
+	private static int firstBelow(double[] a, double wantedValue) {
+		int low = 0;
+		int high = a.length;
+		while ( low < high ) {
+			int mid = (low + high) >>> 1;
+			if ( a[mid] >= wantedValue )
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private static double nearestIndex(double[] a, double wantedValue) {
+
+		boolean risingValues = a[0] < a[1];
 		
 		if ( risingValues ) {
-			int low = 0;
-			while ( low +1 < a.getSize() && a.getDouble(low +1) < wantedValue )
-				low ++;
-			
-			double lowValue = a.getDouble(low);
-			if ( low == a.getSize() -1 && lowValue != wantedValue )
+			int above = firstNotBelow(a, wantedValue);
+			if ( above == a.length )
 				return -1;
+			int low = Math.max(above - 1, 0);
 			
-			double highValue = a.getDouble(low +1);
+			double lowValue = a[low];
+			double highValue = a[low +1];
 			
 			if ( lowValue > wantedValue )
 				return -1;
-			if (highValue < wantedValue )
-				return -1;
 			
 			double distanceToLow = wantedValue - lowValue;
 			double distanceToHigh = highValue - wantedValue;
@@ -96,20 +136,15 @@ class LonLatGridLocationConverter implements LocationConverter {
 			return low + decimal;
 		}
 		else {
-			int low = (int) (a.getSize() -1);
-			while ( low > 0 && a.getDouble(low -1) < wantedValue )
-				low --;
-			
-			double lowValue = a.getDouble(low);
-			if ( low == 0 && lowValue != wantedValue )
+			int low = Math.min(firstBelow(a, wantedValue), a.length -1);
+			if ( low == 0 )
 				return -1;
 			
-			double highValue = a.getDouble(low -1);
+			double lowValue = a[low];
+			double highValue = a[low -1];
 			
 			if ( lowValue > wantedValue )
 				return -1;
-			if (highValue < wantedValue )
-				return -1;
 			
 			double distanceToLow = wantedValue - lowValue;
 			double distanceToHigh = highValue - wantedValue;
@@ -36,12 +36,6 @@ import no.met.halo.common.LogUtils;
 import no.met.jtimeseries.ApiMetadata;
 import no.met.jtimeseries.Location;
 import no.met.jtimeseries.chart.Utility;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpHeaders;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 
 /**
  *
@@ -50,6 +44,10 @@ import org.apache.http.impl.client.HttpClients;
 public final class ApiMetadataParser {
     private static final List<String> acceptedElements;
 
+    // thread safe once configured. Jackson copies the date format for each
+    // document it reads.
+    private static final ObjectMapper mapper = createDefaultObjectMapper();
+
     static {
         acceptedElements = new ArrayList<>(2);
         acceptedElements.add("location");
@@ -78,29 +76,21 @@ public final class ApiMetadataParser {
         URL url = LocationForecastAddressFactory.getURL(new Location(longitude, latitude));
         ApiMetadata metadata = new ApiMetadata();
 
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpGet request = new HttpGet(url.toString());
-            // add request headers
-            request.addHeader(HttpHeaders.USER_AGENT, "halo.met.no");
-
-            try (CloseableHttpResponse response = httpClient.execute(request);) {
-                HttpEntity entity = response.getEntity();
-                ObjectMapper mapper = createDefaultObjectMapper();
-                LocationForecast locationForecast = mapper.readValue(entity.getContent(), LocationForecast.class);
-                LocationForecast.Meta meta = locationForecast.getProperties().getMeta();
-
-                ApiMetadata.ApiModel model = new ApiMetadata.ApiModel();
-                //hard code to avoid update halo at the moment
-                model.setName("EPS");
-                //blindly set all run, termin values to updateAt since locationforecast 2 only has updatedAt, this will make halo happy
-                model.setNextRun(meta.getUpdatedAt());
-                model.setNextRun(meta.getUpdatedAt());
-                model.setTermin(meta.getUpdatedAt());
-                model.setRunended(meta.getUpdatedAt());
-                metadata.setAltitude((int)locationForecast.getGeometry().getCoordinates().get(2));
-                metadata.addModel(model);
+        try {
+            LocationForecastCache.Entry document = LocationForecastCache.getInstance().fetch(url.toString());
+            LocationForecast locationForecast = mapper.readValue(document.getData(), LocationForecast.class);
+            LocationForecast.Meta meta = locationForecast.getProperties().getMeta();
 
-            }
+            ApiMetadata.ApiModel model = new ApiMetadata.ApiModel();
+            //hard code to avoid update halo at the moment
+            model.setName("EPS");
+            //blindly set all run, termin values to updateAt since locationforecast 2 only has updatedAt, this will make halo happy
+            model.setNextRun(meta.getUpdatedAt());
+            model.setNextRun(meta.getUpdatedAt());
+            model.setTermin(meta.getUpdatedAt());
+            model.setRunended(meta.getUpdatedAt());
+            metadata.setAltitude((int)locationForecast.getGeometry().getCoordinates().get(2));
+            metadata.addModel(model);
         } catch (IOException ex) {
             LogUtils.logException(Logger.getLogger(ApiMetadataParser.class.getName()), "Failed to parse product from" +url.toString(), ex);
         }
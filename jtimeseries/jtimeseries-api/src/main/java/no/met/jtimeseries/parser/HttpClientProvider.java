@@ -0,0 +1,149 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.parser;
+
+import static no.met.jtimeseries.Constant.JTIMESERIES_ENV;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Holds the http client used for all requests to upstream services.
+ *
+ * The client keeps a pool of open connections, so that repeated requests to
+ * the same server do not pay for a new connection and TLS handshake. Responses
+ * are requested gzip compressed, and are decompressed transparently.
+ */
+public class HttpClientProvider {
+
+    private static final Logger logger = Logger.getLogger(HttpClientProvider.class.getSimpleName());
+
+    private static final String USER_AGENT = "halo.met.no";
+
+    private static final int DEFAULT_MAX_TOTAL = 100;
+    private static final int DEFAULT_MAX_PER_ROUTE = 20;
+    private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    private static final int DEFAULT_SOCKET_TIMEOUT = 20000;
+    private static final long DEFAULT_KEEP_ALIVE = 30000;
+
+    private static final CloseableHttpClient client = createClient();
+
+    private HttpClientProvider() {
+    }
+
+    /**
+     * @return the shared client. It must not be closed.
+     */
+    public static CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Download the given url with the shared client
+     *
+     * @param url the document to get
+     * @return the response body
+     * @throws IOException if the download failed, or the server did not
+     *             respond with 200 OK
+     */
+    public static byte[] getBytes(String url) throws IOException {
+        HttpGet request = new HttpGet(url);
+        try (CloseableHttpResponse response = client.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status != HttpStatus.SC_OK) {
+                EntityUtils.consume(response.getEntity());
+                throw new IOException("Failed to download " + url + ": " + response.getStatusLine());
+            }
+            return EntityUtils.toByteArray(response.getEntity());
+        }
+    }
+
+    private static CloseableHttpClient createClient() {
+        int maxTotal = DEFAULT_MAX_TOTAL;
+        int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+        int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+        int socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+        long keepAlive = DEFAULT_KEEP_ALIVE;
+        try {
+            no.met.halo.common.ConfigUtils cfg = new no.met.halo.common.ConfigUtils("/config/jtimeseries.properties",
+                    JTIMESERIES_ENV);
+            maxTotal = Integer.parseInt(cfg.getRequired("http.client.maxtotal"));
+            maxPerRoute = Integer.parseInt(cfg.getRequired("http.client.maxperroute"));
+            connectTimeout = Integer.parseInt(cfg.getRequired("http.client.connecttimeout"));
+            socketTimeout = Integer.parseInt(cfg.getRequired("http.client.sockettimeout"));
+            keepAlive = Long.parseLong(cfg.getRequired("http.client.keepalive"));
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Using default http client settings, invalid configuration: " + ex.getMessage(),
+                    ex);
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        // pooled connections may have been closed by the server while idle
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .setSocketTimeout(socketTimeout)
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(createKeepAliveStrategy(keepAlive))
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+                .setUserAgent(USER_AGENT)
+                .build();
+    }
+
+    /**
+     * Keep connections alive as long as the server allows, or for the given
+     * time if the server does not say.
+     */
+    private static ConnectionKeepAliveStrategy createKeepAliveStrategy(final long keepAlive) {
+        return new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = super.getKeepAliveDuration(response, context);
+                return duration > 0 ? duration : keepAlive;
+            }
+        };
+    }
+}
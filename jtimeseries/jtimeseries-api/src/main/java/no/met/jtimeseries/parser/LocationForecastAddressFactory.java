@@ -21,6 +21,8 @@
  *******************************************************************************/
 package no.met.jtimeseries.parser;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -35,6 +37,8 @@ import no.met.jtimeseries.Location;
 public class LocationForecastAddressFactory {
 
     private static final Logger logger = Logger.getLogger(LocationForecastAddressFactory.class.getSimpleName());
+
+    private static final int COORDINATE_DECIMALS = 4;
     
     public static URL getURL(Location location) {
     	
@@ -42,9 +46,9 @@ public class LocationForecastAddressFactory {
 
         StringBuilder sBuffer = new StringBuilder("lat=");
         try {
-            sBuffer.append(location.getLatitude());
+            sBuffer.append(formatCoordinate(location.getLatitude()));
             sBuffer.append(";lon=");
-            sBuffer.append(location.getLongitude());
+            sBuffer.append(formatCoordinate(location.getLongitude()));
             if (location.getAltitude() != -10000) {
                 sBuffer.append(";msl=");
                 sBuffer.append((int) location.getAltitude());
@@ -70,4 +74,13 @@ public class LocationForecastAddressFactory {
         return url;    	
     	    	
     }
+
+    /**
+     * Round a coordinate to the 4 decimals used by the api, so that nearby
+     * locations share the same url and so the same cached forecast.
+     */
+    static String formatCoordinate(double coordinate) {
+        return BigDecimal.valueOf(coordinate).setScale(COORDINATE_DECIMALS, RoundingMode.HALF_UP).stripTrailingZeros()
+                .toPlainString();
+    }
 }
@@ -0,0 +1,292 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.parser;
+
+import static no.met.jtimeseries.Constant.JTIMESERIES_ENV;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * A cache of raw responses from the locationforecast api, keyed on the
+ * request url.
+ *
+ * A cached response is reused until it expires, as given by the Expires
+ * header of the response. After that the response is revalidated with
+ * If-Modified-Since, so that an unchanged forecast is not downloaded again.
+ * The cache is bounded by the total number of bytes held, evicting the least
+ * recently used responses first.
+ */
+public class LocationForecastCache {
+
+    private static final Logger logger = Logger.getLogger(LocationForecastCache.class.getSimpleName());
+
+    /**
+     * A downloaded forecast document
+     */
+    public static class Entry {
+        private final byte[] data;
+        private final Date expires;
+        private final String lastModified;
+
+        public Entry(byte[] data, Date expires, String lastModified) {
+            this.data = data;
+            this.expires = expires;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return the response body. This must not be modified.
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        public Date getExpires() {
+            return expires;
+        }
+
+        /**
+         * @return the Last-Modified header of the response, or null if there
+         *         was none
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private static final LocationForecastCache instance = createInstance();
+
+    private final long maxBytes;
+    private long bytes = 0;
+
+    // access ordered, so that iteration starts with the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+
+    private final SingleFlight<String, Entry> downloads = new SingleFlight<>();
+
+    /**
+     * @param maxBytes the maximum total size of the cached responses. A value
+     *            of zero or less disables the cache.
+     */
+    public LocationForecastCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the cache shared by all locationforecast requests
+     */
+    public static LocationForecastCache getInstance() {
+        return instance;
+    }
+
+    private static LocationForecastCache createInstance() {
+        long maxBytes = 0;
+        try {
+            no.met.halo.common.ConfigUtils cfg = new no.met.halo.common.ConfigUtils("/config/jtimeseries.properties",
+                    JTIMESERIES_ENV);
+            maxBytes = Long.parseLong(cfg.getRequired("datasource.cache.maxbytes"));
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Locationforecast cache disabled, invalid configuration: " + ex.getMessage(), ex);
+        }
+        return new LocationForecastCache(maxBytes);
+    }
+
+    /**
+     * Get the document at the given url, either from the cache or by
+     * downloading it.
+     *
+     * @param resource the url of the document
+     * @return the document, with its expiry time
+     * @throws IOException if the document could not be downloaded
+     */
+    public Entry fetch(final String resource) throws IOException {
+        Entry cached = get(resource);
+        if (isValid(cached)) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        // concurrent requests for the same forecast share one download
+        return downloads.execute(resource, new Callable<Entry>() {
+            @Override
+            public Entry call() throws IOException {
+                // another download may have completed since we looked
+                Entry cached = get(resource);
+                return isValid(cached) ? cached : download(resource, cached);
+            }
+        });
+    }
+
+    private static boolean isValid(Entry entry) {
+        return entry != null && entry.getExpires().getTime() > System.currentTimeMillis();
+    }
+
+    /**
+     * Download the document, revalidating the cached copy if there is one
+     */
+    private Entry download(String resource, Entry cached) throws IOException {
+        HttpGet request = new HttpGet(resource);
+        if (cached != null && cached.getLastModified() != null) {
+            request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+        }
+
+        try (CloseableHttpResponse response = HttpClientProvider.getClient().execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            Entry entry;
+            if (status == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+                EntityUtils.consume(response.getEntity());
+                String lastModified = getHeader(response, HttpHeaders.LAST_MODIFIED);
+                entry = new Entry(cached.getData(), getExpires(response),
+                        lastModified != null ? lastModified : cached.getLastModified());
+                revalidations.incrementAndGet();
+            } else if (status == HttpStatus.SC_OK || status == HttpStatus.SC_NON_AUTHORITATIVE_INFORMATION) {
+                entry = new Entry(EntityUtils.toByteArray(response.getEntity()), getExpires(response),
+                        getHeader(response, HttpHeaders.LAST_MODIFIED));
+            } else {
+                EntityUtils.consume(response.getEntity());
+                throw new IOException("Failed to download " + resource + ": " + response.getStatusLine());
+            }
+            put(resource, entry);
+            return entry;
+        }
+    }
+
+    private static String getHeader(CloseableHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    /**
+     * Read the expiry time of the response, falling back to the default when
+     * the header is missing or malformed.
+     */
+    private static Date getExpires(CloseableHttpResponse response) {
+        String expires = getHeader(response, HttpHeaders.EXPIRES);
+        if (expires != null) {
+            Date date = DateUtils.parseDate(expires);
+            if (date != null) {
+                return date;
+            }
+        }
+        return ParseScheme.getDefaultExpires();
+    }
+
+    /**
+     * Get a cached document, even if it has expired
+     */
+    synchronized Entry get(String resource) {
+        return entries.get(resource);
+    }
+
+    /**
+     * Add a document to the cache, evicting the least recently used documents
+     * if the cache becomes too large. Documents larger than the cache itself
+     * are not stored, and the document they replace is removed.
+     */
+    synchronized void put(String resource, Entry entry) {
+        Entry old = entries.remove(resource);
+        if (old != null) {
+            bytes -= old.getData().length;
+        }
+        if (entry.getData().length > maxBytes) {
+            return;
+        }
+        entries.put(resource, entry);
+        bytes += entry.getData().length;
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            bytes -= eldest.getData().length;
+        }
+    }
+
+    /**
+     * Remove all documents from the cache
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of expired documents that were found to be unchanged
+     *         upstream, and so not downloaded again
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return the number of requests that waited for a download started by
+     *         another request
+     */
+    public long getCoalesced() {
+        return downloads.getCoalesced();
+    }
+}
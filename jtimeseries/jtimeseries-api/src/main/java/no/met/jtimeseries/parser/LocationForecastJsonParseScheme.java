@@ -21,40 +21,71 @@
  *******************************************************************************/
 package no.met.jtimeseries.parser;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import no.met.forecasts.LocationForecast;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import no.met.jtimeseries.MeteogramWrapper;
 import no.met.jtimeseries.chart.TimePeriod;
 import no.met.jtimeseries.chart.Utility;
+import no.met.jtimeseries.data.item.SymbolValueItem;
 import no.met.jtimeseries.data.model.GenericDataModel;
+import no.met.jtimeseries.metrics.RequestMetrics;
+import no.met.jtimeseries.metrics.RequestMetrics.Stage;
 import no.met.phenomenen.NumberPhenomenon;
 import no.met.phenomenen.SymbolPhenomenon;
 import no.met.phenomenen.weatherapi.PhenomenonName;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpHeaders;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.dom4j.Document;
 
 import java.io.IOException;
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.List;
-import java.util.TimeZone;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
+
+/**
+ * Parses the json locationforecast format.
+ *
+ * The document is read as a stream of tokens, and the values are written
+ * straight into one column per phenomenon. Time steps outside the forecast
+ * period are skipped without being read.
+ */
 public class LocationForecastJsonParseScheme extends ParseScheme {
 
     private static final Logger logger = Logger.getLogger(LocationForecastJsonParseScheme.class.getSimpleName());
 
-    private DateFormat dateFormat = new SimpleDateFormat(Utility.DATE_FORMAT);
-    private Date timeFrom;
-    private Date timeTo;
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    // the details of "instant" that are read, and the phenomena they are
+    // stored in. The first UNIT_AWARE phenomena get their unit from the
+    // document, the others use zero for missing values.
+    private static final String[] INSTANT_PROPERTIES = { "air_temperature", "dew_point_temperature",
+            "air_pressure_at_sea_level", "cloud_area_fraction", "cloud_area_fraction_low",
+            "cloud_area_fraction_medium", "cloud_area_fraction_high", "fog_area_fraction", "wind_from_direction",
+            "wind_speed" };
+    private static final PhenomenonName[] INSTANT_PHENOMENA = { PhenomenonName.AirTemperature,
+            PhenomenonName.dewPointTemperature, PhenomenonName.Pressure, PhenomenonName.Cloudiness,
+            PhenomenonName.LowCloud, PhenomenonName.MediumCloud, PhenomenonName.HighCloud, PhenomenonName.Fog,
+            PhenomenonName.WindDirectionDegree, PhenomenonName.WindSpeedMPS };
+    private static final int UNIT_AWARE = 3;
+
+    // the periods that are read, and their length in hours
+    private static final String[] PERIODS = { "next_1_hours", "next_6_hours" };
+    private static final int[] PERIOD_HOURS = { 1, 6 };
+
+    // the details of the periods that are read, and the phenomena they are
+    // stored in. All but the first are only used if the document gives
+    // their unit.
+    private static final String[] PERIOD_PROPERTIES = { "precipitation_amount", "precipitation_amount_max",
+            "precipitation_amount_min" };
+    private static final PhenomenonName[] PERIOD_PHENOMENA = { PhenomenonName.Precipitation,
+            PhenomenonName.PrecipitationMax, PhenomenonName.PrecipitationMin };
+
+    private static final Map<String, Integer> INSTANT_INDEX = createIndex(INSTANT_PROPERTIES);
+    private static final Map<String, Integer> PERIOD_INDEX = createIndex(PERIOD_PROPERTIES);
 
     private GenericDataModel model;
     private TimePeriod forecastPeriod;
@@ -63,30 +94,18 @@ public class LocationForecastJsonParseScheme extends ParseScheme {
     public LocationForecastJsonParseScheme() {
         model = new GenericDataModel();
     	forecastPeriod = null;
-        // to prevent problems when converting between daylight savings hours
-        // and not
-        // we use UTC which does not have this problem.
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
 
     public LocationForecastJsonParseScheme(Date start, Date end) {
 
         model = new GenericDataModel();
     	forecastPeriod = new TimePeriod(start, end);
-        // to prevent problems when converting between daylight savings hours
-        // and not
-        // we use UTC which does not have this problem.
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
 
     }
 
     public LocationForecastJsonParseScheme(TimePeriod timePeriod) {
         model = new GenericDataModel();
     	this.forecastPeriod = timePeriod;
-        // to prevent problems when converting between daylight savings hours
-        // and not
-        // we use UTC which does not have this problem.
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
 
 
@@ -94,190 +113,328 @@ public class LocationForecastJsonParseScheme extends ParseScheme {
 
         model = new GenericDataModel();
     	forecastPeriod = new TimePeriod(new Date(), hours);
-        // to prevent problems when converting between daylight savings hours
-        // and not
-        // we use UTC which does not have this problem.
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
 
     @Override
-    protected void parse(Document document) throws ParseException {
-        throw new UnsupportedOperationException();
+    public GenericDataModel parse(String resource) throws IOException {
+
+        //"https://api.met.no/weatherapi/locationforecast/2.0/complete?lat=60.10&lon=9.58"
+        RequestMetrics metrics = RequestMetrics.getInstance();
+        long start = System.nanoTime();
+        LocationForecastCache.Entry document = LocationForecastCache.getInstance().fetch(resource);
+        start = metrics.record(Stage.FETCH, start);
+        model.setExpires(document.getExpires());
+        parse(document.getData());
+        metrics.record(Stage.PARSE, start);
+        return model;
     }
 
-    @Override
-    public GenericDataModel parse(String resource) throws IOException {
+    /**
+     * Add the time steps of a locationforecast document that are inside the
+     * forecast period to the model
+     *
+     * @param document the json document
+     * @return the model
+     * @throws IOException if the document could not be parsed
+     */
+    public GenericDataModel parse(byte[] document) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(document)) {
+            Reader reader = new Reader(parser);
+            reader.readDocument();
+            reader.addToModel();
+        }
+        return model;
+    }
 
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            //"https://api.met.no/weatherapi/locationforecast/2.0/complete?lat=60.10&lon=9.58"
-            HttpGet request = new HttpGet(resource);
-            // add request headers
-            request.addHeader(HttpHeaders.USER_AGENT, "halo.met.no");
-
-            try (CloseableHttpResponse response = httpClient.execute(request);) {
-                HttpEntity entity = response.getEntity();
-                ObjectMapper mapper = createDefaultObjectMapper();
-                LocationForecast locationForecast = mapper.readValue(entity.getContent(), LocationForecast.class);
-                LocationForecast.Meta meta = locationForecast.getProperties().getMeta();
-                List<LocationForecast.TimeSeries> timeSeries = locationForecast.getProperties().getTimeSeries();
-                String unit = null;
-                for (LocationForecast.TimeSeries ts : timeSeries) {
-                    timeFrom = ts.getTime();
-                    if (forecastPeriod.inside(ts.getTime())) {
-
-                        addUnitAwareGenericNumberPhenomenon(PhenomenonName.AirTemperature.toString(),
-                                locationForecast.getProperties().getMeta().getUnits().get("air_temperature"),
-                                ts, "air_temperature");
-
-                        addUnitAwareGenericNumberPhenomenon(PhenomenonName.dewPointTemperature.toString(),
-                                locationForecast.getProperties().getMeta().getUnits().get("dew_point_temperature"),
-                                ts, "dew_point_temperature");
-
-                        addUnitAwareGenericNumberPhenomenon(PhenomenonName.Pressure.toString(),
-                                locationForecast.getProperties().getMeta().getUnits().get("air_pressure_at_sea_level"),
-                                ts, "air_pressure_at_sea_level");
-
-                        addMultipleTimeResolutionNumberPhenomenon(PhenomenonName.Precipitation,
-                                locationForecast.getProperties().getMeta().getUnits().get("precipitation_amount"),
-                                ts, "precipitation_amount");
-
-                        unit = meta.getUnits().get("precipitation_amount_max");
-                        if (unit != null) {
-                            addMultipleTimeResolutionNumberPhenomenon(PhenomenonName.PrecipitationMax,
-                                    locationForecast.getProperties().getMeta().getUnits().get("precipitation_amount_max"),
-                                    ts, "precipitation_amount_max");
-                        }
+    private static Map<String, Integer> createIndex(String[] properties) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < properties.length; i++) {
+            index.put(properties[i], i);
+        }
+        return index;
+    }
 
-                        unit = meta.getUnits().get("precipitation_amount_min");
-                        if (unit != null) {
-                            addMultipleTimeResolutionNumberPhenomenon(PhenomenonName.PrecipitationMin,
-                                    locationForecast.getProperties().getMeta().getUnits().get("precipitation_amount_min"),
-                                    ts, "precipitation_amount_min");
-                        }
+    /**
+     * Reads one document into columns, which are added to the model when the
+     * whole document has been read.
+     */
+    private class Reader {
+
+        private final JsonParser parser;
+        private final int symbolResolution;
+
+        private final Map<String, String> units = new HashMap<>();
+        private final NumberPhenomenon[] instantColumns = new NumberPhenomenon[INSTANT_PROPERTIES.length];
+        private final NumberPhenomenon[][] periodColumns = new NumberPhenomenon[PERIODS.length][PERIOD_PROPERTIES.length];
+        private final SymbolPhenomenon symbols = new SymbolPhenomenon();
+
+        // the current time step, with NaN for missing values
+        private long time;
+        private boolean hasTime;
+        private final double[] instantValues = new double[INSTANT_PROPERTIES.length];
+        private final boolean[] hasPeriod = new boolean[PERIODS.length];
+        private final double[][] periodValues = new double[PERIODS.length][PERIOD_PROPERTIES.length];
+        private String symbol;
+
+        Reader(JsonParser parser) {
+            this.parser = parser;
+            symbolResolution = (Utility.hourDifference(forecastPeriod.getStart(), forecastPeriod.getEnd()) <= MeteogramWrapper.SHORT_TERM_HOURS ? 1 : 6);
+            for (int i = 0; i < instantColumns.length; i++) {
+                instantColumns[i] = new NumberPhenomenon();
+            }
+            for (NumberPhenomenon[] columns : periodColumns) {
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = new NumberPhenomenon();
+                }
+            }
+        }
 
-                        addGenericNumberPhenomenon(PhenomenonName.Cloudiness.toString(),
-                                ts, "cloud_area_fraction");
+        void readDocument() throws IOException {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals("properties")) {
+                    readProperties();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
 
-                        addGenericNumberPhenomenon(PhenomenonName.LowCloud.toString(),
-                                ts, "cloud_area_fraction_low");
+        private void readProperties() throws IOException {
+            expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals("meta")) {
+                    readMeta();
+                } else if (name.equals("timeseries")) {
+                    readTimeSeries();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
 
-                        addGenericNumberPhenomenon(PhenomenonName.MediumCloud.toString(),
-                                ts, "cloud_area_fraction_medium");
+        private void readMeta() throws IOException {
+            expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_OBJECT && name.equals("units")) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String property = parser.getCurrentName();
+                        parser.nextToken();
+                        units.put(property, parser.getValueAsString());
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
 
-                        addGenericNumberPhenomenon(PhenomenonName.HighCloud.toString(),
-                                ts, "cloud_area_fraction_high");
+        private void readTimeSeries() throws IOException {
+            expect(parser.getCurrentToken(), JsonToken.START_ARRAY);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                readTimeStep();
+            }
+        }
 
-                        addGenericNumberPhenomenon(PhenomenonName.Fog.toString(),
-                                ts, "fog_area_fraction");
+        private void readTimeStep() throws IOException {
+            hasTime = false;
+            Arrays.fill(instantValues, Double.NaN);
+            Arrays.fill(hasPeriod, false);
+            for (double[] values : periodValues) {
+                Arrays.fill(values, Double.NaN);
+            }
+            symbol = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals("time")) {
+                    time = parseTime();
+                    hasTime = true;
+                } else if (name.equals("data") && (!hasTime || forecastPeriod.inside(time))) {
+                    readData();
+                } else {
+                    parser.skipChildren();
+                }
+            }
 
-                        addSymbol(PhenomenonName.WeatherSymbols, ts, "");
+            if (hasTime && forecastPeriod.inside(time)) {
+                addTimeStep();
+            }
+        }
 
-                        addGenericNumberPhenomenon(PhenomenonName.WindDirectionDegree.toString(),
-                                ts, "wind_from_direction");
+        private void readData() throws IOException {
+            expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                int period = name.equals(PERIODS[0]) ? 0 : name.equals(PERIODS[1]) ? 1 : -1;
+                if (name.equals("instant")) {
+                    readInstant();
+                } else if (period >= 0) {
+                    hasPeriod[period] = true;
+                    readPeriod(PERIOD_HOURS[period] == symbolResolution, periodValues[period]);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
 
-                        addGenericNumberPhenomenon(PhenomenonName.WindSpeedMPS.toString(),
-                                ts, "wind_speed");
-                    }
+        private void readInstant() throws IOException {
+            expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals("details")) {
+                    readDetails(INSTANT_INDEX, instantValues);
+                } else {
+                    parser.skipChildren();
                 }
             }
         }
-        return model;
-    }
 
-    private void addSymbol(PhenomenonName phenomenonName, LocationForecast.TimeSeries ts, String propertyName ) {
-        int timeResolution = (Utility.hourDifference(forecastPeriod.getStart(), forecastPeriod.getEnd()) <= MeteogramWrapper.SHORT_TERM_HOURS ? 1 : 6);
-        // until we can remove multiple time resolution phenomenon
-        if (timeResolution == 1 ) {
-            timeTo = timeFrom;
-        } else {
-            timeTo = Utility.getDateWithAddedHours(ts.getTime(), timeResolution);
+        private void readPeriod(boolean readSymbol, double[] values) throws IOException {
+            expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals("details")) {
+                    readDetails(PERIOD_INDEX, values);
+                } else if (name.equals("summary") && readSymbol) {
+                    readSummary();
+                } else {
+                    parser.skipChildren();
+                }
+            }
         }
-        LocationForecast.NextXHours nextXHours = (timeResolution == 1) ? ts.getData().getNext1Hours() : ts.getData().getNext6Hours();
-        if (nextXHours != null) {
-            if (!model.isExist(PhenomenonName.WeatherSymbols.nameWithResolution(timeResolution))) {
-                SymbolPhenomenon weatherSymbols = new SymbolPhenomenon();
-                weatherSymbols.addValue(timeFrom, timeTo, nextXHours.getSummary().getSymbolCode());
-                model.addPhenomenen(PhenomenonName.WeatherSymbols.nameWithResolution(timeResolution), weatherSymbols);
 
-            } else {
-                model.getSymbolPhenomenon(PhenomenonName.WeatherSymbols.nameWithResolution(timeResolution)).addValue(
-                        timeFrom, timeTo, nextXHours.getSummary().getSymbolCode());
+        private void readSummary() throws IOException {
+            expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals("symbol_code")) {
+                    symbol = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
             }
         }
-    }
 
-    public void addMultipleTimeResolutionNumberPhenomenon(PhenomenonName phenomenonName, String unit, LocationForecast.TimeSeries ts,
-                                                          String propertyName ) {
-        //int timeResolution = (Utility.hourDifference(forecastPeriod.getStart(), forecastPeriod.getEnd()) <= MeteogramWrapper.SHORT_TERM_HOURS ? 1 : 6);
-        // until we can remove multiple time resolution phenomenon
-        LocationForecast.NextXHours next1Hours = ts.getData().getNext1Hours();
-
-        if (next1Hours != null) {
-            timeTo = Utility.getDateWithAddedHours(ts.getTime(), 1);
-            if (!model.isExist(phenomenonName.nameWithResolution(1))) {
-                NumberPhenomenon phenom = new NumberPhenomenon();
-                phenom.addValue(timeFrom, timeTo,
-                        new Double((Double) next1Hours.getDetails().get(propertyName)));
-                model.addPhenomenen(phenomenonName.nameWithResolution(1), phenom);
-            } else {
-                model.getNumberPhenomenon(phenomenonName.nameWithResolution(1)).addValue(timeFrom, timeTo,
-                        new Double((Double) next1Hours.getDetails().get(propertyName)));
+        /**
+         * Read an object with the given properties into values, ignoring
+         * other properties
+         */
+        private void readDetails(Map<String, Integer> index, double[] values) throws IOException {
+            expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Integer property = index.get(parser.getCurrentName());
+                JsonToken token = parser.nextToken();
+                if (property != null && token.isNumeric()) {
+                    values[property] = parser.getDoubleValue();
+                } else {
+                    parser.skipChildren();
+                }
             }
         }
 
-        LocationForecast.NextXHours next6Hours = ts.getData().getNext6Hours();
-        if (next6Hours != null) {
-            timeTo = Utility.getDateWithAddedHours(ts.getTime(), 6);
-            if (!model.isExist(phenomenonName.nameWithResolution(6))) {
-                NumberPhenomenon phenom = new NumberPhenomenon();
-                phenom.addValue(timeFrom, timeTo,
-                        new Double((Double) next6Hours.getDetails().get(propertyName)));
-                model.addPhenomenen(phenomenonName.nameWithResolution(6), phenom);
-            } else {
-                model.getNumberPhenomenon(phenomenonName.nameWithResolution(6)).addValue(timeFrom, timeTo,
-                        new Double((Double) next6Hours.getDetails().get(propertyName)));
+        private void addTimeStep() {
+            for (int i = 0; i < instantValues.length; i++) {
+                double value = instantValues[i];
+                if (Double.isNaN(value)) {
+                    if (i < UNIT_AWARE) {
+                        continue;
+                    }
+                    value = 0;
+                }
+                instantColumns[i].add(time, time, value);
+            }
+            for (int period = 0; period < PERIODS.length; period++) {
+                if (hasPeriod[period]) {
+                    long timeTo = time + PERIOD_HOURS[period] * HOUR;
+                    for (int i = 0; i < PERIOD_PROPERTIES.length; i++) {
+                        if (!Double.isNaN(periodValues[period][i])) {
+                            periodColumns[period][i].add(time, timeTo, periodValues[period][i]);
+                        }
+                    }
+                }
+            }
+            if (symbol != null) {
+                // until we can remove multiple time resolution phenomenon
+                long timeTo = symbolResolution == 1 ? time : time + symbolResolution * HOUR;
+                symbols.addValue(new Date(time), new Date(timeTo), symbol);
             }
         }
-    }
 
-    private void addUnitAwareGenericNumberPhenomenon(String phenomenonName, String unit, LocationForecast.TimeSeries ts,
-                                                     String propertyName) {
-        if (!model.isExist(phenomenonName))  {
-            NumberPhenomenon phenom = new NumberPhenomenon();
-            phenom.setUnit(unit);
-            phenom.addValue(timeFrom, new Double((Double)ts.getData().getInstant().getDetails().get(propertyName)));
-            model.addPhenomenen(phenomenonName, phenom);
-        }  else {
-            model.getPhenomenen(phenomenonName,
-                    NumberPhenomenon.class).addValue(timeFrom,
-                    new Double((Double)ts.getData().getInstant().getDetails().get(propertyName)));
+        /**
+         * Add the columns that have values to the model
+         */
+        void addToModel() {
+            for (int i = 0; i < instantColumns.length; i++) {
+                String unit = i < UNIT_AWARE ? units.get(INSTANT_PROPERTIES[i]) : null;
+                addColumn(INSTANT_PHENOMENA[i].toString(), instantColumns[i], i < UNIT_AWARE, unit);
+            }
+            for (int period = 0; period < PERIODS.length; period++) {
+                for (int i = 0; i < PERIOD_PROPERTIES.length; i++) {
+                    if (i == 0 || units.get(PERIOD_PROPERTIES[i]) != null) {
+                        addColumn(PERIOD_PHENOMENA[i].nameWithResolution(PERIOD_HOURS[period]),
+                                periodColumns[period][i], false, null);
+                    }
+                }
+            }
+
+            String name = PhenomenonName.WeatherSymbols.nameWithResolution(symbolResolution);
+            if (symbols.getItems().isEmpty()) {
+                return;
+            }
+            if (!model.isExist(name)) {
+                model.addPhenomenen(name, symbols);
+            } else {
+                SymbolPhenomenon existing = model.getSymbolPhenomenon(name);
+                for (SymbolValueItem item : symbols) {
+                    existing.addValue(item.getTimeFrom(), item.getTimeTo(), item.getName());
+                }
+            }
         }
-    }
 
-    private void addGenericNumberPhenomenon(String phenomenonName, LocationForecast.TimeSeries ts,
-                                            String propertyName ) {
-        timeTo = timeFrom;
-            if (!model.isExist(phenomenonName)) {
-                NumberPhenomenon phenom = new NumberPhenomenon();
-                phenom.addValue(timeFrom, timeTo, new Double((Double) ts.getData().getInstant().getDetails().get(propertyName)));
-                model.addPhenomenen(phenomenonName, phenom);
+        private void addColumn(String name, NumberPhenomenon column, boolean setUnit, String unit) {
+            if (column.size() == 0) {
+                return;
+            }
+            if (!model.isExist(name)) {
+                if (setUnit) {
+                    column.setUnit(unit);
+                }
+                model.addPhenomenen(name, column);
             } else {
-                Number number = ts.getData().getInstant().getDetails().get(propertyName);
-                if (number == null) number = 0.0;
-                model.getPhenomenen(phenomenonName,
-                        NumberPhenomenon.class).addValue(timeFrom, timeTo,
-                        new Double((Double) number));
+                NumberPhenomenon existing = model.getNumberPhenomenon(name);
+                for (int i = 0; i < column.size(); i++) {
+                    existing.add(column.getTimeFromMillis(i), column.getTimeToMillis(i), column.getValueAt(i));
+                }
             }
+        }
 
-    }
+        private long parseTime() throws IOException {
+            expect(parser.getCurrentToken(), JsonToken.VALUE_STRING);
+            try {
+                // read from the buffer of the parser, without creating a string
+                return Utility.parseDateUTC(parser.getTextCharacters(), parser.getTextOffset(),
+                        parser.getTextLength());
+            } catch (ParseException e) {
+                throw new IOException("Invalid time " + parser.getText() + " at " + parser.getCurrentLocation(), e);
+            }
+        }
 
-    private ObjectMapper createDefaultObjectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
-        DateFormat dateFormat = new SimpleDateFormat(Utility.DATE_FORMAT);
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-        mapper.setDateFormat(dateFormat);
-        mapper.enable(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY);
-        return mapper;
+        private void expect(JsonToken token, JsonToken expected) throws IOException {
+            if (token != expected) {
+                throw new IOException("Expected " + expected + " but found " + token + " at "
+                        + parser.getCurrentLocation());
+            }
+        }
     }
 
     @Override
@@ -21,13 +21,17 @@
  *******************************************************************************/
 package no.met.jtimeseries.parser;
 
-import java.text.DateFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.TimeZone;
 import java.util.logging.Logger;
-import no.met.halo.common.LogUtils;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import no.met.jtimeseries.chart.TimePeriod;
 import no.met.jtimeseries.chart.Utility;
 import no.met.jtimeseries.data.model.GenericDataModel;
@@ -36,19 +40,18 @@ import no.met.phenomenen.SymbolPhenomenon;
 import no.met.phenomenen.TextPhenomenon;
 import no.met.phenomenen.weatherapi.PhenomenonName;
 
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.Element;
-import org.dom4j.Node;
-import org.dom4j.io.SAXReader;
-
-public class LocationForecastParseScheme extends ParseScheme {
+/**
+ * Parses the xml locationforecast format. The document is read as a stream,
+ * and elements outside the forecast period are passed over without being
+ * read.
+ */
+public class LocationForecastParseScheme extends XmlParseScheme {
     
     private static final Logger logger = Logger.getLogger(LocationForecastParseScheme.class.getSimpleName());
 
-    private DateFormat dateFormat = new SimpleDateFormat(Utility.DATE_FORMAT);
-    private Date timeFrom;
-    private Date timeTo;
+    private boolean hasTime;
+    private long timeFrom;
+    private long timeTo;
 
     private GenericDataModel model;
     private TimePeriod forecastPeriod;
@@ -57,30 +60,18 @@ public class LocationForecastParseScheme extends ParseScheme {
     public LocationForecastParseScheme() {
         model = new GenericDataModel();
     	forecastPeriod = null;
-        // to prevent problems when converting between daylight savings hours
-        // and not
-        // we use UTC which does not have this problem.
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
     
     public LocationForecastParseScheme(Date start, Date end) {
         
         model = new GenericDataModel();
     	forecastPeriod = new TimePeriod(start, end);
-        // to prevent problems when converting between daylight savings hours
-        // and not
-        // we use UTC which does not have this problem.
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     	
     }
     
     public LocationForecastParseScheme(TimePeriod timePeriod) {
         model = new GenericDataModel();
     	this.forecastPeriod = timePeriod;
-        // to prevent problems when converting between daylight savings hours
-        // and not
-        // we use UTC which does not have this problem.
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
 
     
@@ -88,10 +79,6 @@ public class LocationForecastParseScheme extends ParseScheme {
         
         model = new GenericDataModel();
     	forecastPeriod = new TimePeriod(new Date(), hours);
-        // to prevent problems when converting between daylight savings hours
-        // and not
-        // we use UTC which does not have this problem.
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
 
     @Override
@@ -109,9 +96,24 @@ public class LocationForecastParseScheme extends ParseScheme {
      * @throws ParseException
      */
     @Override
-    public void parse(Document document) throws ParseException {
-        //Document document = openDataSource(getURLWithAllParameter().toString());
-        xmlTreeWalk(document);
+    protected void parse(XMLStreamReader reader) throws ParseException, XMLStreamException {
+        hasTime = false;
+        boolean wanted = inWantedTimeFrame();
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (reader.getLocalName().equals("time")) {
+                timeFrom = Utility.parseDateUTC(reader.getAttributeValue(null, "from"));
+                timeTo = Utility.parseDateUTC(reader.getAttributeValue(null, "to"));
+                hasTime = true;
+                wanted = inWantedTimeFrame();
+            }
+            // read phenomena if it is inside forecast-period
+            else if (wanted) {
+                readPhenomenen(reader);
+            }
+        }
     }
 
     /**
@@ -120,42 +122,24 @@ public class LocationForecastParseScheme extends ParseScheme {
      *
      * @param filename The file:// url the file you want to parse.
      * @throws ParseException
+     * @throws IOException if the file could not be read
      */
-    public void parseFromFile(String filename) throws ParseException {
-        Document document = openDataSource(filename);
-        xmlTreeWalk(document);
-    }
-
-    public void xmlTreeWalk(Document document) throws ParseException {
-        xmlTreeWalk(document.getRootElement());
+    public void parseFromFile(String filename) throws ParseException, IOException {
+        try (InputStream in = new URL(filename).openStream()) {
+            parse(in);
+        }
     }
 
     private boolean inWantedTimeFrame() {
     	if ( forecastPeriod == null )
     		return true;
     	
-    	return forecastPeriod.inside(timeFrom) && forecastPeriod.inside(timeTo);
-    }
-    
-    public void xmlTreeWalk(Element element) throws ParseException {
-        for (int i = 0, size = element.nodeCount(); i < size; i++) {
-            Node node = element.node(i);
-            if (node instanceof Element) {
-                if (((Element) node).getName().equals("time")) {
-                    timeFrom = dateFormat.parse(((Element) node).attributeValue("from"));
-                    timeTo = dateFormat.parse(((Element) node).attributeValue("to"));                    
-                }
-                // read phenomena if it is inside forecast-period
-                else if (inWantedTimeFrame())
-                    readPhenomenen((Element) node);
-                xmlTreeWalk((Element) node);
-            }
-        }
+    	return hasTime && forecastPeriod.inside(timeFrom) && forecastPeriod.inside(timeTo);
     }
 
     // parse everthing in one go
-    private void readPhenomenen(Element node) throws  ParseException {
-        String name = node.getName();
+    private void readPhenomenen(XMLStreamReader node) throws  ParseException {
+        String name = node.getLocalName();
         // use simple try-catch and throws parse exception approach in order to synergize with netcdf parser. 
         //Because it might possible that the MissingParamter error is not valid in case of netcdf files
         try {
@@ -178,10 +162,10 @@ public class LocationForecastParseScheme extends ParseScheme {
 
             } else if (name.equalsIgnoreCase("precipitation")) {
 
-                if (node.attributeValue("maxvalue") != null) {
+                if (node.getAttributeValue(null, "maxvalue") != null) {
                     addMultipleTimeResolutionNumberPhenomenon(PhenomenonName.PrecipitationMax, "maxvalue", node);
                 }                
-                if (node.attributeValue("minvalue") != null){
+                if (node.getAttributeValue(null, "minvalue") != null){
                     addMultipleTimeResolutionNumberPhenomenon(PhenomenonName.PrecipitationMin, "minvalue", node);            	
                 }
 
@@ -192,16 +176,12 @@ public class LocationForecastParseScheme extends ParseScheme {
 
                 int timeResolution = Utility.hourDifference(timeFrom, timeTo);
                 // until we can remove multiple time resolution phenomenon
-                if (!model.isExist(PhenomenonName.WeatherSymbols.nameWithResolution(timeResolution)))  {
-
-                    SymbolPhenomenon weatherSymbols = new SymbolPhenomenon();                 
-                    weatherSymbols.addValue(timeFrom, timeTo, node.attributeValue("number"));
-                    model.addPhenomenen(PhenomenonName.WeatherSymbols.nameWithResolution(timeResolution), weatherSymbols);                
-
-                }  else {
-                    model.getSymbolPhenomenon(PhenomenonName.WeatherSymbols.nameWithResolution(timeResolution)).addValue(timeFrom, timeTo, node.attributeValue("number"));
-                }               
-
+                String symbolName = PhenomenonName.WeatherSymbols.nameWithResolution(timeResolution);
+                if (!model.isExist(symbolName))  {
+                    model.addPhenomenen(symbolName, new SymbolPhenomenon());
+                }
+                model.getSymbolPhenomenon(symbolName).addValue(new Date(timeFrom), new Date(timeTo),
+                        node.getAttributeValue(null, "number"));
 
             } else if (name.equalsIgnoreCase("cloudiness")) {
                 addGenericNumberPhenomenon(PhenomenonName.Cloudiness, "percent", node);
@@ -220,80 +200,53 @@ public class LocationForecastParseScheme extends ParseScheme {
         }
 
     }
-    
-    private void addGenericNumberPhenomenon(PhenomenonName phenomenonType, String attributeName, Element node ) {
-    	addGenericNumberPhenomenon(phenomenonType.toString(), attributeName, node);
+
+    /**
+     * @return the value of the attribute of the current element
+     * @throws NullPointerException if the element does not have the attribute
+     */
+    private static double getDoubleAttribute(XMLStreamReader node, String attributeName) {
+        String value = node.getAttributeValue(null, attributeName);
+        if (value == null) {
+            throw new NullPointerException(attributeName);
+        }
+        return Double.parseDouble(value);
     }
-    
-    private void addGenericNumberPhenomenon(String phenomenonName, String attributeName, Element node ) {
+
+    private NumberPhenomenon getNumberPhenomenon(String phenomenonName) {
         if (!model.isExist(phenomenonName))  {
-        	NumberPhenomenon phenom = new NumberPhenomenon();           
-            phenom.addValue(timeFrom, timeTo, new Double(node.attributeValue(attributeName)).doubleValue());
-            model.addPhenomenen(phenomenonName, phenom);                
-        }  else {
-            model.getPhenomenen(phenomenonName, 
-            		NumberPhenomenon.class).addValue(timeFrom, timeTo, new Double(node.attributeValue(attributeName)).doubleValue());
-        }            
-    }    
-    
-    private void addUnitAwareGenericNumberPhenomenon(PhenomenonName phenomenonType, String attributeName, Element node ) {
-    	addUnitAwareGenericNumberPhenomenon(phenomenonType.toString(), attributeName, node);
+            model.addPhenomenen(phenomenonName, new NumberPhenomenon());
+        }
+        return model.getNumberPhenomenon(phenomenonName);
     }
     
-    private void addUnitAwareGenericNumberPhenomenon(String phenomenonName, String attributeName, Element node ) {
+    private void addGenericNumberPhenomenon(PhenomenonName phenomenonType, String attributeName, XMLStreamReader node ) {
+        double value = getDoubleAttribute(node, attributeName);
+        getNumberPhenomenon(phenomenonType.toString()).add(timeFrom, timeTo, value);
+    }    
+    
+    private void addUnitAwareGenericNumberPhenomenon(PhenomenonName phenomenonType, String attributeName, XMLStreamReader node ) {
+        double value = getDoubleAttribute(node, attributeName);
+        String phenomenonName = phenomenonType.toString();
         if (!model.isExist(phenomenonName))  {
         	NumberPhenomenon phenom = new NumberPhenomenon();   
-            phenom.setUnit(node.attributeValue("unit"));
-            phenom.addValue(timeFrom, new Double(node.attributeValue(attributeName)).doubleValue());
+            phenom.setUnit(node.getAttributeValue(null, "unit"));
             model.addPhenomenen(phenomenonName, phenom);                
-        }  else {
-            model.getPhenomenen(phenomenonName, 
-            		NumberPhenomenon.class).addValue(timeFrom, new Double(node.attributeValue(attributeName)).doubleValue());
-        }            
+        }
+        model.getNumberPhenomenon(phenomenonName).add(timeFrom, timeFrom, value);
     }  
     
-    public void addGenericTextPhenomenon(PhenomenonName phenomenonName, String attributeName, Element node ) {    	
+    private void addGenericTextPhenomenon(PhenomenonName phenomenonName, String attributeName, XMLStreamReader node ) {    	
         if (!model.isExist(phenomenonName.toString()))  {                        
-            TextPhenomenon phenom = new TextPhenomenon();          
-            phenom.addValue(timeFrom, node.attributeValue(attributeName));
-            model.addPhenomenen(phenomenonName.toString(), phenom);                
-            
-        }  else {
-            model.getTextPhenomenon(phenomenonName.toString()).addValue(timeFrom, node.attributeValue(attributeName));                
+            model.addPhenomenen(phenomenonName.toString(), new TextPhenomenon());                
         }
+        model.getTextPhenomenon(phenomenonName.toString()).addValue(new Date(timeFrom), node.getAttributeValue(null, attributeName));                
     }
     
-    public void addMultipleTimeResolutionNumberPhenomenon(PhenomenonName phenomenonName, String attributeName, Element node ) {    	
+    private void addMultipleTimeResolutionNumberPhenomenon(PhenomenonName phenomenonName, String attributeName, XMLStreamReader node ) {    	
         int timeResolution = Utility.hourDifference(timeFrom, timeTo);       
         // until we can remove multiple time resolution phenomenon
-        if (!model.isExist(phenomenonName.nameWithResolution(timeResolution)))  {
-            
-            NumberPhenomenon phenom = new NumberPhenomenon();          
-            phenom.addValue(timeFrom, timeTo, new Double(node.attributeValue(attributeName)));
-            model.addPhenomenen(phenomenonName.nameWithResolution(timeResolution), phenom);                
-            
-        }  else {
-            model.getNumberPhenomenon(phenomenonName.nameWithResolution(timeResolution)).addValue(timeFrom, timeTo, new Double(node.attributeValue(attributeName)));                
-        }  
+        double value = getDoubleAttribute(node, attributeName);
+        getNumberPhenomenon(phenomenonName.nameWithResolution(timeResolution)).add(timeFrom, timeTo, value);
     }
-    
-
-    // this is takem from xml pars old class
-    /**
-     * Open the XML stream
-     *
-     * @param url
-     * @return
-     */
-    
-    public Document openDataSource(String url) {
-        Document document = null;
-        try {
-            SAXReader reader = new SAXReader();
-            document = reader.read(url);
-        } catch (DocumentException e) {
-            LogUtils.logException(logger, "Failed to parse '" + url + "': " + e.getMessage(), e);
-        }
-        return document;
-    }  
 }
@@ -23,6 +23,9 @@ package no.met.jtimeseries.parser;
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -33,6 +36,7 @@ import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Range;
 import no.met.jtimeseries.Location;
 import no.met.jtimeseries.data.model.GenericDataModel;
+import no.met.jtimeseries.netcdf.NetcdfFileCache;
 import no.met.jtimeseries.netcdf.NetcdfFileExtractor;
 import no.met.jtimeseries.netcdf.ParameterReference;
 
@@ -169,7 +173,17 @@ public class NetcdfParser implements Parser {
 	
 	private NamedDataModel doParse(String resource) throws ParseException, IOException {
 		
-		NetcdfFileExtractor extractor = new NetcdfFileExtractor(resource);
+		NetcdfFileCache cache = NetcdfFileCache.getInstance();
+		NetcdfFileExtractor extractor = cache.acquire(resource);
+		try {
+			return doParse(extractor);
+		}
+		finally {
+			cache.release(extractor);
+		}
+	}
+
+	private NamedDataModel doParse(NetcdfFileExtractor extractor) throws ParseException, IOException {
 		
 //		LAG MAP AV resource->extractor.getName(variable)
 //		FINN EN MÅTE å videreformidle
@@ -181,23 +195,31 @@ public class NetcdfParser implements Parser {
 			if ( parameters != null ) {
 	
 				Set<String> wantedParameters = getWantedParameters(extractor);
+				List<String> located = new ArrayList<String>();
 	
 				for ( String wantedParameter : wantedParameters ) {
 					String variableName = stripRanges(wantedParameter);
 					if ( extractor.hasVariable(variableName) ) {
 						Range[] ranges = getRanges(wantedParameter, extractor);
-						model.addPhenomenen(wantedParameter, extractor.getPhenomenon(variableName, location, ranges));
+						if ( location != null && ranges == null )
+							located.add(variableName);
+						else
+							model.addPhenomenen(wantedParameter, extractor.getPhenomenon(variableName, location, ranges));
 						if ( title == null )
 							title = extractor.getName(variableName);
 					}
 				}
+				addLocated(model, extractor, located);
 			}
 			else {
-				for ( String variable : extractor.getVariables() ) {
-					model.addPhenomenen(variable, extractor.getPhenomenon(variable, location, null));
-					if ( title == null )
-						title = extractor.getName(variable);
-				}
+				Set<String> variables = extractor.getVariables();
+				if ( location != null )
+					addLocated(model, extractor, variables);
+				else
+					for ( String variable : variables )
+						model.addPhenomenen(variable, extractor.getPhenomenon(variable, null, null));
+				if ( ! variables.isEmpty() )
+					title = extractor.getName(variables.iterator().next());
 			}
 		}
 		catch ( InvalidRangeException e ) {
@@ -206,4 +228,15 @@ public class NetcdfParser implements Parser {
 
 		return new NamedDataModel(model, title);
 	}
+
+	/**
+	 * Read the given variables at the parser's location, all in one batch
+	 */
+	private void addLocated(GenericDataModel model, NetcdfFileExtractor extractor, Collection<String> variables) throws ParseException, IOException, InvalidRangeException {
+		if ( variables.isEmpty() )
+			return;
+		GenericDataModel located = extractor.getDataModels(variables, Collections.singletonList(location)).get(0);
+		for ( String variable : variables )
+			model.addPhenomenen(variable, located.getNumberPhenomenon(variable));
+	}
 }
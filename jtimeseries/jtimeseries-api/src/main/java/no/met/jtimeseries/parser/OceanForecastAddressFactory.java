@@ -42,9 +42,9 @@ public class OceanForecastAddressFactory {
 
         StringBuilder sBuffer = new StringBuilder("lat=");
         try {
-            sBuffer.append(location.getLatitude());
+            sBuffer.append(LocationForecastAddressFactory.formatCoordinate(location.getLatitude()));
             sBuffer.append(";lon=");
-            sBuffer.append(location.getLongitude());
+            sBuffer.append(LocationForecastAddressFactory.formatCoordinate(location.getLongitude()));
             
             // read datasource information from configuration file
             no.met.halo.common.ConfigUtils cfg = new no.met.halo.common.ConfigUtils("/config/jtimeseries.properties", JTIMESERIES_ENV);
@@ -21,42 +21,34 @@
  *******************************************************************************/
 package no.met.jtimeseries.parser;
 
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
 import java.util.logging.Logger;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import no.met.jtimeseries.chart.TimePeriod;
 import no.met.jtimeseries.chart.Utility;
 import no.met.jtimeseries.data.model.GenericDataModel;
 import no.met.phenomenen.NumberPhenomenon;
 import no.met.phenomenen.weatherapi.PhenomenonName;
 
-import org.dom4j.Document;
-import org.dom4j.Element;
-import org.dom4j.Node;
-
 /**
  * A class to parse the data from api.met.no/weather-api/oceanforecast
  */
 
-public class OceanForecastParseScheme extends ParseScheme {
+public class OceanForecastParseScheme extends XmlParseScheme {
     private static final Logger logger = Logger.getLogger(OceanForecastParseScheme.class.getName());
 
-    private DateFormat dateFormat = new SimpleDateFormat(Utility.DATE_FORMAT);
-    private Date timeFrom; 
+    private boolean hasTime;
+    private long timeFrom; 
     private GenericDataModel model;
     private TimePeriod forecastPeriod;
     
     
 //    public OceanForecastParseScheme(GenericDataModel ofdm) {
 //        this.model = ofdm;
-//        // to prevent problems when converting between daylight savings hours
-//        // and not
-//        // we use UTC which does not have this problem.
-//        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
 //    }
     
     public OceanForecastParseScheme(TimePeriod timePeriod) {
@@ -64,10 +56,6 @@ public class OceanForecastParseScheme extends ParseScheme {
         if (model == null)
             model = new GenericDataModel();
         forecastPeriod = timePeriod;
-        // to prevent problems when converting between daylight savings hours
-        // and not
-        // we use UTC which does not have this problem.
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
         
     public GenericDataModel getOceanForecastDataModel() {
@@ -84,93 +72,57 @@ public class OceanForecastParseScheme extends ParseScheme {
      * @throws ParseException
      */
     @Override
-    public void parse(Document document) throws ParseException {
-        //Document document = openDataSource(getURLWithAllParameter().toString());
-        xmlTreeWalk(document);
-    }
-
-    
-    public void xmlTreeWalk(Document document) throws ParseException {
-        xmlTreeWalk(document.getRootElement());
-    }
-
-    public void xmlTreeWalk(Element element) throws ParseException {
-        for (int i = 0, size = element.nodeCount(); i < size; i++) {
-            Node node = element.node(i);
-            if (node instanceof Element) {
-                if (((Element) node).getName().equals("begin")) {
-                    timeFrom = dateFormat.parse(node.getText());
-                }
-                // read phenomena if it is inside forecast-period
-                else if (forecastPeriod.inside(timeFrom))
-                    readPhenomenen((Element) node);
-                xmlTreeWalk((Element) node);
+    protected void parse(XMLStreamReader reader) throws ParseException, XMLStreamException {
+        hasTime = false;
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (reader.getLocalName().equals("begin")) {
+                timeFrom = Utility.parseDateUTC(reader.getElementText().trim());
+                hasTime = true;
+            }
+            // read phenomena if it is inside forecast-period
+            else if (hasTime && forecastPeriod.inside(timeFrom)) {
+                readPhenomenen(reader);
             }
         }
     }
 
     // parse everthing in one go
-    private void readPhenomenen(Element node) throws ParseException{
-        String name = node.getName();
+    private void readPhenomenen(XMLStreamReader node) throws XMLStreamException {
+        String name = node.getLocalName();
                 
-        if (name.equalsIgnoreCase("begin")) {
-            timeFrom = dateFormat.parse(node.getText());
-        } else if (name.equalsIgnoreCase("seaTemperature")) {
-            
-            if (!model.isExist(PhenomenonName.seaTemperature.toString()))  {
-                NumberPhenomenon temperature = new NumberPhenomenon(); 
-                temperature.setUnit(node.attributeValue("uom"));
-                temperature.addValue(timeFrom, Double.parseDouble(node.getText()));
-                model.addPhenomenen(PhenomenonName.seaTemperature.toString(), temperature);                
-            }  else {
-                model.getPhenomenen(PhenomenonName.seaTemperature.toString(), 
-                        NumberPhenomenon.class).addValue(timeFrom, Double.parseDouble(node.getText()));
-            }
-            
+        if (name.equalsIgnoreCase("seaTemperature")) {
+            addValue(PhenomenonName.seaTemperature, node);
         } else if (name.equalsIgnoreCase("meanTotalWaveDirection")) {
-            if (!model.isExist(PhenomenonName.WaveDirection.toString()))  {
-            	NumberPhenomenon waveDirection = new NumberPhenomenon(); 
-                waveDirection.setUnit(node.attributeValue("uom"));
-                waveDirection.addValue(timeFrom, Double.parseDouble(node.getText()));
-                model.addPhenomenen(PhenomenonName.WaveDirection.toString(), waveDirection);                
-            }  else {
-                model.getPhenomenen(PhenomenonName.WaveDirection.toString(),
-                        NumberPhenomenon.class).addValue(timeFrom, Double.parseDouble(node.getText()));
-            }            
+            addValue(PhenomenonName.WaveDirection, node);
         } else if (name.equalsIgnoreCase("significantTotalWaveHeight")) {
-            if (!model.isExist(PhenomenonName.WaveHeight.toString()))  {
-            	NumberPhenomenon waveHeight = new NumberPhenomenon();                 
-                waveHeight.setUnit(node.attributeValue("uom"));
-                waveHeight.addValue(timeFrom, Double.parseDouble(node.getText()));
-                model.addPhenomenen(PhenomenonName.WaveHeight.toString(), waveHeight);                
-            }  else {
-                model.getPhenomenen(PhenomenonName.WaveHeight.toString(), NumberPhenomenon.class)
-                        .addValue(timeFrom, Double.parseDouble(node.getText()));
-            }
-           
+            addValue(PhenomenonName.WaveHeight, node);
         } else if (name.equalsIgnoreCase("seaCurrentDirection")) {
-            if (!model.isExist(PhenomenonName.CurrentDirection.toString()))  {
-                NumberPhenomenon currentDirection = new NumberPhenomenon(); 
-                currentDirection.setUnit(node.attributeValue("uom"));
-                currentDirection.addValue(timeFrom, Double.parseDouble(node.getText()));
-                model.addPhenomenen(PhenomenonName.CurrentDirection.toString(), currentDirection);                
-            }  else {
-                model.getPhenomenen(PhenomenonName.CurrentDirection.toString(),
-                        NumberPhenomenon.class).addValue(timeFrom, Double.parseDouble(node.getText()));
-            }            
+            addValue(PhenomenonName.CurrentDirection, node);
         } else if (name.equalsIgnoreCase("seaCurrentSpeed")) {
-            if (!model.isExist(PhenomenonName.CurrentSpeed.toString()))  {
-                NumberPhenomenon currentSpeed = new NumberPhenomenon(); 
-                currentSpeed.setUnit(node.attributeValue("uom"));
-                currentSpeed.addValue(timeFrom, Double.parseDouble(node.getText()));
-                model.addPhenomenen(PhenomenonName.CurrentSpeed.toString(), currentSpeed);                
-            }  else {
-                model.getPhenomenen(PhenomenonName.CurrentSpeed.toString(),
-                        NumberPhenomenon.class).addValue(timeFrom, Double.parseDouble(node.getText()));
-            }            
+            addValue(PhenomenonName.CurrentSpeed, node);
         } 
     }
 
+    /**
+     * Add the value of the current element to the phenomenon, creating the
+     * phenomenon with the unit of the element if it does not exist
+     */
+    private void addValue(PhenomenonName phenomenonName, XMLStreamReader node) throws XMLStreamException {
+        String name = phenomenonName.toString();
+        // the attributes are gone once the text has been read
+        String unit = node.getAttributeValue(null, "uom");
+        double value = Double.parseDouble(node.getElementText());
+        if (!model.isExist(name))  {
+            NumberPhenomenon phenomenon = new NumberPhenomenon(); 
+            phenomenon.setUnit(unit);
+            model.addPhenomenen(name, phenomenon);                
+        }
+        model.getNumberPhenomenon(name).add(timeFrom, timeFrom, value);
+    }
+
     @Override
     public GenericDataModel getModel() {
         return  model;
@@ -21,43 +21,33 @@
  *******************************************************************************/
 package no.met.jtimeseries.parser;
 
-import java.io.IOException;
-import java.text.ParseException;
+import java.util.Date;
 
 import no.met.jtimeseries.data.model.GenericDataModel;
 
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.io.SAXReader;
-
 /**
  * Interface and stub method for downloading and parsing locationforecast-like 
  * data
  */
 abstract class ParseScheme implements Parser {
+
     /**
-     * Parse the document 
-     * @param document
-     * @throws ParseException 
+     * How long downloaded data is considered current when the source does
+     * not tell us, in milliseconds
      */
-    protected abstract void parse(Document document) throws ParseException;
+    protected static final long DEFAULT_EXPIRES = 30 * 60 * 1000L;
+
     /**
      * Get the data model correspond to a scheme
      * @return 
      */
     protected abstract GenericDataModel getModel();
-    
-    
-    @Override
-	public GenericDataModel parse(String resource) throws ParseException, IOException {
 
-		try {
-			SAXReader reader = new SAXReader();
-			Document document = reader.read(resource);
-			parse(document);
-		} catch (DocumentException e) {
-			throw new IOException(e);
-		}
-		return getModel();
-	}
+    /**
+     * Get the expiry time to use for data fetched now when the source does not
+     * provide one.
+     */
+    protected static Date getDefaultExpires() {
+        return new Date(System.currentTimeMillis() + DEFAULT_EXPIRES);
+    }
 }
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.concurrent.Callable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import no.met.jtimeseries.data.model.GenericDataModel;
+import no.met.jtimeseries.metrics.RequestMetrics;
+import no.met.jtimeseries.metrics.RequestMetrics.Stage;
+
+/**
+ * Stub methods for downloading and parsing xml documents, read as a stream
+ * of events
+ */
+abstract class XmlParseScheme extends ParseScheme {
+
+    private static final SingleFlight<String, byte[]> downloads = new SingleFlight<>();
+
+    private static final XMLInputFactory xmlInputFactory = createXMLInputFactory();
+
+    /**
+     * Parse the document, reading it as a stream of events
+     * @param reader positioned at the start of the document
+     * @throws ParseException 
+     * @throws XMLStreamException if the document is not well formed
+     */
+    protected abstract void parse(XMLStreamReader reader) throws ParseException, XMLStreamException;
+
+    @Override
+	public GenericDataModel parse(String resource) throws ParseException, IOException {
+
+		RequestMetrics metrics = RequestMetrics.getInstance();
+		long start = System.nanoTime();
+		byte[] document = download(resource);
+		start = metrics.record(Stage.FETCH, start);
+		parse(new ByteArrayInputStream(document));
+		metrics.record(Stage.PARSE, start);
+		getModel().setExpires(getDefaultExpires());
+		return getModel();
+	}
+
+    /**
+     * Parse an xml document without building it in memory
+     *
+     * @param in the document
+     * @throws ParseException if the content of the document is invalid
+     * @throws IOException if the document could not be read, or is not well
+     *             formed xml
+     */
+    public void parse(InputStream in) throws ParseException, IOException {
+        try {
+            parseAndClose(xmlInputFactory.createXMLStreamReader(in));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Parse an xml document without building it in memory
+     *
+     * @param in the document
+     * @throws ParseException if the content of the document is invalid
+     * @throws IOException if the document could not be read, or is not well
+     *             formed xml
+     */
+    public void parse(Reader in) throws ParseException, IOException {
+        try {
+            parseAndClose(xmlInputFactory.createXMLStreamReader(in));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void parseAndClose(XMLStreamReader reader) throws ParseException, XMLStreamException {
+        try {
+            parse(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // documents may be provided by clients, so never resolve anything
+        // outside of them
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Download the resource. Concurrent downloads of the same resource are
+     * coalesced into one, and each caller parses its own copy of the result.
+     */
+    private static byte[] download(final String resource) throws IOException {
+        return downloads.execute(resource, new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return HttpClientProvider.getBytes(resource);
+            }
+        });
+    }
+}
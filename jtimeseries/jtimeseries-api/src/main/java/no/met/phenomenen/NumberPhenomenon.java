@@ -21,25 +21,26 @@
  *******************************************************************************/
 package no.met.phenomenen;
 
-import java.text.SimpleDateFormat;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
 import java.util.TreeMap;
 
 import net.sf.json.JSONObject;
 import no.met.jtimeseries.Jsonizer;
 import no.met.jtimeseries.TimeSeriesEnabler;
 import no.met.jtimeseries.chart.CardinalSpline;
+import no.met.jtimeseries.chart.NaturalSpline;
+import no.met.jtimeseries.chart.SplinePoints;
 import no.met.jtimeseries.chart.TimeBase;
 import no.met.jtimeseries.chart.Utility;
 import no.met.jtimeseries.data.item.AbstractValueItem;
 import no.met.jtimeseries.data.item.NumberValueItem;
+import no.met.phenomenen.filter.ItemFilter;
 
 import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
@@ -47,95 +48,313 @@ import org.jfree.data.time.TimeSeriesCollection;
 /**
  * Class to represent phenomenon that are described by floating point
  * numbers.
+ * 
+ * The values are stored column wise in primitive arrays, sorted by from time.
+ * The NumberValueItem objects returned by getItems() and iterator() are
+ * created on demand, so changing them does not change the phenomenon. Code
+ * that reads many values should use the primitive accessors, such as
+ * size(), getTimeFromMillis(int) and getValueAt(int).
  */
 public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cloneable, 
         TimeSeriesEnabler, Iterable<NumberValueItem> {
-        
-    protected List<NumberValueItem> items;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    protected long[] fromMillis;
+    protected long[] toMillis;
+    protected double[] values;
+    protected int size;
     
     public NumberPhenomenon() {               
-        items = new ArrayList<NumberValueItem>();
+        this(null, null);
     }
     
     public NumberPhenomenon(String name, String unit) {
         this.name = name;
         this.unit = unit;
-        items = new ArrayList<NumberValueItem>();
+        fromMillis = new long[INITIAL_CAPACITY];
+        toMillis = new long[INITIAL_CAPACITY];
+        values = new double[INITIAL_CAPACITY];
     }
 
     
     public void addValue(Date time, Double value) {
-        this.items.add(new NumberValueItem(time, value));
+        add(time.getTime(), time.getTime(), value);
     }
     
     public void addValue(Date fromTime, Date toTime, Double value){
-    	this.items.add(new NumberValueItem(fromTime, toTime, value));
+        add(fromTime.getTime(), toTime.getTime(), value);
+    }
+
+    /**
+     * Add a value, keeping the values sorted by from time. Values with equal
+     * from time are kept in the order they were added.
+     */
+    public void add(long fromTime, long toTime, double value) {
+        int index = size;
+        if (size > 0 && fromTime < fromMillis[size - 1]) {
+            index = upperBound(fromTime);
+        }
+        ensureCapacity(size + 1);
+        if (index < size) {
+            System.arraycopy(fromMillis, index, fromMillis, index + 1, size - index);
+            System.arraycopy(toMillis, index, toMillis, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        fromMillis[index] = fromTime;
+        toMillis[index] = toTime;
+        values[index] = value;
+        size++;
+    }
+
+    /**
+     * Add a column of values, each with the same from and to time. This is
+     * the same as calling add(times[i], times[i], values[i]) for each index,
+     * but copies the arrays directly when the times are sorted and come
+     * after the existing values.
+     *
+     * @param times the time of each value, in milliseconds
+     * @param values the values
+     */
+    public void addAll(long[] times, double[] values) {
+        if (times.length != values.length) {
+            throw new IllegalArgumentException("Got " + times.length + " times, but " + values.length + " values");
+        }
+        boolean sorted = size == 0 || times.length == 0 || times[0] >= fromMillis[size - 1];
+        for (int i = 1; sorted && i < times.length; i++) {
+            sorted = times[i - 1] <= times[i];
+        }
+        if (!sorted) {
+            for (int i = 0; i < times.length; i++) {
+                add(times[i], times[i], values[i]);
+            }
+            return;
+        }
+        ensureCapacity(size + times.length);
+        System.arraycopy(times, 0, fromMillis, size, times.length);
+        System.arraycopy(times, 0, toMillis, size, times.length);
+        System.arraycopy(values, 0, this.values, size, values.length);
+        size += times.length;
+    }
+
+    /**
+     * @return the index of the first value with from time after the given
+     *         time, or size() if there is none
+     */
+    private int upperBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fromMillis[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            int newCapacity = Math.max(capacity, values.length + (values.length >> 1) + 1);
+            fromMillis = Arrays.copyOf(fromMillis, newCapacity);
+            toMillis = Arrays.copyOf(toMillis, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the from time of the value at the given index, in milliseconds
+     */
+    public long getTimeFromMillis(int index) {
+        checkIndex(index);
+        return fromMillis[index];
+    }
+
+    /**
+     * @return the to time of the value at the given index, in milliseconds
+     */
+    public long getTimeToMillis(int index) {
+        checkIndex(index);
+        return toMillis[index];
+    }
+
+    /**
+     * @return the value at the given index
+     */
+    public double getValueAt(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * @return a copy of the from times, in milliseconds
+     */
+    public long[] getTimeFromArray() {
+        return Arrays.copyOf(fromMillis, size);
+    }
+
+    /**
+     * @return a copy of the values
+     */
+    public double[] getValueArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Remove the value at the given index
+     */
+    public void remove(int index) {
+        checkIndex(index);
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(fromMillis, index + 1, fromMillis, index, moved);
+            System.arraycopy(toMillis, index + 1, toMillis, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+        }
+        size--;
+    }
+
+    private NumberValueItem createItem(int index) {
+        return new NumberValueItem(new Date(fromMillis[index]), new Date(toMillis[index]), values[index]);
+    }
+
+    /**
+     * Replace all values with the given items
+     */
+    private void setItems(List<NumberValueItem> items) {
+        size = 0;
+        ensureCapacity(items.size());
+        for (NumberValueItem item : items) {
+            add(item.getTimeFrom().getTime(), item.getTimeTo().getTime(), item.getValue());
+        }
     }
     
     @Override
     public void cutOlderThan(Date d) {
-    	List<NumberValueItem> newItems = new ArrayList<NumberValueItem>();
-    	for ( NumberValueItem item : items )
-    		if ( ! item.getTimeTo().after(d) )
-    			newItems.add(item);
-    	items = newItems;
+        long time = d.getTime();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (toMillis[i] <= time) {
+                fromMillis[kept] = fromMillis[i];
+                toMillis[kept] = toMillis[i];
+                values[kept] = values[i];
+                kept++;
+            }
+        }
+        size = kept;
+    }
+
+    @Override
+    public void filter(ItemFilter filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!filter.removeItem(createItem(i))) {
+                fromMillis[kept] = fromMillis[i];
+                toMillis[kept] = toMillis[i];
+                values[kept] = values[i];
+                kept++;
+            }
+        }
+        size = kept;
     }
 
     /**
-     * Gets value of the specified time d
-     * Returns null if no value is found.
+     * Gets value of the specified time d, interpolating linearly between the
+     * neighbouring values if there is no value at exactly that time.
+     * Returns null if d is outside the time range of the values.
      */
     public Double getValueByTime(Date d) {
-    	
-    	for( NumberValueItem item : items ){
-    		if( item.getTimeFrom().equals(d)){
-    			return item.getValue();
-    		}
-    	}
-    	
-        //if no value is return then calculate the value
-        return calculateValueByTime(d);
+        long time = d.getTime();
+        int index = lowerBound(time);
+        if (!isInRange(index, time)) {
+            return null;
+        }
+        return valueByTime(index, time);
     }
-    
+
     /**
-     * Calculatet the value of the time according to the value 
-     * at the previous time and the value at the next time
-     * @param d
-     * @return
+     * Gets value of the specified time, interpolating linearly between the
+     * neighbouring values if there is no value at exactly that time.
+     * 
+     * @param time the time in milliseconds
+     * @return the value, or NaN if the time is outside the time range of the
+     *         values
      */
-    private Double calculateValueByTime(Date d){
-   	
-    	NumberValueItem nextItem = null;
-    	NumberValueItem preItem = null;
-    	
-    	for( int i = 0; i < items.size(); i++ ){
-    		NumberValueItem item = items.get(i);
-    		
-    		if( item.getTimeFrom().after(d) ){
-    			nextItem = item;
-    			if( i > 0 ) {
-    				preItem = items.get(i-1);
-    			}
-    		}
-    	}
-    	
-    	if( nextItem != null && preItem != null ){
-    		double valuePre = preItem.getValue();
-    		double valueNext = nextItem.getValue();
-    		double slope = (nextItem.getTimeFrom().getTime() - preItem.getTimeFrom().getTime()) / (valueNext - valuePre);
-    		return (d.getTime() - preItem.getTimeFrom().getTime())/slope + valuePre;
-    	}
-    	return null;
-    	
+    public double getValueByTime(long time) {
+        int index = lowerBound(time);
+        if (!isInRange(index, time)) {
+            return Double.NaN;
+        }
+        return valueByTime(index, time);
+    }
+
+    /**
+     * @param time the time in milliseconds
+     * @return the index of the first value with the given from time, or -1 if
+     *         there is none
+     */
+    public int indexOfTime(long time) {
+        int index = lowerBound(time);
+        return index < size && fromMillis[index] == time ? index : -1;
+    }
+
+    /**
+     * @return the index of the first value with from time at or after the
+     *         given time, or size() if there is none
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fromMillis[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean isInRange(int lowerBound, long time) {
+        return lowerBound < size && (lowerBound > 0 || fromMillis[0] == time);
+    }
+
+    /**
+     * Get the value at the given time, from the value at the lower bound of
+     * the time, or by interpolating between it and the value before.
+     */
+    private double valueByTime(int lowerBound, long time) {
+        long nextTime = fromMillis[lowerBound];
+        if (nextTime == time) {
+            return values[lowerBound];
+        }
+        long preTime = fromMillis[lowerBound - 1];
+        double valuePre = values[lowerBound - 1];
+        double valueNext = values[lowerBound];
+        return valuePre + (valueNext - valuePre) * (time - preTime) / (nextTime - preTime);
     }
 
     public List<Date> getTime() {
-    	
-    	List<Date> times = new ArrayList<Date>();
-    	for( NumberValueItem item : items){
-    		times.add(item.getTimeFrom());
-    	}
-    	
+        List<Date> times = new ArrayList<Date>(size);
+        for (int i = 0; i < size; i++) {
+            times.add(new Date(fromMillis[i]));
+        }
         return times;
     }
     
@@ -145,13 +364,35 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
     }    
 
     public List<Double> getValue() {
-    	
-    	List<Double> values = new ArrayList<Double>();
-    	for( NumberValueItem item : items ){
-    		values.add(item.getValue());
-    	}
-    	
-        return values;
+        List<Double> valueList = new ArrayList<Double>(size);
+        for (int i = 0; i < size; i++) {
+            valueList.add(values[i]);
+        }
+        return valueList;
+    }
+
+    @Override
+    public Date getStartTime() {
+        return size > 0 ? new Date(fromMillis[0]) : null;
+    }
+
+    @Override
+    public Date getEndTime() {
+        return size > 0 ? new Date(fromMillis[size - 1]) : null;
+    }
+
+    @Override
+    public Date getLastToTime() {
+        if (size == 0) {
+            return null;
+        }
+        long last = toMillis[0];
+        for (int i = 1; i < size; i++) {
+            if (toMillis[i] > last) {
+                last = toMillis[i];
+            }
+        }
+        return new Date(last);
     }
 
    
@@ -161,47 +402,42 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
     
     public double getMaxValue(){
     	
-    	if( items.isEmpty()){
-    		return 0;
-    	}
+        if (size == 0) {
+            return 0;
+        }
     	
     	double ret = -Double.MAX_VALUE;
-    	for ( NumberValueItem d : items )
-    		if ( d.getValue() > ret )
-    			ret = d.getValue();
+        for (int i = 0; i < size; i++)
+            if (values[i] > ret)
+                ret = values[i];
     	
     	return ret; 
     }
     
     public double getMinValue(){
     	
-    	if( items.isEmpty()){
-    		return 0;
-    	}
+        if (size == 0) {
+            return 0;
+        }
     	
     	double ret = Double.MAX_VALUE;
-    	for ( NumberValueItem d : items )
-    		if ( d.getValue() < ret )
-    			ret = d.getValue();
+        for (int i = 0; i < size; i++)
+            if (values[i] < ret)
+                ret = values[i];
 
     	return ret;
     }
 
     public void clear() {
-    	items.clear();
+        size = 0;
     }
 
     @Override
     public JSONObject toJSON() {
-        SimpleDateFormat sdf = new SimpleDateFormat(Utility.DATE_FORMAT); 
-        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));        
-        Map<String, Double> jsonMap = new HashMap<>(items.size());
-        for (NumberValueItem nvi : items) {              
-            calendar.setTime(nvi.getTimeFrom());
-            jsonMap.put(sdf.format(calendar.getTime()), nvi.getValue());
-        }
-        jsonMap = new TreeMap<>(jsonMap);        
+        Map<String, Double> jsonMap = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            jsonMap.put(Utility.formatDateUTC(fromMillis[i]), values[i]);
+        }
         JSONObject json = JSONObject.fromObject(jsonMap);
         return json;
     }
@@ -213,12 +449,11 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
      */
     public void doSpline(double tension) {
     	
-    	if( items.isEmpty() ){
-    		return;
-    	}
+        if (size == 0) {
+            return;
+        }
     	
-    	NumberValueItem firstItem = items.get(0);
-    	if( !firstItem.getTimeFrom().equals(firstItem.getTimeTo())){
+        if (fromMillis[0] != toMillis[0]) {
     		String msg = "Spline calculatations are not supported on phenomenon where a single value";
     		msg += " have different from and to time since the spline calculations cannot deal with the toTime.";
     		throw new UnsupportedOperationException(msg);
@@ -226,8 +461,9 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
     	
         // add cardinal control points before rendering with standard
 		// spline
-		CardinalSpline cs = new CardinalSpline(this.items, tension);
-		this.items = cs.cardinalSpline();
+        SplinePoints controlPoints = new SplinePoints(SplinePoints.Duplicates.SKIP_EQUAL_POINT, size * 2);
+        CardinalSpline.addControlPoints(getPoints(), tension, controlPoints);
+        setPoints(controlPoints);
     }
     
     /**
@@ -240,108 +476,58 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
         if (precision <= 0) {
             throw new IllegalArgumentException("Requires precision > 0.");
         }
-        if (this.items.size()<=2) {
+        if (this.size<=2) {
             throw new IllegalArgumentException("NumberPhenomenon size should be larger than 2.");
         }
-        List<NumberValueItem> splinedItems=new ArrayList<>();
-        splinedItems.add(this.items.get(0));
-        int np = this.items.size(); // number of points
-        double[] d = new double[np]; // Newton form coefficients
-        double[] x = new double[np]; // x-coordinates of nodes
-        double y;
-        double t;
-        double oldy = 0;
-        double oldt = 0;
-
-        double[] a = new double[np];
-        double t1;
-        double t2;
-        double[] h = new double[np];
-
-        for (int i = 0; i < np; i++) {
-            //ControlPoint cpi = this.points.get(i);
-            x[i] = this.items.get(i).getTimeFrom().getTime();
-            d[i] = this.items.get(i).getValue();
-        }
-
-        for (int i = 1; i <= np - 1; i++) {
-            h[i] = x[i] - x[i - 1];
-        }
-        double[] sub = new double[np - 1];
-        double[] diag = new double[np - 1];
-        double[] sup = new double[np - 1];
-
-        for (int i = 1; i <= np - 2; i++) {
-            diag[i] = (h[i] + h[i + 1]) / 3;
-            sup[i] = h[i + 1] / 6;
-            sub[i] = h[i] / 6;
-            a[i] = (d[i + 1] - d[i]) / h[i + 1]
-                       - (d[i] - d[i - 1]) / h[i];
-        }
-        solveTridiag(sub, diag, sup, a, np - 2);
-
-        // note that a[0]=a[np-1]=0
-        // draw
-        oldt = x[0];
-        oldy = d[0];
-        int k=0;
-        for (int i = 1; i <= np - 1; i++) {
-            // loop over intervals between nodes
-            for (int j = 1; j <= precision; j++) {
-                t1 = (h[i] * j) / precision;
-                t2 = h[i] - t1;
-                y = ((-a[i - 1] / 6 * (t2 + h[i]) * t1 + d[i - 1])
-                        * t2 + (-a[i] / 6 * (t1 + h[i]) * t2
-                        + d[i]) * t1) / h[i];
-                t = (long)(x[i - 1] + t1);
-                splinedItems.add(new NumberValueItem(new Date((long)t),y));
-                oldt = t;
-                oldy = y;
-            }
-        }
-        this.items=splinedItems;
+        SplinePoints splinePoints = new SplinePoints(SplinePoints.Duplicates.KEEP, 1 + (size - 1) * precision);
+        NaturalSpline.interpolate(getPoints(), precision, splinePoints);
+        setPoints(splinePoints);
     }
-    
+
     /**
-     * This method is directly copied from Jfreechart XYSplineRenderer class.
-     *
-     * @param sub
-     * @param diag
-     * @param sup
-     * @param b
-     * @param n
+     * @return the from times and values of this phenomenon as points
      */
-    private void solveTridiag(double[] sub, double[] diag, double[] sup,
-            double[] b, int n) {
-        int i;
-        for (i = 2; i <= n; i++) {
-            sub[i] = sub[i] / diag[i - 1];
-            diag[i] = diag[i] - sub[i] * sup[i - 1];
-            b[i] = b[i] - sub[i] * b[i - 1];
+    private SplinePoints getPoints() {
+        SplinePoints points = new SplinePoints(SplinePoints.Duplicates.KEEP, size);
+        for (int i = 0; i < size; i++) {
+            points.add(fromMillis[i], values[i]);
         }
-        b[n] = b[n] / diag[n];
-        for (i = n - 1; i >= 1; i--) {
-            b[i] = (b[i] - sup[i] * b[i + 1]) / diag[i];
+        return points;
+    }
+
+    /**
+     * Replace all values with the given points, truncating x to whole
+     * milliseconds
+     */
+    private void setPoints(SplinePoints points) {
+        size = 0;
+        ensureCapacity(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            long time = (long) points.getX(i);
+            add(time, time, points.getY(i));
         }
     }
     
     public void addThresholdPoints(double threshold) {
     	
-    	if( items.isEmpty() ){
-    		return;
-    	}
+        if (size == 0) {
+            return;
+        }
     	
-    	NumberValueItem firstItem = items.get(0);
-    	if( !firstItem.getTimeFrom().equals(firstItem.getTimeTo())){
+        if (fromMillis[0] != toMillis[0]) {
     		String msg = "Spline calculatations are not supported on phenomenon where a single value";
     		msg += " have different from and to time since the spline calculations cannot deal with the toTime.";
     		throw new UnsupportedOperationException(msg);
     	}    	
     	
         // add threshold point into the dataset
-    	this.items = Utility.addThresholdItems(items, threshold);
+        setItems(Utility.addThresholdItems(new ItemList(), threshold));
 
     }
+
+    private TimeBase autoTimeBase() {
+        return Utility.autoTimeBaseFromItems(new ItemList());
+    }
     
     @Override
     public TimeSeriesCollection getTimeSeriesWithThreshold(String title, TimeBase timeBase, double threshold) {
@@ -355,7 +541,7 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
          }
          
          if (timeBase == TimeBase.AUTO) {
-            timeBase = Utility.autoTimeBaseFromItems(this.items);
+            timeBase = autoTimeBase();
         }
          
 		TimeSeriesCollection timeSeriesCollection = new TimeSeriesCollection();
@@ -364,33 +550,30 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
 		// To make the odd series to be above threshold series and even series
 		// to be below threshold series
 		// add a empty series if the first point is below threshold
-		if (this.items.size() > 0 && this.items.get(0).getValue() < threshold) {
+		if (this.size > 0 && this.values[0] < threshold) {
 			//series = new TimeSeries(title);
 			timeSeriesCollection.addSeries(series);
 		}
 
-		for (int i = 0; i < this.items.size();) {
+		for (int i = 0; i < this.size;) {
 
 			series = new TimeSeries(title);
 
 			// insert last threshold point
 			if (i != 0) {
-				NumberValueItem item = items.get(i - 1);
-				series.add(Utility.getPeriod(timeBase, item.getTimeFrom()), item.getValue());
+				series.add(Utility.getPeriod(timeBase, new Date(fromMillis[i - 1])), values[i - 1]);
 			}
 
-			if (this.items.size() > i && this.items.get(i).getValue() >= threshold) {
-				while ((i < this.items.size())
-						&& this.items.get(i).getValue() >= threshold) {
-					NumberValueItem item = items.get(i);
-					series.add(Utility.getPeriod(timeBase, item.getTimeFrom()), item.getValue());
+			if (this.size > i && this.values[i] >= threshold) {
+				while ((i < this.size)
+						&& this.values[i] >= threshold) {
+					series.add(Utility.getPeriod(timeBase, new Date(fromMillis[i])), values[i]);
 					i++;
 				}
 			} else {
-				while ((i < this.items.size())
-						&& this.items.get(i).getValue() <= threshold) {
-					NumberValueItem item = items.get(i);
-					series.add(Utility.getPeriod(timeBase, item.getTimeFrom()), item.getValue());
+				while ((i < this.size)
+						&& this.values[i] <= threshold) {
+					series.add(Utility.getPeriod(timeBase, new Date(fromMillis[i])), values[i]);
 					i++;
 				}
 
@@ -413,16 +596,14 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
          }
          
          TimeSeriesCollection  seriesCollection = new TimeSeriesCollection();
-         //List<Date> times = this.timeForBestResolution();
          
          if (timeBase == TimeBase.AUTO) {
-            timeBase = Utility.autoTimeBaseFromItems(this.items);
+            timeBase = autoTimeBase();
          }
          
-         //List<Double> values = this.bestResolutionValues();
          TimeSeries timeSeries = new TimeSeries(title);
-         for( NumberValueItem item : items){
-        	 timeSeries.add(Utility.getPeriod(timeBase, item.getTimeFrom()), item.getValue());
+         for (int i = 0; i < size; i++) {
+             timeSeries.add(Utility.getPeriod(timeBase, new Date(fromMillis[i])), values[i]);
          }
          seriesCollection.addSeries(timeSeries);         
          
@@ -431,41 +612,54 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
     
     @Override
     public Iterator<NumberValueItem> iterator() {
-        return new Iterator<NumberValueItem>() {
-            private Iterator<NumberValueItem> itemsIt = items.iterator();
-            
-            @Override
-            public boolean hasNext() {
-                return itemsIt.hasNext();
-            }
-
-            @Override
-            public NumberValueItem next() {
-                return itemsIt.next();
-            }
-
-            @Override
-            public void remove() {
-            	itemsIt.remove();
-            }
-        };
+        return new ItemList().iterator();
     }
 
 	@Override
 	public List<? extends AbstractValueItem> getItems() {		
-		return items;
+		return new ItemList();
 	}
 
+    @Override
+    public AbstractValueItem getItem(int index) {
+        checkIndex(index);
+        return createItem(index);
+    }
+
+    /**
+     * A view of the values as a list of items. Items are created on each
+     * access. Removing items removes the values from the phenomenon.
+     */
+    private class ItemList extends AbstractList<NumberValueItem> {
+
+        @Override
+        public NumberValueItem get(int index) {
+            checkIndex(index);
+            return createItem(index);
+        }
+
+        @Override
+        public NumberValueItem remove(int index) {
+            NumberValueItem item = get(index);
+            NumberPhenomenon.this.remove(index);
+            modCount++;
+            return item;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
 	/**
 	 * Scaling up or down the data list with specified rate
 	 * @param s The rate to scale data
 	 * @return A new data after scaling
 	 */
     public NumberPhenomenon scaling(double s) {
-        if (items!=null && !items.isEmpty()){
-            for (int i=0;i<items.size();i++){
-                items.set(i, new NumberValueItem(items.get(i).getTimeFrom(),items.get(i).getTimeTo(),items.get(i).getValue()*s));
-            }
+        for (int i = 0; i < size; i++) {
+            values[i] *= s;
         }
         return this;
     }        
@@ -476,10 +670,8 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
      * @return A new data after transform
      */
     public NumberPhenomenon transform(double v) {
-        if (items!=null && !items.isEmpty()){
-            for (int i=0;i<items.size();i++){
-                items.set(i, new NumberValueItem(items.get(i).getTimeFrom(),items.get(i).getTimeTo(),items.get(i).getValue()+v));
-            }
+        for (int i = 0; i < size; i++) {
+            values[i] += v;
         }
         return this;
     }
@@ -498,12 +690,9 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
      * set negative values to 0
      */
     public void removeNegativeValues() {
-        if( items.isEmpty() ){
-            return;
-        }
-        for (NumberValueItem item:items) {
-            if (item.getValue()<0)
-                item.setValue(0);
+        for (int i = 0; i < size; i++) {
+            if (values[i] < 0)
+                values[i] = 0;
         }
     }
     
@@ -511,7 +700,9 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
     public NumberPhenomenon clone() {
         try {
             NumberPhenomenon cloned=(NumberPhenomenon)super.clone();
-            cloned.items= NumberPhenomenon.cloneList(cloned.items);
+            cloned.fromMillis = Arrays.copyOf(fromMillis, Math.max(size, INITIAL_CAPACITY));
+            cloned.toMillis = Arrays.copyOf(toMillis, Math.max(size, INITIAL_CAPACITY));
+            cloned.values = Arrays.copyOf(values, Math.max(size, INITIAL_CAPACITY));
             return cloned;
         }
         catch (CloneNotSupportedException e) {
@@ -520,10 +711,8 @@ public class NumberPhenomenon extends AbstractPhenomenon implements Jsonizer, Cl
     }
     
     public void printItems() {
-        if (items==null)
-            return;
-        for (NumberValueItem item:items) {
-            System.out.println(item.toString());
+        for (int i = 0; i < size; i++) {
+            System.out.println(createItem(i).toString());
         }
     }
 }
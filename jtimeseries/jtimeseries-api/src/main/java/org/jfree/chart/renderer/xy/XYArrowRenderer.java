@@ -29,6 +29,7 @@ import java.awt.RenderingHints;
 import java.awt.geom.Rectangle2D;
 import java.io.Serializable;
 
+import no.met.jtimeseries.chart.ItemGraphicsRendererState;
 import no.met.jtimeseries.data.dataset.ArrowDataset;
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.plot.CrosshairState;
@@ -49,6 +50,12 @@ public class XYArrowRenderer extends AbstractXYItemRenderer implements XYItemRen
 
     private static final long serialVersionUID = -4474500826149210560L;
     private RenderingHints renderHints;
+    private static final BasicStroke ARROW_STROKE = new BasicStroke();
+    private static final BasicStroke LINE_STROKE = new BasicStroke(1);
+    // arrow shapes for the last arrow height, as every item in a plot has the same
+    private double cachedArrowHeight = -1;
+    private Rectangle2D arrowLine;
+    private Polygon arrowHead;
 
     /**
      * Creates a new renderer.
@@ -59,6 +66,16 @@ public class XYArrowRenderer extends AbstractXYItemRenderer implements XYItemRen
         renderHints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
     }
     
+    /**
+     * Creates the state that holds the graphics object shared by the arrows
+     * of a series.
+     */
+    @Override
+    public XYItemRendererState initialise(Graphics2D g2, Rectangle2D dataArea, XYPlot plot, XYDataset data,
+            PlotRenderingInfo info) {
+        return new ItemGraphicsRendererState(info, renderHints);
+    }
+
     /**
      * Draws the visual representation of a single symbol.
      */
@@ -66,9 +83,8 @@ public class XYArrowRenderer extends AbstractXYItemRenderer implements XYItemRen
     public void drawItem(Graphics2D g2d, XYItemRendererState state, Rectangle2D plotArea, PlotRenderingInfo info,
             XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis, XYDataset dataset, int series, int item,
             CrosshairState crosshairState, int pass) {
-        // Needs a new graphics object to use translate() and rotate()
-        Graphics2D g2 = (Graphics2D) g2d.create();
-        g2.setRenderingHints(renderHints);
+        // Needs a separate graphics object to use translate() and rotate()
+        Graphics2D g2 = ((ItemGraphicsRendererState) state).getItemGraphics(g2d);
         double middleY = plotArea.getCenterY();
         double maxY=plotArea.getMaxY();
         double minY=plotArea.getMinY();
@@ -92,7 +108,7 @@ public class XYArrowRenderer extends AbstractXYItemRenderer implements XYItemRen
         g2.rotate(Math.toRadians(direction.doubleValue()));
         Paint itemPaint = getItemPaint(series, item);
         g2.setPaint(itemPaint);
-        g2.setStroke(new BasicStroke());
+        g2.setStroke(ARROW_STROKE);
         
         double arrowWidth = 1.2;
         double arrowHeight = (plotArea.getWidth() / (nItems)) /2.0;
@@ -115,13 +131,18 @@ public class XYArrowRenderer extends AbstractXYItemRenderer implements XYItemRen
 	}
 
 	private void drawArrow(Graphics2D g,double arrowWidth, double arrowHeight) {
-        int startX = - (int)(arrowWidth/2)-1;
-        int startY = -(int)(arrowHeight/2);
+        if (arrowHeight != cachedArrowHeight || arrowLine == null) {
+            int startX = - (int)(arrowWidth/2)-1;
+            int startY = -(int)(arrowHeight/2);
+            arrowLine = new Rectangle2D.Double(startX, startY, arrowWidth, arrowHeight);
+            arrowHead = new Polygon(new int[]{startX,startX-3,startX+4,startX+1},new int[]{startY,startY+5,startY+5,startY},4);
+            cachedArrowHeight = arrowHeight;
+        }
         //draw main line
-        g.fill(new Rectangle2D.Double(startX, startY, arrowWidth, arrowHeight));
+        g.fill(arrowLine);
         //draw arrow
-        g.fill(new Polygon(new int[]{startX,startX-3,startX+4,startX+1},new int[]{startY,startY+5,startY+5,startY},4));
-        g.setStroke(new BasicStroke(1));
+        g.fill(arrowHead);
+        g.setStroke(LINE_STROKE);
     }
     
     /**
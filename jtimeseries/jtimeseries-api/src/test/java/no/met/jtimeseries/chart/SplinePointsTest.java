@@ -0,0 +1,110 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.chart;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SplinePointsTest {
+
+    @Test
+    public void testKeep() {
+        SplinePoints points = new SplinePoints(SplinePoints.Duplicates.KEEP, 1);
+        assertTrue(points.add(1, 2));
+        assertTrue(points.add(1, 2));
+        assertEquals(2, points.size());
+    }
+
+    @Test
+    public void testSkipEqualX() {
+        SplinePoints points = new SplinePoints(SplinePoints.Duplicates.SKIP_EQUAL_X);
+        assertTrue(points.add(1, 2));
+        assertTrue(points.add(2, 3));
+        assertFalse(points.add(2, 4));
+        assertFalse(points.add(1, 5));
+        assertEquals(2, points.size());
+        assertEquals(3, points.getY(1), 0);
+    }
+
+    @Test
+    public void testSkipEqualPoint() {
+        SplinePoints points = new SplinePoints(SplinePoints.Duplicates.SKIP_EQUAL_POINT);
+        assertTrue(points.add(1, 2));
+        assertTrue(points.add(1, 3));
+        assertFalse(points.add(1, 2));
+        assertTrue(points.add(2, 2));
+        assertFalse(points.add(1, 3));
+        assertEquals(3, points.size());
+    }
+
+    @Test
+    public void testDuplicatesWhenXDecreases() {
+        SplinePoints points = new SplinePoints(SplinePoints.Duplicates.SKIP_EQUAL_X);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(points.add(i, i));
+        }
+        assertTrue(points.add(-1, 0));
+        // the early exit of the duplicate check must not be used any more
+        assertFalse(points.add(50, 0));
+        assertTrue(points.add(100, 0));
+        assertEquals(102, points.size());
+        assertEquals(-1, points.getX(100), 0);
+
+        points.clear();
+        assertEquals(0, points.size());
+        assertTrue(points.add(50, 0));
+    }
+
+    @Test
+    public void testNaturalSplinePassesThroughNodes() {
+        SplinePoints nodes = new SplinePoints(SplinePoints.Duplicates.KEEP);
+        nodes.add(0, 1);
+        nodes.add(10, 3);
+        nodes.add(20, 2);
+        nodes.add(30, 5);
+        SplinePoints out = new SplinePoints(SplinePoints.Duplicates.KEEP);
+        NaturalSpline.interpolate(nodes, 4, out);
+        assertEquals(1 + 3 * 4, out.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            assertEquals(nodes.getX(i), out.getX(i * 4), 1e-9);
+            assertEquals(nodes.getY(i), out.getY(i * 4), 1e-9);
+        }
+    }
+
+    @Test
+    public void testCardinalSplinePassesThroughPoints() {
+        SplinePoints points = new SplinePoints(SplinePoints.Duplicates.KEEP);
+        points.add(0, 1);
+        points.add(10, 3);
+        points.add(20, 2);
+        SplinePoints out = new SplinePoints(SplinePoints.Duplicates.SKIP_EQUAL_POINT);
+        CardinalSpline.addControlPoints(points, 0.5, out);
+        assertEquals(0, out.getX(0), 1e-9);
+        assertEquals(1, out.getY(0), 1e-9);
+        assertEquals(20, out.getX(out.size() - 1), 1e-9);
+        assertEquals(2, out.getY(out.size() - 1), 1e-9);
+        for (int i = 1; i < out.size(); i++) {
+            assertTrue(out.getX(i) > out.getX(i - 1));
+        }
+    }
+}
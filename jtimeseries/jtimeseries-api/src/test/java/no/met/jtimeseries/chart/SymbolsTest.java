@@ -0,0 +1,63 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.chart;
+
+import static org.junit.Assert.*;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class SymbolsTest {
+
+    @Test
+    public void testSymbolImagesAreShared() {
+        Image image = Symbols.getSymbolImage("clearsky_day");
+        assertNotNull(image);
+        assertSame(image, Symbols.getSymbolImage("clearsky_day"));
+        assertSame(Symbols.getSymbolImage("clearsky_day", 20), Symbols.getSymbolImage("clearsky_day", 20));
+        assertNotSame(Symbols.getSymbolImage("clearsky_day", 20), Symbols.getSymbolImage("clearsky_day", 21));
+    }
+
+    @Test
+    public void testScaledSymbolImage() {
+        Image scaled = Symbols.getSymbolImage("cloudy", 17);
+        assertEquals(17, scaled.getWidth(null));
+        assertEquals(17, scaled.getHeight(null));
+
+        // same result as scaling the original image on every use
+        Image expected = Symbols.getSymbolImage("cloudy").getScaledInstance(17, 17, Image.SCALE_SMOOTH);
+        BufferedImage expectedPixels = new BufferedImage(17, 17, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = expectedPixels.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(expected, 0, 0, null);
+        g.dispose();
+        for (int x = 0; x < 17; x++) {
+            for (int y = 0; y < 17; y++) {
+                assertEquals(expectedPixels.getRGB(x, y), ((BufferedImage) scaled).getRGB(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.chart;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class UtilityTest {
+
+    @Test
+    public void testParseDateUTC() throws ParseException {
+        assertEquals(0, Utility.parseDateUTC("1970-01-01T00:00:00Z"));
+        assertEquals(1334055600000L, Utility.parseDateUTC("2012-04-10T11:00:00Z"));
+        assertEquals(951782400000L, Utility.parseDateUTC("2000-02-29T00:00:00Z"));
+        assertEquals(-1000, Utility.parseDateUTC("1969-12-31T23:59:59Z"));
+    }
+
+    @Test
+    public void testDateUTCAgreesWithDateFormat() throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat(Utility.DATE_FORMAT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        char[] chars = new char[22];
+        byte[] bytes = new byte[22];
+        // every 7 hours, 13 minutes and 11 seconds through a couple of leap years
+        for (long time = 946684800000L; time < 1072915200000L; time += ((7 * 60 + 13) * 60 + 11) * 1000L) {
+            String text = format.format(time);
+            assertEquals(text, time, Utility.parseDateUTC(text));
+            assertEquals(text, Utility.formatDateUTC(time));
+            assertEquals(21, Utility.formatDateUTC(time, chars, 1));
+            assertEquals(text, new String(chars, 1, 20));
+            assertEquals(time, Utility.parseDateUTC(chars, 1, 20));
+            assertEquals(21, Utility.formatDateUTC(time, bytes, 1));
+            assertEquals(text, new String(bytes, 1, 20, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testFormatDateUTC() {
+        assertEquals("1970-01-01T00:00:00Z", Utility.formatDateUTC(0));
+        assertEquals("1969-12-31T23:59:59Z", Utility.formatDateUTC(-1));
+        assertEquals("2000-02-29T23:00:00Z", Utility.formatDateUTC(951865200999L));
+        assertEquals("9999-12-31T23:59:59Z", Utility.formatDateUTC(253402300799000L));
+    }
+
+    @Test
+    public void testEpochArithmetic() throws ParseException {
+        long time = Utility.parseDateUTC("2012-04-10T11:47:12Z");
+        assertEquals(Utility.parseDateUTC("2012-04-10T11:00:00Z"), Utility.truncateToHourUTC(time));
+        assertEquals(Utility.parseDateUTC("2012-04-10T00:00:00Z"), Utility.truncateToDayUTC(time));
+        assertEquals(11, Utility.getHourOfDayUTC(time));
+        assertEquals(23, Utility.getHourOfDayUTC(-1));
+        assertEquals(-Utility.MILLIS_PER_DAY, Utility.truncateToDayUTC(-1));
+        assertEquals(Utility.parseDateUTC("2012-04-09T23:47:12Z"), Utility.addHours(time, -12));
+        assertEquals(-12, Utility.hourDifference(time, Utility.addHours(time, -12)));
+        assertEquals(0, Utility.hourDifference(time, time + Utility.MILLIS_PER_HOUR - 1));
+    }
+
+    @Test
+    public void testParseDateUTCRejectsOtherFormats() {
+        String[] invalid = { null, "", "2012-04-10", "2012-04-10T11:00:00", "2012-04-10T11:00:00+01:00",
+                "2012-04-10 11:00:00Z", "2012-13-10T11:00:00Z", "2012-04-10T24:00:00Z", "2012-04-1xT11:00:00Z" };
+        for (String text : invalid) {
+            try {
+                Utility.parseDateUTC(text);
+                fail("Parsed " + text);
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+}
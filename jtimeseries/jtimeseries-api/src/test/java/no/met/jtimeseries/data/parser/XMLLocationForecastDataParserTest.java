@@ -24,6 +24,7 @@ package no.met.jtimeseries.data.parser;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.io.IOException;
 import java.net.URL;
 import java.text.DateFormat;
 import java.text.ParseException;
@@ -55,7 +56,7 @@ public class XMLLocationForecastDataParserTest {
 	}
 
 	@Test
-	public void testInsideHirlamWithPercipitation() throws ParseException {
+	public void testInsideHirlamWithPercipitation() throws ParseException, IOException {
 
 		Calendar cal = Calendar.getInstance();
 		cal.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -192,7 +193,7 @@ public class XMLLocationForecastDataParserTest {
 	}
 
 	@Test
-	public void testOutsideHirlamWithPercipitation() throws ParseException {
+	public void testOutsideHirlamWithPercipitation() throws ParseException, IOException {
 
 		Calendar cal = Calendar.getInstance();
 		cal.setTimeZone(TimeZone.getTimeZone("UTC"));
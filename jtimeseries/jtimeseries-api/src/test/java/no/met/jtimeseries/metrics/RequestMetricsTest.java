@@ -0,0 +1,107 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.metrics;
+
+import static org.junit.Assert.*;
+
+import no.met.jtimeseries.metrics.RequestMetrics.Stage;
+
+import org.junit.Test;
+
+public class RequestMetricsTest {
+
+    @Test
+    public void testHistogramBucketsAreCumulative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.observe(100000); // 0.1 ms
+        histogram.observe(1000000); // exactly 1 ms
+        histogram.observe(40000000); // 40 ms
+        histogram.observe(60000000000L); // a minute
+
+        assertEquals(4, histogram.getCount());
+        assertEquals(60041100000L, histogram.getSum());
+
+        StringBuilder out = new StringBuilder();
+        histogram.write(out, "test_seconds", "stage=\"fetch\"");
+        String text = out.toString();
+        assertTrue(text.contains("test_seconds_bucket{stage=\"fetch\",le=\"0.0005\"} 1\n"));
+        assertTrue(text.contains("test_seconds_bucket{stage=\"fetch\",le=\"0.001\"} 2\n"));
+        assertTrue(text.contains("test_seconds_bucket{stage=\"fetch\",le=\"0.025\"} 2\n"));
+        assertTrue(text.contains("test_seconds_bucket{stage=\"fetch\",le=\"0.05\"} 3\n"));
+        assertTrue(text.contains("test_seconds_bucket{stage=\"fetch\",le=\"30\"} 3\n"));
+        assertTrue(text.contains("test_seconds_bucket{stage=\"fetch\",le=\"+Inf\"} 4\n"));
+        assertTrue(text.contains("test_seconds_sum{stage=\"fetch\"} 60.0411\n"));
+        assertTrue(text.contains("test_seconds_count{stage=\"fetch\"} 4\n"));
+    }
+
+    @Test
+    public void testHistogramWithoutLabels() {
+        StringBuilder out = new StringBuilder();
+        new LatencyHistogram().write(out, "test_seconds", "");
+        String text = out.toString();
+        assertTrue(text.contains("test_seconds_bucket{le=\"+Inf\"} 0\n"));
+        assertTrue(text.contains("test_seconds_sum 0.0\n"));
+        assertTrue(text.contains("test_seconds_count 0\n"));
+    }
+
+    @Test
+    public void testRecordStage() {
+        RequestMetrics metrics = new RequestMetrics();
+        long start = System.nanoTime();
+        long next = metrics.record(Stage.FETCH, start);
+        assertTrue(next >= start);
+        metrics.record(Stage.PARSE, next);
+
+        assertEquals(1, metrics.getHistogram(Stage.FETCH).getCount());
+        assertEquals(1, metrics.getHistogram(Stage.PARSE).getCount());
+        assertEquals(0, metrics.getHistogram(Stage.ENCODE).getCount());
+    }
+
+    @Test
+    public void testWrite() {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.countRequest("meteogram", "png", 200);
+        metrics.countRequest("meteogram", "png", 200);
+        metrics.countRequest("meteogram", "svg", 503);
+        metrics.countRequest("marinogram", "a\"b", 422);
+        metrics.record(Stage.SERVE, System.nanoTime());
+
+        assertEquals(2, metrics.getRequests("meteogram", "png", 200));
+        assertEquals(0, metrics.getRequests("meteogram", "png", 500));
+
+        StringBuilder out = new StringBuilder();
+        metrics.write(out);
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE jtimeseries_stage_duration_seconds histogram\n"));
+        for (Stage stage : Stage.values()) {
+            assertTrue(text.contains("jtimeseries_stage_duration_seconds_count{stage=\"" + stage.getLabel() + "\"}"));
+        }
+        assertTrue(text.contains("jtimeseries_stage_duration_seconds_count{stage=\"serve\"} 1\n"));
+        assertTrue(text.contains("# TYPE jtimeseries_requests_total counter\n"));
+        assertTrue(text.contains(
+                "jtimeseries_requests_total{endpoint=\"meteogram\",format=\"png\",status=\"200\"} 2\n"));
+        assertTrue(text.contains(
+                "jtimeseries_requests_total{endpoint=\"meteogram\",format=\"svg\",status=\"503\"} 1\n"));
+        assertTrue(text.contains(
+                "jtimeseries_requests_total{endpoint=\"marinogram\",format=\"a\\\"b\",status=\"422\"} 1\n"));
+    }
+}
@@ -28,6 +28,7 @@ import java.sql.Date;
 import java.util.List;
 import java.util.Vector;
 
+import no.met.jtimeseries.Location;
 import no.met.jtimeseries.data.item.NumberValueItem;
 import no.met.phenomenen.NumberPhenomenon;
 
@@ -71,4 +72,22 @@ public class NetcdfChartProviderTest {
 		assertEquals(new Date(1308409202L * 1000), phenomenon.getEndTime());
 	}
 
+	@Test
+	public void testLocated() throws Exception {
+		URL resource = getClass().getClassLoader().getResource("netcdf/even_simpler.nc");
+		Location location = new Location(5.3, 61.7);
+		List<String> parameters = new Vector<String>();
+		parameters.add("x_wind");
+		parameters.add("y_wind");
+		NetcdfChartProvider provider = new NetcdfChartProvider(resource.toString(), location, parameters, ParameterReference.VARIABLE_NAME, null);
+
+		NetcdfFileExtractor extractor = new NetcdfFileExtractor(resource);
+		for ( String parameter : parameters ) {
+			NumberPhenomenon expected = extractor.getPhenomenon(parameter, location, null);
+			NumberPhenomenon phenomenon = provider.getWantedPhenomenon(parameter);
+			assertEquals(4, phenomenon.size());
+			assertArrayEquals(expected.getValueArray(), phenomenon.getValueArray(), 0);
+		}
+		extractor.close();
+	}
 }
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.netcdf;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.junit.Test;
+
+public class NetcdfFileCacheTest {
+
+	private String getResource(String path) {
+		return getClass().getClassLoader().getResource(path).getPath();
+	}
+
+	@Test
+	public void testReusesOpenFile() throws IOException, ParseException {
+		NetcdfFileCache cache = new NetcdfFileCache(4, 0);
+		String resource = getResource("netcdf/simple.nc");
+
+		NetcdfFileExtractor first = cache.acquire(resource);
+		NetcdfFileExtractor second = cache.acquire(resource);
+		assertSame(first, second);
+		assertSame(first.getValidTimes(), second.getValidTimes());
+		cache.release(first);
+		cache.release(second);
+
+		assertSame(first, cache.acquire(resource));
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws IOException {
+		NetcdfFileCache cache = new NetcdfFileCache(2, 0);
+		String a = getResource("netcdf/simple.nc");
+		String b = getResource("netcdf/missing_units.nc");
+		String c = getResource("netcdf/even_simpler.nc");
+
+		NetcdfFileExtractor extractorA = cache.acquire(a);
+		cache.release(extractorA);
+		cache.release(cache.acquire(b));
+		cache.release(cache.acquire(a));
+		cache.release(cache.acquire(c));
+
+		assertEquals(2, cache.getSize());
+		assertEquals(1, cache.getEvictions());
+		assertSame(extractorA, cache.acquire(a));
+		assertEquals(3, cache.getMisses());
+		assertEquals(2, cache.getHits());
+	}
+
+	@Test
+	public void testKeepsFilesInUse() throws IOException, ParseException {
+		NetcdfFileCache cache = new NetcdfFileCache(1, 0);
+		NetcdfFileExtractor a = cache.acquire(getResource("netcdf/simple.nc"));
+		NetcdfFileExtractor b = cache.acquire(getResource("netcdf/missing_units.nc"));
+		assertEquals(2, cache.getSize());
+
+		// still open, even though the cache is full
+		assertEquals(2, a.getValidTimes().size());
+
+		cache.release(a);
+		assertEquals(1, cache.getSize());
+		cache.release(b);
+		assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	public void testEvictsIdleFiles() throws IOException, InterruptedException {
+		NetcdfFileCache cache = new NetcdfFileCache(4, 1);
+		String resource = getResource("netcdf/simple.nc");
+
+		NetcdfFileExtractor first = cache.acquire(resource);
+		cache.release(first);
+		Thread.sleep(20);
+
+		assertNotSame(first, cache.acquire(resource));
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void testFailedOpenIsNotCached() throws IOException {
+		NetcdfFileCache cache = new NetcdfFileCache(4, 0);
+		try {
+			cache.acquire("/no/such/file.nc");
+			fail("Opening non-existing file did not fail");
+		}
+		catch (FileNotFoundException e) 
+		{}
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testDisabled() throws IOException {
+		NetcdfFileCache cache = new NetcdfFileCache(0, 0);
+		String resource = getResource("netcdf/simple.nc");
+
+		NetcdfFileExtractor first = cache.acquire(resource);
+		cache.release(first);
+		assertNotSame(first, cache.acquire(resource));
+		assertFalse(cache.isEnabled());
+		assertEquals(0, cache.getSize());
+	}
+}
@@ -26,10 +26,13 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.net.URL;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
 import no.met.jtimeseries.Location;
+import no.met.jtimeseries.data.model.GenericDataModel;
+import no.met.phenomenen.NumberPhenomenon;
 
 import org.junit.Test;
 
@@ -94,17 +97,17 @@ public class NetcdfFileExtractorTest {
 	public void testGetValuesWithNullLocation() throws Exception {
 		NetcdfFileExtractor extractor = getExtractor("netcdf/missing_units.nc");
 
-		List<Double> data = extractor.getValues("geopotential_height", null, null);
+		double[] data = extractor.getValues("geopotential_height", null, null);
 
-		assertEquals(2, data.size());
-		assertEquals(24234.43, data.get(0).doubleValue(), 0.001);
-		assertEquals(24234.6, data.get(1).doubleValue(), 0.001);
+		assertEquals(2, data.length);
+		assertEquals(24234.43, data[0], 0.001);
+		assertEquals(24234.6, data[1], 0.001);
 	}
 
 	@Test
 	public void testGetLocatedValuesOutsideGrid() throws Exception {
 		NetcdfFileExtractor extractor = getExtractor("netcdf/simple.nc");
-		List<Double> data = extractor.getValues("geopotential_height", new Location(-5, 12), null);
+		double[] data = extractor.getValues("geopotential_height", new Location(-5, 12), null);
 		
 		assertNull(data);
 	}
@@ -125,4 +128,51 @@ public class NetcdfFileExtractorTest {
 //		assertEquals(24236.71, data.get(0).doubleValue(), 0.005);
 //		assertEquals(24249.56, data.get(1).doubleValue(), 0.005);
 	}
+
+	@Test
+	public void testGetDataModels() throws Exception {
+		NetcdfFileExtractor extractor = getExtractor("netcdf/even_simpler.nc");
+		List<Location> locations = Arrays.asList(new Location(5.2, 61.7), new Location(5.3, 61.7),
+				new Location(6.5, 62.5), new Location(-5, 12));
+		List<String> variables = Arrays.asList("geopotential_height", "x_wind", "no_such_parameter");
+
+		List<GenericDataModel> models = extractor.getDataModels(variables, locations);
+		assertEquals(locations.size(), models.size());
+
+		for ( int i = 0; i < 3; i ++ ) {
+			for ( String variable : Arrays.asList("geopotential_height", "x_wind") ) {
+				NumberPhenomenon expected = extractor.getPhenomenon(variable, locations.get(i), null);
+				NumberPhenomenon actual = models.get(i).getNumberPhenomenon(variable);
+				assertEquals(4, actual.size());
+				assertEquals(expected.getPhenomenonName(), actual.getPhenomenonName());
+				assertEquals(expected.getPhenomenonUnit(), actual.getPhenomenonUnit());
+				assertArrayEquals(expected.getTimeFromArray(), actual.getTimeFromArray());
+				assertArrayEquals(expected.getValueArray(), actual.getValueArray(), 0);
+			}
+			assertFalse(models.get(i).isExist("no_such_parameter"));
+		}
+
+		NumberPhenomenon outside = models.get(3).getNumberPhenomenon("geopotential_height");
+		assertEquals(4, outside.size());
+		assertTrue(Double.isNaN(outside.getValueAt(0)));
+	}
+
+	@Test
+	public void testPlanReads() {
+		// close together, so read in one box
+		int[][] dense = { { 1, 1 }, { 2, 1 }, { 1, 2 }, null, { 2, 2 } };
+		List<int[]> boxes = NetcdfFileExtractor.planReads(dense);
+		assertEquals(1, boxes.size());
+		assertArrayEquals(new int[] { 1, 2, 1, 2 }, boxes.get(0));
+
+		// spread out, so read along rows, with nearby points read together
+		int[][] sparse = { { 0, 0 }, { 3, 0 }, { 50, 0 }, { 10, 40 }, { 3, 0 } };
+		boxes = NetcdfFileExtractor.planReads(sparse);
+		assertEquals(3, boxes.size());
+		assertArrayEquals(new int[] { 0, 0, 0, 3 }, boxes.get(0));
+		assertArrayEquals(new int[] { 0, 0, 50, 50 }, boxes.get(1));
+		assertArrayEquals(new int[] { 40, 40, 10, 10 }, boxes.get(2));
+
+		assertTrue(NetcdfFileExtractor.planReads(new int[][] { null }).isEmpty());
+	}
 }
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.netcdf.projection;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class KdTreeLocationConverterTest {
+
+	private static final int X_SIZE = 60;
+	private static final int Y_SIZE = 40;
+
+	/**
+	 * A grid rotated 30 degrees, with cells about 0.1 degrees apart, around
+	 * 10E 60N
+	 */
+	private double[][] getRotatedGrid() {
+		double[] lon = new double[X_SIZE * Y_SIZE];
+		double[] lat = new double[X_SIZE * Y_SIZE];
+		double angle = Math.toRadians(30);
+		for ( int y = 0; y < Y_SIZE; y ++ ) {
+			for ( int x = 0; x < X_SIZE; x ++ ) {
+				int index = (y * X_SIZE) + x;
+				double east = (x * Math.cos(angle)) - (y * Math.sin(angle));
+				double north = (x * Math.sin(angle)) + (y * Math.cos(angle));
+				lon[index] = 10 + (east * 0.2);
+				lat[index] = 60 + (north * 0.1);
+			}
+		}
+		return new double[][] { lon, lat };
+	}
+
+	private static double greatCircle(double lon1, double lat1, double lon2, double lat2) {
+		double dLat = Math.toRadians(lat2 - lat1);
+		double dLon = Math.toRadians(lon2 - lon1);
+		double a = Math.pow(Math.sin(dLat / 2), 2)
+				+ (Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.pow(Math.sin(dLon / 2), 2));
+		return 2 * Math.asin(Math.sqrt(a));
+	}
+
+	@Test
+	public void testSimpleGrid() {
+		double[] lon = { 1, 2, 3, 1, 2, 3, 1, 2, 3 };
+		double[] lat = { 5, 5, 5, 4, 4, 4, 3, 3, 3 };
+		KdTreeLocationConverter converter = new KdTreeLocationConverter(3, 3, lon, lat);
+
+		assertEquals(new GridLocation(1, 1), converter.convert(2, 4));
+		assertEquals(new GridLocation(2, 2), converter.convert(2.9, 3.2));
+		assertEquals(new GridLocation(0, 0), converter.convert(1, 5));
+	}
+
+	@Test
+	public void testSameAsExhaustiveSearch() {
+		double[][] grid = getRotatedGrid();
+		double[] lon = grid[0];
+		double[] lat = grid[1];
+		KdTreeLocationConverter converter = new KdTreeLocationConverter(X_SIZE, Y_SIZE, lon, lat);
+
+		Random random = new Random(1);
+		for ( int i = 0; i < 500; i ++ ) {
+			// a random cell, moved less than half a cell
+			int cell = random.nextInt(lon.length);
+			double longitude = lon[cell] + ((random.nextDouble() - 0.5) * 0.1);
+			double latitude = lat[cell] + ((random.nextDouble() - 0.5) * 0.05);
+
+			double smallest = Double.MAX_VALUE;
+			for ( int j = 0; j < lon.length; j ++ ) {
+				double distance = greatCircle(longitude, latitude, lon[j], lat[j]);
+				smallest = Math.min(smallest, distance);
+			}
+
+			GridLocation location = converter.convert(longitude, latitude);
+			assertNotNull(location);
+			int found = (int) ((location.getY() * X_SIZE) + location.getX());
+			assertEquals(smallest, greatCircle(longitude, latitude, lon[found], lat[found]), 1e-7);
+		}
+	}
+
+	@Test
+	public void testOutsideGrid() {
+		double[][] grid = getRotatedGrid();
+		KdTreeLocationConverter converter = new KdTreeLocationConverter(X_SIZE, Y_SIZE, grid[0], grid[1]);
+
+		assertNull(converter.convert(-20, 60));
+		assertNull(converter.convert(10, 50));
+		assertNull(converter.convert(190, -60));
+	}
+
+	@Test
+	public void testMissingCoordinates() {
+		double[] lon = { 1, 2, 3, 1, Double.NaN, 3, 1, 2, 3 };
+		double[] lat = { 5, 5, 5, 4, Double.NaN, 4, 3, 3, 3 };
+		KdTreeLocationConverter converter = new KdTreeLocationConverter(3, 3, lon, lat);
+
+		GridLocation location = converter.convert(2, 4);
+		assertNotNull(location);
+		assertFalse(new GridLocation(1, 1).equals(location));
+	}
+}
@@ -92,4 +92,40 @@ public class LonLatGridLocationConverterTest {
 		assertEquals(3, loc.getX(), 0.01);
 		assertEquals(4, loc.getY(), 0.01);
 	}
+
+	@Test
+	public void edgesOfGrid() {
+		double[] lon = {0,10,20,30,40};
+		double[] lat = {3,2,1,0,-1,-2};
+		LonLatGridLocationConverter converter = getConverter(lon, lat);
+
+		GridLocation first = converter.convert(0, 3);
+		assertNotNull(first);
+		assertEquals(0, first.getX(), 0.01);
+		assertEquals(0, first.getY(), 0.01);
+
+		GridLocation last = converter.convert(40, -2);
+		assertNotNull(last);
+		assertEquals(4, last.getX(), 0.01);
+		assertEquals(5, last.getY(), 0.01);
+
+		assertNull(converter.convert(20, 3.5));
+		assertNull(converter.convert(20, -2.5));
+	}
+
+	@Test
+	public void largeAxes() {
+		double[] lon = new double[1000];
+		double[] lat = new double[800];
+		for ( int i = 0; i < lon.length; i ++ )
+			lon[i] = -50 + (i * 0.1);
+		for ( int i = 0; i < lat.length; i ++ )
+			lat[i] = 85 - (i * 0.05);
+		LonLatGridLocationConverter converter = getConverter(lon, lat);
+		GridLocation loc = converter.convert(10.75, 59.925);
+
+		assertNotNull(loc);
+		assertEquals(607.5, loc.getX(), 0.01);
+		assertEquals(501.5, loc.getY(), 0.01);
+	}
 }
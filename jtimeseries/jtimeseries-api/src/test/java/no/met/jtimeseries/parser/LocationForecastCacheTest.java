@@ -0,0 +1,97 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.Test;
+
+public class LocationForecastCacheTest {
+
+    private static LocationForecastCache.Entry entry(int size, long expiresIn) {
+        return new LocationForecastCache.Entry(new byte[size], new Date(System.currentTimeMillis() + expiresIn), null);
+    }
+
+    @Test
+    public void testFetchUsesValidEntry() throws IOException {
+        LocationForecastCache cache = new LocationForecastCache(1000);
+        LocationForecastCache.Entry e = entry(10, 60000);
+        // the host does not exist, so this would fail if a download was attempted
+        cache.put("http://invalid.invalid/forecast", e);
+
+        assertSame(e, cache.fetch("http://invalid.invalid/forecast"));
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        LocationForecastCache cache = new LocationForecastCache(100);
+        cache.put("a", entry(40, 60000));
+        cache.put("b", entry(40, 60000));
+        cache.get("a");
+        cache.put("c", entry(40, 60000));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(80, cache.getBytes());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testReplaceAndOversizedEntries() {
+        LocationForecastCache cache = new LocationForecastCache(100);
+        cache.put("a", entry(40, 60000));
+        cache.put("a", entry(30, 60000));
+        assertEquals(30, cache.getBytes());
+
+        cache.put("b", entry(101, 60000));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getSize());
+
+        cache.put("a", entry(101, 60000));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testDisabled() {
+        LocationForecastCache cache = new LocationForecastCache(0);
+        cache.put("a", entry(1, 60000));
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testFormatCoordinate() {
+        assertEquals("60.1", LocationForecastAddressFactory.formatCoordinate(60.1));
+        assertEquals("10.7523", LocationForecastAddressFactory.formatCoordinate(10.752345));
+        assertEquals("-0.0002", LocationForecastAddressFactory.formatCoordinate(-0.00015));
+        assertEquals("0", LocationForecastAddressFactory.formatCoordinate(0.00001));
+        assertEquals("5", LocationForecastAddressFactory.formatCoordinate(5.0));
+    }
+}
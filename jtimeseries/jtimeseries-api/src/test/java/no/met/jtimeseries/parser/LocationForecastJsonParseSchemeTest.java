@@ -0,0 +1,100 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Date;
+
+import no.met.jtimeseries.chart.TimePeriod;
+import no.met.jtimeseries.data.item.SymbolValueItem;
+import no.met.jtimeseries.data.model.GenericDataModel;
+import no.met.phenomenen.NumberPhenomenon;
+import no.met.phenomenen.SymbolPhenomenon;
+
+import org.junit.Test;
+
+public class LocationForecastJsonParseSchemeTest {
+
+    // 2024-05-01T12:00:00Z, the first time step of the document
+    private static final long START = 1714564800000L;
+    private static final long HOUR = 3600 * 1000;
+
+    private GenericDataModel parse(long start, int hours) throws IOException, URISyntaxException {
+        byte[] document = Files.readAllBytes(Paths.get(getClass().getClassLoader()
+                .getResource("locationforecast/complete.json").toURI()));
+        LocationForecastJsonParseScheme scheme = new LocationForecastJsonParseScheme(new TimePeriod(new Date(start), hours));
+        scheme.setModel(new GenericDataModel());
+        return scheme.parse(document);
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        GenericDataModel model = parse(START, 48);
+
+        NumberPhenomenon temperature = model.getNumberPhenomenon("AirTemperature");
+        assertEquals("celsius", temperature.getPhenomenonUnit());
+        // the last time step is outside the period
+        assertEquals(19, temperature.size());
+        assertEquals(START, temperature.getTimeFromMillis(0));
+        assertEquals(16.2, temperature.getValueAt(0), 0);
+        assertEquals(6.5, model.getNumberPhenomenon("WindSpeedMPS").getValueAt(0), 0);
+
+        NumberPhenomenon precipitation = model.getNumberPhenomenon("Precipitation_1");
+        assertEquals(12, precipitation.size());
+        assertEquals(START + HOUR, precipitation.getTimeToMillis(0));
+        assertEquals(1.8, precipitation.getValueAt(0), 0);
+        assertEquals(START + 6 * HOUR, model.getNumberPhenomenon("Precipitation_6").getTimeToMillis(0));
+        assertTrue(model.isExist("PrecipitationMax_6"));
+
+        SymbolPhenomenon symbols = model.getSymbolPhenomenon("WeatherSymbols_1");
+        assertEquals(12, symbols.getItems().size());
+        assertEquals("cloudy", ((SymbolValueItem) symbols.getItem(0)).getName());
+        assertFalse(model.isExist("WeatherSymbols_6"));
+    }
+
+    @Test
+    public void testSkipsTimeStepsOutsidePeriod() throws Exception {
+        GenericDataModel model = parse(START + 5 * HOUR, 3);
+
+        NumberPhenomenon temperature = model.getNumberPhenomenon("AirTemperature");
+        assertEquals(4, temperature.size());
+        assertEquals(START + 5 * HOUR, temperature.getTimeFromMillis(0));
+        assertEquals(6.3, temperature.getValueAt(0), 0);
+    }
+
+    @Test
+    public void testLongPeriodUsesSixHourSymbols() throws Exception {
+        GenericDataModel model = parse(START, 228);
+
+        assertEquals(20, model.getNumberPhenomenon("AirTemperature").size());
+        assertFalse(model.isExist("WeatherSymbols_1"));
+        SymbolPhenomenon symbols = model.getSymbolPhenomenon("WeatherSymbols_6");
+        assertEquals(19, symbols.getItems().size());
+        assertEquals("lightrainshowers_day", ((SymbolValueItem) symbols.getItem(0)).getName());
+        assertEquals(START + 6 * HOUR, symbols.getItem(0).getTimeTo().getTime());
+    }
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.util.Date;
+
+import no.met.jtimeseries.chart.TimePeriod;
+import no.met.jtimeseries.data.model.GenericDataModel;
+import no.met.phenomenen.NumberPhenomenon;
+
+import org.junit.Test;
+
+public class OceanForecastParseSchemeTest {
+
+    // 2024-05-01T12:00:00Z, the first time step of the document
+    private static final long START = 1714564800000L;
+    private static final long HOUR = 3600 * 1000;
+
+    private GenericDataModel parse(long start, int hours) throws Exception {
+        OceanForecastParseScheme scheme = new OceanForecastParseScheme(new TimePeriod(new Date(start), hours));
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("oceanforecast/forecast.xml")) {
+            scheme.parse(in);
+        }
+        return scheme.getModel();
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        GenericDataModel model = parse(START, 48);
+
+        NumberPhenomenon temperature = model.getNumberPhenomenon("seaTemperature");
+        assertEquals("Cel", temperature.getPhenomenonUnit());
+        assertEquals(3, temperature.size());
+        assertEquals(START, temperature.getTimeFromMillis(0));
+        assertEquals(START, temperature.getTimeToMillis(0));
+        assertEquals(10.4, temperature.getValueAt(0), 0);
+        assertEquals(START + 2 * HOUR, temperature.getTimeFromMillis(2));
+
+        NumberPhenomenon waveHeight = model.getNumberPhenomenon("WaveHeight");
+        assertEquals("m", waveHeight.getPhenomenonUnit());
+        assertEquals(4.1, waveHeight.getValueAt(2), 0);
+        assertEquals(234.3, model.getNumberPhenomenon("WaveDirection").getValueAt(0), 0);
+        assertEquals(131.6, model.getNumberPhenomenon("CurrentDirection").getValueAt(1), 0);
+        assertEquals(0.2, model.getNumberPhenomenon("CurrentSpeed").getValueAt(0), 0);
+    }
+
+    @Test
+    public void testSkipsTimeStepsOutsidePeriod() throws Exception {
+        GenericDataModel model = parse(START + HOUR, 1);
+
+        NumberPhenomenon temperature = model.getNumberPhenomenon("seaTemperature");
+        assertEquals(2, temperature.size());
+        assertEquals(START + HOUR, temperature.getTimeFromMillis(0));
+        assertEquals(9.3, temperature.getValueAt(0), 0);
+    }
+}
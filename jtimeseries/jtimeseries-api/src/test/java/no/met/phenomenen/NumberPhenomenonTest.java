@@ -0,0 +1,174 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.phenomenen;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import no.met.jtimeseries.data.item.AbstractValueItem;
+import no.met.jtimeseries.data.item.NumberValueItem;
+import no.met.phenomenen.filter.LessOrEqualNumberFilter;
+
+import org.junit.Test;
+
+public class NumberPhenomenonTest {
+
+    private static final long HOUR = 3600 * 1000;
+
+    private static NumberPhenomenon create(double... values) {
+        NumberPhenomenon p = new NumberPhenomenon("test", "unit");
+        for (int i = 0; i < values.length; i++) {
+            p.addValue(new Date(i * HOUR), values[i]);
+        }
+        return p;
+    }
+
+    @Test
+    public void testValuesAreSortedByTime() {
+        NumberPhenomenon p = new NumberPhenomenon();
+        p.addValue(new Date(2 * HOUR), 2.0);
+        p.addValue(new Date(0), 0.0);
+        p.addValue(new Date(HOUR), 1.0);
+        p.addValue(new Date(HOUR), 1.5);
+
+        assertEquals(4, p.size());
+        assertArrayEquals(new double[] { 0, 1, 1.5, 2 }, p.getValueArray(), 0);
+        assertArrayEquals(new long[] { 0, HOUR, HOUR, 2 * HOUR }, p.getTimeFromArray());
+        assertEquals(new Date(0), p.getStartTime());
+        assertEquals(new Date(2 * HOUR), p.getEndTime());
+    }
+
+    @Test
+    public void testGrowsBeyondInitialCapacity() {
+        NumberPhenomenon p = new NumberPhenomenon();
+        for (int i = 0; i < 1000; i++) {
+            p.addValue(new Date(i * HOUR), new Date((i + 6) * HOUR), (double) i);
+        }
+        assertEquals(1000, p.size());
+        assertEquals(999, p.getValueAt(999), 0);
+        assertEquals(1005 * HOUR, p.getTimeToMillis(999));
+        assertEquals(new Date(1005 * HOUR), p.getLastToTime());
+        assertEquals(999, p.getMaxValue(), 0);
+        assertEquals(0, p.getMinValue(), 0);
+    }
+
+    @Test
+    public void testAddAll() {
+        NumberPhenomenon p = new NumberPhenomenon();
+        p.addAll(new long[] { HOUR, 2 * HOUR }, new double[] { 1, 2 });
+        p.addAll(new long[] { 3 * HOUR }, new double[] { 3 });
+        // out of order, so inserted one by one
+        p.addAll(new long[] { 5 * HOUR, 0 }, new double[] { 5, 0 });
+
+        assertArrayEquals(new long[] { 0, HOUR, 2 * HOUR, 3 * HOUR, 5 * HOUR }, p.getTimeFromArray());
+        assertArrayEquals(new double[] { 0, 1, 2, 3, 5 }, p.getValueArray(), 0);
+        assertEquals(2 * HOUR, p.getTimeToMillis(2));
+    }
+
+    @Test
+    public void testItemsView() {
+        NumberPhenomenon p = create(1, 2, 3);
+        List<? extends AbstractValueItem> items = p.getItems();
+        assertEquals(3, items.size());
+        NumberValueItem item = (NumberValueItem) items.get(1);
+        assertEquals(new Date(HOUR), item.getTimeFrom());
+        assertEquals(2, item.getValue(), 0);
+
+        Iterator<NumberValueItem> it = p.iterator();
+        it.next();
+        it.next();
+        it.remove();
+        assertEquals(2, p.size());
+        assertArrayEquals(new double[] { 1, 3 }, p.getValueArray(), 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexOutOfBounds() {
+        NumberPhenomenon p = create(1, 2, 3);
+        p.clear();
+        p.getValueAt(0);
+    }
+
+    @Test
+    public void testFilterAndCut() {
+        NumberPhenomenon p = create(1, 5, 0, 7);
+        p.filter(new LessOrEqualNumberFilter(1));
+        assertArrayEquals(new double[] { 5, 7 }, p.getValueArray(), 0);
+        assertArrayEquals(new long[] { HOUR, 3 * HOUR }, p.getTimeFromArray());
+
+        p.cutOlderThan(new Date(2 * HOUR));
+        assertArrayEquals(new double[] { 5 }, p.getValueArray(), 0);
+    }
+
+    @Test
+    public void testCloneIsIndependent() {
+        NumberPhenomenon p = create(-1, 2);
+        NumberPhenomenon c = p.clone();
+        c.scaling(2).transform(1);
+        c.removeNegativeValues();
+        c.addValue(new Date(5 * HOUR), 10.0);
+
+        assertArrayEquals(new double[] { -1, 2 }, p.getValueArray(), 0);
+        assertArrayEquals(new double[] { 0, 5, 10 }, c.getValueArray(), 0);
+    }
+
+    @Test
+    public void testHybridSpline() {
+        NumberPhenomenon p = create(1, 3, 2, 4);
+        p.doHybridSpline(0.5, 4);
+        assertEquals(0, p.getTimeFromMillis(0));
+        assertEquals(1, p.getValueAt(0), 0);
+        for (int i = 1; i < p.size(); i++) {
+            assertTrue(p.getTimeFromMillis(i) >= p.getTimeFromMillis(i - 1));
+            assertEquals(p.getTimeFromMillis(i), p.getTimeToMillis(i));
+        }
+    }
+
+    @Test
+    public void testValueByTime() {
+        NumberPhenomenon p = create(1, 3, 2, 4);
+        assertEquals(3, p.getValueByTime(new Date(HOUR)), 0);
+        assertEquals(2.5, p.getValueByTime(new Date(HOUR + HOUR / 2)), 1e-9);
+        assertEquals(3, p.getValueByTime(2 * HOUR + HOUR / 2), 1e-9);
+        assertEquals(1, p.getValueByTime(0), 0);
+        assertEquals(4, p.getValueByTime(3 * HOUR), 0);
+
+        assertNull(p.getValueByTime(new Date(-1)));
+        assertNull(p.getValueByTime(new Date(3 * HOUR + 1)));
+        assertTrue(Double.isNaN(p.getValueByTime(-1)));
+        assertTrue(Double.isNaN(new NumberPhenomenon().getValueByTime(0)));
+    }
+
+    @Test
+    public void testIndexOfTime() {
+        NumberPhenomenon p = create(1, 3, 2, 4);
+        p.addValue(new Date(2 * HOUR), 5.0);
+        assertEquals(0, p.indexOfTime(0));
+        assertEquals(2, p.indexOfTime(2 * HOUR));
+        assertEquals(-1, p.indexOfTime(HOUR / 2));
+        assertEquals(-1, p.indexOfTime(5 * HOUR));
+        assertEquals(2, p.getValueByTime(2 * HOUR), 0);
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import no.met.jtimeseries.chart.ChartPlottingInfo;
+import no.met.jtimeseries.meteogram.AbstractChartSaver;
+import no.met.jtimeseries.meteogram.PngChartSaver;
+import no.met.jtimeseries.meteogram.SvgChartSaver;
+
+import org.jfree.chart.JFreeChart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Drawing and encoding of a finished meteogram, in the formats served by the
+ * web service
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ChartSaverBenchmark {
+
+    @Param({ "png", "svg" })
+    public String format;
+
+    @Param({ "short", "long" })
+    public String term;
+
+    private AbstractChartSaver saver;
+    private JFreeChart chart;
+    private int width;
+    private int height;
+
+    @Setup
+    public void setUp() throws IOException {
+        saver = "svg".equals(format) ? new SvgChartSaver() : new PngChartSaver();
+        ChartPlottingInfo cpi = Forecasts.createPlottingInfo();
+        boolean shortTerm = "short".equals(term);
+        chart = Forecasts.createMeteogram(Forecasts.parseJson(Forecasts.read("complete.json"),
+                Forecasts.getPeriod(shortTerm)), cpi, shortTerm);
+        width = cpi.getWidth();
+        height = cpi.getHeight();
+    }
+
+    @Benchmark
+    public byte[] save() throws IOException {
+        return saver.toByteArray(chart, width, height);
+    }
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.Date;
+
+import no.met.jtimeseries.MeteogramWrapper;
+import no.met.jtimeseries.chart.ChartPlottingInfo;
+import no.met.jtimeseries.chart.TimePeriod;
+import no.met.jtimeseries.chart.Utility;
+import no.met.jtimeseries.data.model.GenericDataModel;
+import no.met.jtimeseries.parser.LocationForecastJsonParseScheme;
+import no.met.jtimeseries.parser.LocationForecastParseScheme;
+
+import org.jfree.chart.JFreeChart;
+
+/**
+ * The bundled locationforecast documents, and the models and charts created
+ * from them
+ */
+final class Forecasts {
+
+    // 2024-05-01T12:00:00Z, the first time step of complete.json
+    static final long JSON_START = 1714564800000L;
+
+    private Forecasts() {
+    }
+
+    /**
+     * Read a bundled forecast document
+     *
+     * @param name the file name of the document, like "forecast.xml"
+     */
+    static byte[] read(String name) throws IOException {
+        String resource = "locationforecast/" + name;
+        try (InputStream in = Forecasts.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new FileNotFoundException(resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Parse all time steps of an xml locationforecast document
+     */
+    static GenericDataModel parseXml(byte[] document) throws ParseException, IOException {
+        LocationForecastParseScheme scheme = new LocationForecastParseScheme();
+        GenericDataModel model = new GenericDataModel();
+        scheme.setModel(model);
+        scheme.parse(new ByteArrayInputStream(document));
+        return model;
+    }
+
+    /**
+     * @return a meteogram showing everything, as requested by most clients
+     */
+    static ChartPlottingInfo createPlottingInfo() {
+        return new ChartPlottingInfo.Builder(10.72, 59.94).altitude(0).width(800).height(300)
+                .showAirTemperature(true).showDewpointTemperature(true).showPressure(true).timezone("UTC")
+                .showCloudSymbol(true).showWeatherSymbol(true).showWindSymbol(true).showPrecipitation(true)
+                .showAccumulatedPrecipitation(true).showWindSpeed(true).showWindDirection(true)
+                .windSpeedUnit("ms").language("en").build();
+    }
+
+    /**
+     * Get the period of a meteogram of the json forecast, adapted the way
+     * {@link MeteogramWrapper} does it
+     *
+     * @param shortTerm true for a 48 hour meteogram, false for a long term one
+     */
+    static TimePeriod getPeriod(boolean shortTerm) {
+        if (shortTerm) {
+            return new TimePeriod(new Date(JSON_START), MeteogramWrapper.SHORT_TERM_HOURS).adapt(3);
+        }
+        TimePeriod period = new TimePeriod(new Date(JSON_START), MeteogramWrapper.LONG_TERM_HOURS).adapt(6);
+        return new TimePeriod(period.getStart(), Utility.getDateWithAddedHours(period.getEnd(), -12));
+    }
+
+    /**
+     * Parse the time steps of a json locationforecast document that are
+     * inside the period
+     */
+    static GenericDataModel parseJson(byte[] document, TimePeriod period) throws IOException {
+        LocationForecastJsonParseScheme scheme = new LocationForecastJsonParseScheme(period);
+        scheme.setModel(new GenericDataModel());
+        return scheme.parse(document);
+    }
+
+    /**
+     * Create a meteogram the way the meteogram service does
+     *
+     * @param model the forecast, as returned by
+     *            {@link #parseJson(byte[], TimePeriod)}. It is modified by
+     *            the meteogram.
+     * @param shortTerm true for a 48 hour meteogram, false for a long term one
+     */
+    static JFreeChart createMeteogram(GenericDataModel model, ChartPlottingInfo cpi, boolean shortTerm) {
+        MeteogramWrapper wrapper = new MeteogramWrapper(cpi.getLanguage());
+        TimePeriod period = getPeriod(shortTerm);
+        if (shortTerm) {
+            return wrapper.createShortTermMeteogram(model, period, cpi);
+        }
+        return wrapper.createLongTermMeteogram(model, period, cpi);
+    }
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.benchmark;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import no.met.jtimeseries.chart.TimePeriod;
+import no.met.jtimeseries.data.model.GenericDataModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of locationforecast documents, in the json format used for
+ * meteograms and in the xml format of provided forecasts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationForecastParseBenchmark {
+
+    @Param({ "forecast.xml", "inside-hirlam-with-precipitation.xml", "outside-hirlam-with-precipitation.xml" })
+    public String xmlDocument;
+
+    private byte[] json;
+    private byte[] xml;
+    private TimePeriod period;
+
+    @Setup
+    public void setUp() throws IOException {
+        period = Forecasts.getPeriod(false);
+        json = Forecasts.read("complete.json");
+        xml = Forecasts.read(xmlDocument);
+    }
+
+    @Benchmark
+    public GenericDataModel parseJson() throws IOException {
+        return Forecasts.parseJson(json, period);
+    }
+
+    @Benchmark
+    public GenericDataModel parseXml() throws ParseException, IOException {
+        return Forecasts.parseXml(xml);
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import no.met.jtimeseries.chart.ChartPlottingInfo;
+import no.met.jtimeseries.data.model.GenericDataModel;
+
+import org.jfree.chart.JFreeChart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Model preparation and plot building of meteograms, from an already parsed
+ * forecast. Drawing and encoding is measured by {@link ChartSaverBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MeteogramBenchmark {
+
+    @Param({ "short", "long" })
+    public String term;
+
+    private byte[] document;
+    private ChartPlottingInfo cpi;
+    private GenericDataModel model;
+
+    @Setup
+    public void setUp() throws IOException {
+        document = Forecasts.read("complete.json");
+        cpi = Forecasts.createPlottingInfo();
+    }
+
+    /**
+     * Meteograms filter the model they are created from, so each one needs a
+     * fresh copy. Creating a meteogram takes milliseconds, so the cost of a
+     * per invocation setup does not distort the result.
+     */
+    @Setup(Level.Invocation)
+    public void parseModel() throws IOException {
+        model = Forecasts.parseJson(document, Forecasts.getPeriod("short".equals(term)));
+    }
+
+    @Benchmark
+    public JFreeChart createMeteogram() {
+        return Forecasts.createMeteogram(model, cpi, "short".equals(term));
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import no.met.phenomenen.NumberPhenomenon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NumberPhenomenon.getValueByTime against the linear scan it replaced, for
+ * the lookups done when placing symbols and arrows on a chart
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueByTimeBenchmark {
+
+    private static final long HOUR = 3600 * 1000;
+
+    /**
+     * The number of hourly values in the series
+     */
+    @Param({ "228", "2000", "20000" })
+    public int values;
+
+    private NumberPhenomenon phenomenon;
+
+    @Setup
+    public void setUp() {
+        phenomenon = new NumberPhenomenon("benchmark", "");
+        for (int i = 0; i < values; i++) {
+            phenomenon.addValue(new Date(i * HOUR), Math.sin(i / 10.0));
+        }
+        if (Math.abs(lookups(true) - lookups(false)) > 1e-6) {
+            throw new IllegalStateException("Lookups disagree for " + values + " values");
+        }
+    }
+
+    @Benchmark
+    public double binarySearch() {
+        return lookups(false);
+    }
+
+    @Benchmark
+    public double linearScan() {
+        return lookups(true);
+    }
+
+    private double lookups(boolean linear) {
+        // one symbol every third hour, half of them between two values
+        double sum = 0;
+        long end = phenomenon.getTimeFromMillis(phenomenon.size() - 1);
+        for (long time = 0; time < end; time += 3 * HOUR + HOUR / 2) {
+            sum += linear ? linearValueByTime(time) : phenomenon.getValueByTime(time);
+        }
+        return sum;
+    }
+
+    /**
+     * The lookup as it was done before: a scan for an exact match, then a
+     * scan of all values for the neighbours.
+     */
+    private double linearValueByTime(long time) {
+        NumberPhenomenon p = phenomenon;
+        for (int i = 0; i < p.size(); i++) {
+            if (p.getTimeFromMillis(i) == time) {
+                return p.getValueAt(i);
+            }
+        }
+        int next = -1;
+        for (int i = 0; i < p.size(); i++) {
+            if (p.getTimeFromMillis(i) > time && next < 0) {
+                next = i;
+            }
+        }
+        if (next <= 0) {
+            return Double.NaN;
+        }
+        double fraction = (double) (time - p.getTimeFromMillis(next - 1))
+                / (p.getTimeFromMillis(next) - p.getTimeFromMillis(next - 1));
+        return p.getValueAt(next - 1) + fraction * (p.getValueAt(next) - p.getValueAt(next - 1));
+    }
+}
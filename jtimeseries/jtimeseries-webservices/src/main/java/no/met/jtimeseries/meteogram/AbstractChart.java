@@ -21,6 +21,7 @@
  *******************************************************************************/
 package no.met.jtimeseries.meteogram;
 
+import java.util.Date;
 import java.util.TimeZone;
 import java.util.logging.Logger;
 import no.met.jtimeseries.MeteogramWrapper;
@@ -41,11 +42,22 @@ public abstract class AbstractChart {
     protected int height = MeteogramWrapper.DEFAULT_HEIGHT;
     //The timezone of the chart
     protected TimeZone timezone = TimeZone.getTimeZone("UTC");
+    //The time the data behind the chart expires, null if it may not be reused
+    protected Date expires;
 
     static final Logger logger = Logger.getLogger(AbstractChart.class.getName());
 
     public abstract void drawChart();
 
+    /**
+     * Get the time until which the drawn chart can be reused.
+     * @return The expiry time of the data behind the chart, or null if the
+     * chart should not be reused (for instance if it shows an error)
+     */
+    public Date getExpires() {
+        return expires;
+    }
+
     /**
      * Get the value of a parameters.
      * @param record The String of parameter in url command, like "temperature=true"
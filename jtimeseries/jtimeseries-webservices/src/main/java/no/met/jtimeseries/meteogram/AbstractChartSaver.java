@@ -21,23 +21,116 @@
  *******************************************************************************/
 package no.met.jtimeseries.meteogram;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import org.jfree.chart.JFreeChart;
 
 /**
- * Create a file with a representation of the given char
+ * Write a representation of the given chart to a stream or a file
  */
 public abstract class AbstractChartSaver {
 
 	private static String FILE_PREFIX = "TimeSeriesChart-";
+	private static String FILE_NAME = "TimeSeriesChart";
+
+	// Encoded charts larger than this are not kept in the per thread buffer
+	private static final int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	// One reusable encoding buffer per thread, so that rendering into memory
+	// does not have to grow a new buffer for every chart
+	private static final ThreadLocal<ByteArrayOutputStream> buffer = new ThreadLocal<ByteArrayOutputStream>() {
+		@Override
+		protected ByteArrayOutputStream initialValue() {
+			return new ByteArrayOutputStream(64 * 1024);
+		}
+	};
+
 	private String defaultFileSuffix;
+	private String mediaType;
 	
-	public AbstractChartSaver(String fileSuffix) {
+	public AbstractChartSaver(String fileSuffix, String mediaType) {
 		this.defaultFileSuffix = fileSuffix;
+		this.mediaType = mediaType;
+	}
+
+	/**
+	 * @return the media type of the generated images, like "image/png"
+	 */
+	public String getMediaType() {
+		return mediaType;
+	}
+
+	/**
+	 * @return a file name, without path, suitable for a generated image
+	 */
+	public String getFileName() {
+		return FILE_NAME + defaultFileSuffix;
+	}
+
+	/**
+	 * Write the chart to the given stream. The stream is not closed.
+	 *
+	 * The web service never writes charts straight to the response. Every
+	 * response is buffered with {@link #toByteArray(AbstractChart)} first, so
+	 * that a chart which cannot be rendered in time can still be answered
+	 * with an error status instead of a truncated image.
+	 *
+	 * @param out the stream to write the image to
+	 * @param chart the diagram to save
+	 * @throws IOException
+	 */
+	public void save(OutputStream out, AbstractChart chart) throws IOException {
+		save(out, chart.chart, chart.width, chart.height);
+	}
+
+	/**
+	 * Write the chart to the given stream. The stream is not closed.
+	 *
+	 * @param out the stream to write the image to
+	 * @param chart the diagram to save
+	 * @param width generated image size, horizontally
+	 * @param height generated image size, vertically
+	 * @throws IOException
+	 */
+	abstract public void save(OutputStream out, JFreeChart chart, int width, int height) throws IOException;
+
+	/**
+	 * Encode the chart in memory
+	 *
+	 * @param chart the diagram to save
+	 * @return the encoded image
+	 * @throws IOException
+	 */
+	public byte[] toByteArray(AbstractChart chart) throws IOException {
+		return toByteArray(chart.chart, chart.width, chart.height);
+	}
+
+	/**
+	 * Encode the chart in memory
+	 *
+	 * @param chart the diagram to save
+	 * @param width generated image size, horizontally
+	 * @param height generated image size, vertically
+	 * @return the encoded image
+	 * @throws IOException
+	 */
+	public byte[] toByteArray(JFreeChart chart, int width, int height) throws IOException {
+		ByteArrayOutputStream out = buffer.get();
+		out.reset();
+		try {
+			save(out, chart, width, height);
+			return out.toByteArray();
+		} finally {
+			if (out.size() > MAX_BUFFER_SIZE) {
+				buffer.remove();
+			}
+		}
 	}
-	
 	
 	/**
 	 * Create a temporary file, and save the chart to that file
@@ -68,13 +161,23 @@ public abstract class AbstractChartSaver {
 	/**
 	 * Save the given chart to a file
 	 * 
-	 * @param out The file to save data to
+	 * @param file The file to save data to
 	 * @param chart the diagram to save
 	 * @param width generated image size, horizontally
 	 * @param height generated image size, vertically
 	 * @throws IOException
 	 */
-    abstract public void save(File out, JFreeChart chart, int width, int height) throws IOException;
+    public void save(File file, JFreeChart chart, int width, int height) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Null 'file' argument.");
+        }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            save(out, chart, width, height);
+        } finally {
+            out.close();
+        }
+    }
     
     
     /**
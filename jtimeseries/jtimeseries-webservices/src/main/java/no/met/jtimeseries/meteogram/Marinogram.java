@@ -46,5 +46,6 @@ public class Marinogram extends AbstractChart{
         chart = mw.createMarinogram(cpi);
         chart.removeLegend();
         this.height=mw.getTotalPlotHeight()==0?this.width/2:mw.getTotalPlotHeight();
+        this.expires=mw.getDataExpires();
     }
 }
@@ -46,6 +46,7 @@ public class Meteogram extends AbstractChart {
     public void drawChart() {        
         MeteogramWrapper wrapper = new MeteogramWrapper(cpi.getLanguage());
         chart = wrapper.createMeteogram(cpi, numHours);
+        expires = wrapper.getDataExpires();
     }
 
 }
@@ -21,8 +21,12 @@
  *******************************************************************************/
 package no.met.jtimeseries.meteogram;
 
-import java.io.File;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.OutputStream;
+
+import no.met.jtimeseries.metrics.RequestMetrics;
+import no.met.jtimeseries.metrics.RequestMetrics.Stage;
 
 import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
@@ -33,17 +37,23 @@ import org.jfree.chart.JFreeChart;
 public class PngChartSaver extends AbstractChartSaver {
 
 	public PngChartSaver() {
-		super(".png");
+		super(".png", "image/png");
 	}
 	
 	@Override
-	public void save(File out, JFreeChart chart, int width, int height)
+	public void save(OutputStream out, JFreeChart chart, int width, int height)
 			throws IOException {
 		
         if (chart == null) {
             throw new IllegalArgumentException("Null 'chart' argument.");
         }
-		ChartUtilities.saveChartAsPNG(out, chart, width, height);
+        // the same as ChartUtilities.writeChartAsPNG, timing each step
+        RequestMetrics metrics = RequestMetrics.getInstance();
+        long start = System.nanoTime();
+        BufferedImage image = chart.createBufferedImage(width, height);
+        start = metrics.record(Stage.DRAW, start);
+        ChartUtilities.writeBufferedImageAsPNG(out, image);
+        metrics.record(Stage.ENCODE, start);
 	}
 
 }
@@ -23,14 +23,14 @@ package no.met.jtimeseries.meteogram;
 
 import java.awt.Dimension;
 import java.awt.geom.Rectangle2D;
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 
+import no.met.jtimeseries.metrics.RequestMetrics;
+import no.met.jtimeseries.metrics.RequestMetrics.Stage;
+
 import org.apache.batik.dom.GenericDOMImplementation;
 import org.apache.batik.svggen.SVGGraphics2D;
 import org.jfree.chart.JFreeChart;
@@ -43,15 +43,17 @@ import org.w3c.dom.Element;
 public class SvgChartSaver extends AbstractChartSaver {
 
 	public SvgChartSaver() {
-		super(".svg");
+		super(".svg", "image/svg+xml");
 	}
 	
 	@Override
-	public void save(File file, JFreeChart chart, int width, int height)
+	public void save(OutputStream out, JFreeChart chart, int width, int height)
 			throws IOException {
 		
-        if (file == null || chart == null)
-            throw new IllegalArgumentException("Null 'file' or 'chart' argument.");
+        if (out == null || chart == null)
+            throw new IllegalArgumentException("Null 'out' or 'chart' argument.");
+        RequestMetrics metrics = RequestMetrics.getInstance();
+        long start = System.nanoTime();
         //get the genric dom imp
         DOMImplementation dom = GenericDOMImplementation.getDOMImplementation();
         //create document
@@ -68,8 +70,10 @@ public class SvgChartSaver extends AbstractChartSaver {
         svgRoot.setAttributeNS(null, "preserveAspectRatio", "xMidYMid meet");
         svgRoot.removeAttribute("width");
         svgRoot.removeAttribute("height");
-        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        start = metrics.record(Stage.DRAW, start);
         Writer writer = new OutputStreamWriter(out, "UTF-8");
         svgGenerator.stream(svgRoot, writer, false, true);
+        writer.flush();
+        metrics.record(Stage.ENCODE, start);
     }
 }
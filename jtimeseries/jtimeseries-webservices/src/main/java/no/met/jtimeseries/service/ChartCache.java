@@ -0,0 +1,187 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of rendered charts, bounded by the total number of bytes held.
+ *
+ * When the cache grows too large the least recently used charts are evicted.
+ * Each chart also has an expiry time, after which it is never served.
+ */
+public class ChartCache {
+
+    /**
+     * A rendered chart, ready to be served
+     */
+    public static class Entry {
+        private final byte[] data;
+        private final String mediaType;
+        private final String fileName;
+        private final long expires;
+
+        public Entry(byte[] data, String mediaType, String fileName, long expires) {
+            this.data = data;
+            this.mediaType = mediaType;
+            this.fileName = fileName;
+            this.expires = expires;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getExpires() {
+            return expires;
+        }
+    }
+
+    private final long maxBytes;
+    private long bytes = 0;
+
+    // access ordered, so that iteration starts with the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxBytes the maximum total size of the cached charts. A value of
+     *            zero or less disables the cache.
+     */
+    public ChartCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get a cached chart
+     *
+     * @param key the normalized request, as created by {@link #createKey}
+     * @return the cached chart, or null if there is no valid chart for the key
+     */
+    public Entry get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.getExpires() <= System.currentTimeMillis()) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Add a chart to the cache, evicting the least recently used charts if
+     * the cache becomes too large. Charts larger than the cache itself are
+     * not added, but still replace any older chart for the same key.
+     */
+    public synchronized void put(String key, Entry entry) {
+        remove(key);
+        if (!isEnabled() || entry.getData().length > maxBytes) {
+            return;
+        }
+        entries.put(key, entry);
+        bytes += entry.getData().length;
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            bytes -= eldest.getData().length;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            bytes -= old.getData().length;
+        }
+    }
+
+    /**
+     * Remove all charts from the cache
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Create a cache key for a chart request.
+     *
+     * @param chartType the kind of chart, like "meteogram"
+     * @param format the requested image format
+     * @param parameters a string describing all other parameters of the
+     *            request, such as ChartPlottingInfo.toString()
+     */
+    public static String createKey(String chartType, String format, String parameters) {
+        return chartType + "." + format.toLowerCase() + ":" + parameters;
+    }
+}
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of charts rendered at the same time.
+ *
+ * Rendering is heavy on both cpu and memory, so only a few renders, about
+ * one per core, are allowed to run at once. Other renders wait in a bounded
+ * queue. A render is dropped instead of queued when the queue is full, or
+ * when it would not get to run before the deadline of its request, since no
+ * one would be waiting for the result by then.
+ */
+public class RenderScheduler {
+
+    /**
+     * Thrown when a render is dropped
+     */
+    public static class RenderRejectedException extends RejectedExecutionException {
+        private static final long serialVersionUID = 1L;
+
+        private final int retryAfter;
+
+        public RenderRejectedException(String message, int retryAfter) {
+            super(message);
+            this.retryAfter = retryAfter;
+        }
+
+        /**
+         * @return the number of seconds the client should wait before trying
+         *         again
+         */
+        public int getRetryAfter() {
+            return retryAfter;
+        }
+    }
+
+    // weight of the latest render in the average render time
+    private static final double RENDER_TIME_WEIGHT = 0.1;
+
+    private final int concurrency;
+    private final int queueSize;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    // average render time in nanoseconds, as the bits of a double
+    private final AtomicLong averageRenderTime = new AtomicLong(Double.doubleToLongBits(0));
+
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    /**
+     * @param concurrency the number of charts that may be rendered at the
+     *            same time
+     * @param queueSize the number of renders that may wait for their turn
+     */
+    public RenderScheduler(int concurrency, int queueSize) {
+        this.concurrency = concurrency;
+        this.queueSize = queueSize;
+        permits = new Semaphore(concurrency, true);
+    }
+
+    /**
+     * Render a chart when it is its turn
+     *
+     * @param render does the rendering
+     * @param deadline the {@link System#nanoTime()} after which the result
+     *            is no longer wanted
+     * @return the result of the render
+     * @throws RenderRejectedException if the render was dropped
+     * @throws InterruptedException if interrupted while waiting for a turn
+     * @throws Exception if the render failed
+     */
+    public <T> T render(Callable<T> render, long deadline) throws Exception {
+        long start = System.nanoTime();
+        long waitTime = 0;
+        if (!permits.tryAcquire()) {
+            waitForTurn(start, deadline);
+            waitTime = System.nanoTime() - start;
+            recordWait(waitTime);
+        }
+
+        try {
+            T result = render.call();
+            recordRenderTime(System.nanoTime() - start - waitTime);
+            return result;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void waitForTurn(long start, long deadline) throws InterruptedException {
+        int position = queued.incrementAndGet();
+        try {
+            if (position > queueSize) {
+                rejected.incrementAndGet();
+                throw new RenderRejectedException("Render queue is full", getRetryAfter(position));
+            }
+            // the renders ahead of us will not be done in time
+            if (start + getExpectedWait(position) > deadline) {
+                expired.incrementAndGet();
+                throw new RenderRejectedException("Render would not complete in time", getRetryAfter(position));
+            }
+            if (!permits.tryAcquire(deadline - start, TimeUnit.NANOSECONDS)) {
+                expired.incrementAndGet();
+                throw new RenderRejectedException("Render did not start in time", getRetryAfter(position));
+            }
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the time, in nanoseconds, until a render at the given position
+     *         in the queue is expected to start
+     */
+    private long getExpectedWait(int position) {
+        return (long) (Double.longBitsToDouble(averageRenderTime.get()) * position / concurrency);
+    }
+
+    private int getRetryAfter(int position) {
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(getExpectedWait(position)) + 1);
+    }
+
+    private void recordWait(long waitTime) {
+        waited.incrementAndGet();
+        totalWaitTime.addAndGet(waitTime);
+        long max = maxWaitTime.get();
+        while (waitTime > max && !maxWaitTime.compareAndSet(max, waitTime)) {
+            max = maxWaitTime.get();
+        }
+    }
+
+    private void recordRenderTime(long renderTime) {
+        long count = rendered.incrementAndGet();
+        while (true) {
+            long bits = averageRenderTime.get();
+            double average = Double.longBitsToDouble(bits);
+            double next = count == 1 ? renderTime : average + (renderTime - average) * RENDER_TIME_WEIGHT;
+            if (averageRenderTime.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return the number of charts being rendered now
+     */
+    public int getActive() {
+        return concurrency - permits.availablePermits();
+    }
+
+    /**
+     * @return the number of renders waiting for their turn now
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public long getRendered() {
+        return rendered.get();
+    }
+
+    /**
+     * @return the number of renders dropped because the queue was full
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of renders dropped because they would not have
+     *         completed before their deadline
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * @return the number of renders that had to wait for their turn
+     */
+    public long getWaited() {
+        return waited.get();
+    }
+
+    /**
+     * @return the total time renders have waited for their turn, in
+     *         nanoseconds
+     */
+    public long getTotalWaitTime() {
+        return totalWaitTime.get();
+    }
+
+    /**
+     * @return the longest time a render has waited for its turn, in
+     *         nanoseconds
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime.get();
+    }
+
+    /**
+     * @return the average time to render a chart, in nanoseconds, with the
+     *         most weight on the latest renders
+     */
+    public long getAverageRenderTime() {
+        return (long) Double.longBitsToDouble(averageRenderTime.get());
+    }
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the slow part of requests, fetching forecasts and drawing charts, on
+ * a bounded pool of threads of its own.
+ *
+ * The container thread of a request waits for the result for at most the
+ * timeout, so a slow upstream can not hold on to container threads for
+ * long. When all threads are busy and the queue is full, new requests are
+ * rejected at once instead of queueing behind the slow ones.
+ */
+public class RequestExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long timeout;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * @param threads the number of requests to work on at the same time
+     * @param queueSize the number of requests that may wait for a thread
+     * @param timeout the longest time to wait for a request, in milliseconds
+     */
+    public RequestExecutor(int threads, int queueSize, long timeout) {
+        this.timeout = timeout;
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new WorkerThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run the task on the pool, and wait for it to complete.
+     *
+     * When the wait times out a task that is still queued is dropped, while a
+     * task that has started is left to finish, so that what it fetched and
+     * drew ends up in the caches for the next request.
+     *
+     * @param task the work to do
+     * @return the result of the task
+     * @throws RejectedExecutionException if there is no room for the task
+     * @throws TimeoutException if the task did not complete in time
+     * @throws ExecutionException if the task failed
+     * @throws InterruptedException if the waiting thread was interrupted
+     */
+    public <T> T execute(Callable<T> task) throws TimeoutException, ExecutionException, InterruptedException {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            future.cancel(false);
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} by which a request that starts
+     *         now must be answered
+     */
+    public long getDeadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Stop accepting new tasks. Tasks that have been accepted are completed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return the number of tasks being worked on now
+     */
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread now
+     */
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public long getCompleted() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Creates named daemon threads, so that the pool never keeps the
+     * container from shutting down
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger pools = new AtomicInteger();
+
+        private final int pool = pools.incrementAndGet();
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "request-" + pool + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
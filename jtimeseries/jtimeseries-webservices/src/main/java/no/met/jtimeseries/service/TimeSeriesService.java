@@ -21,31 +21,28 @@
  ****************************************************************************** */
 package no.met.jtimeseries.service;
 
-import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientResponse;
-import com.sun.jersey.api.client.WebResource;
-import com.sun.jersey.api.client.config.DefaultClientConfig;
 import com.sun.jersey.core.header.ContentDisposition;
 
 import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.StringReader;
-import java.net.FileNameMap;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -55,14 +52,13 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
-import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.CacheControl;
-import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.xml.XMLConstants;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import net.sf.json.JSONObject;
 import no.met.halo.common.ConfigUtils;
 
 import no.met.halo.common.LogUtils;
@@ -79,10 +75,14 @@ import no.met.jtimeseries.chart.Utility;
 import no.met.jtimeseries.data.model.GenericDataModel;
 import no.met.jtimeseries.meteogram.AbstractChart;
 import no.met.jtimeseries.meteogram.AbstractChartSaver;
+import no.met.jtimeseries.meteogram.ChartType;
 import no.met.jtimeseries.meteogram.Marinogram;
 import no.met.jtimeseries.meteogram.Meteogram;
 import no.met.jtimeseries.meteogram.PngChartSaver;
 import no.met.jtimeseries.meteogram.SvgChartSaver;
+import no.met.jtimeseries.metrics.RequestMetrics;
+import no.met.jtimeseries.metrics.RequestMetrics.Stage;
+import no.met.jtimeseries.netcdf.NetcdfFileCache;
 import no.met.jtimeseries.netcdf.NetcdfMeteogramWrapper;
 import no.met.jtimeseries.netcdf.ParameterReference;
 
@@ -90,11 +90,12 @@ import org.dom4j.Document;
 import org.jfree.chart.JFreeChart;
 
 import no.met.jtimeseries.parser.ApiMetadataParser;
+import no.met.jtimeseries.parser.HttpClientProvider;
 import no.met.jtimeseries.parser.LocationForecastAddressFactory;
+import no.met.jtimeseries.parser.LocationForecastCache;
 import no.met.phenomenen.NumberPhenomenon;
+import no.met.jtimeseries.service.RenderScheduler.RenderRejectedException;
 import no.met.phenomenen.weatherapi.PhenomenonName;
-import org.apache.commons.io.IOUtils;
-import org.dom4j.DocumentException;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
@@ -107,6 +108,19 @@ public class TimeSeriesService {
 
     private static final Logger logger = Logger.getLogger(TimeSeriesService.class.getName());
 
+    // not in Response.Status of JAX-RS 1.1
+    private static final int GATEWAY_TIMEOUT = 504;
+
+    // seconds a client is asked to wait when all request threads are busy
+    private static final int RETRY_AFTER = 5;
+
+    // endpoint names in the request metrics
+    private static final String METEOGRAM = "meteogram";
+    private static final String PROVIDED_METEOGRAM = "meteogram/provided";
+    private static final String MARINOGRAM = "marinogram";
+    private static final String PRECIPITATION = "forecast/precipitation";
+    private static final String ARCHIVED_PRECIPITATION = "forecast/archived/precipitation";
+
     /**
      * A listing of all allowable ways to save a chart to file for serving
      */
@@ -124,6 +138,74 @@ public class TimeSeriesService {
         return ret;
     }
 
+    /**
+     * The longest time a rendered chart is reused, in milliseconds. Set by
+     * createChartCache(), so this must be declared before chartCache, and
+     * must not have an initializer of its own.
+     */
+    private static long chartCacheMaxAge;
+
+    /**
+     * Rendered meteograms and marinograms, for reuse until the forecast expires
+     */
+    private static ChartCache chartCache = createChartCache();
+
+    private static ChartCache createChartCache() {
+        long maxBytes = 0;
+        try {
+            ConfigUtils cfg = new no.met.halo.common.ConfigUtils("/config/jtimeseries.properties", JTIMESERIES_ENV);
+            maxBytes = Long.parseLong(cfg.getRequired("chart.cache.maxbytes"));
+            chartCacheMaxAge = Long.parseLong(cfg.getRequired("chart.cache.maxage")) * 1000;
+        } catch (RuntimeException ex) {
+            Logger.getLogger(TimeSeriesService.class.getName()).log(Level.WARNING,
+                    "Chart cache disabled, invalid configuration: " + ex.getMessage(), ex);
+        }
+        return new ChartCache(maxBytes);
+    }
+
+    /**
+     * Fetches forecasts and draws charts, so that slow upstream services do
+     * not tie up the threads of the container
+     */
+    private static RequestExecutor requestExecutor = createRequestExecutor();
+
+    private static RequestExecutor createRequestExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        int queueSize = 100;
+        long timeout = 30000;
+        try {
+            ConfigUtils cfg = new no.met.halo.common.ConfigUtils("/config/jtimeseries.properties", JTIMESERIES_ENV);
+            threads = Integer.parseInt(cfg.getRequired("request.executor.threads"));
+            queueSize = Integer.parseInt(cfg.getRequired("request.executor.queuesize"));
+            timeout = Long.parseLong(cfg.getRequired("request.executor.timeout"));
+        } catch (RuntimeException ex) {
+            Logger.getLogger(TimeSeriesService.class.getName()).log(Level.WARNING,
+                    "Using default request executor settings, invalid configuration: " + ex.getMessage(), ex);
+        }
+        return new RequestExecutor(threads, queueSize, timeout);
+    }
+
+    /**
+     * Limits the number of charts rendered at the same time
+     */
+    private static RenderScheduler renderScheduler = createRenderScheduler();
+
+    private static RenderScheduler createRenderScheduler() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int concurrency = 0;
+        int queueSize = cores * 4;
+        try {
+            ConfigUtils cfg = new no.met.halo.common.ConfigUtils("/config/jtimeseries.properties", JTIMESERIES_ENV);
+            concurrency = Integer.parseInt(cfg.getRequired("render.scheduler.concurrency"));
+            queueSize = Integer.parseInt(cfg.getRequired("render.scheduler.queuesize"));
+        } catch (RuntimeException ex) {
+            Logger.getLogger(TimeSeriesService.class.getName()).log(Level.WARNING,
+                    "Using default render scheduler settings, invalid configuration: " + ex.getMessage(), ex);
+        }
+        // zero or less means one render per core
+        return new RenderScheduler(concurrency > 0 ? concurrency : cores, queueSize);
+    }
+
     @GET
     @Path("")
     @Produces("application/xml")
@@ -144,6 +226,109 @@ public class TimeSeriesService {
         return metadata;
     }
 
+    @GET
+    @Path("cache")
+    @Produces("application/json")
+    @ServiceDescription("Return usage statistics for the caches, the request threads and the chart renderer.")
+    public Response getCacheStatistics() {
+        JSONObject json = new JSONObject();
+        json.put("enabled", chartCache.isEnabled());
+        json.put("entries", chartCache.getSize());
+        json.put("bytes", chartCache.getBytes());
+        json.put("maxBytes", chartCache.getMaxBytes());
+        json.put("hits", chartCache.getHits());
+        json.put("misses", chartCache.getMisses());
+        json.put("evictions", chartCache.getEvictions());
+
+        LocationForecastCache forecastCache = LocationForecastCache.getInstance();
+        JSONObject upstream = new JSONObject();
+        upstream.put("enabled", forecastCache.isEnabled());
+        upstream.put("entries", forecastCache.getSize());
+        upstream.put("bytes", forecastCache.getBytes());
+        upstream.put("maxBytes", forecastCache.getMaxBytes());
+        upstream.put("hits", forecastCache.getHits());
+        upstream.put("misses", forecastCache.getMisses());
+        upstream.put("revalidations", forecastCache.getRevalidations());
+        upstream.put("coalesced", forecastCache.getCoalesced());
+        json.put("locationforecast", upstream);
+
+        JSONObject requests = new JSONObject();
+        requests.put("threads", requestExecutor.getThreads());
+        requests.put("active", requestExecutor.getActive());
+        requests.put("queued", requestExecutor.getQueued());
+        requests.put("completed", requestExecutor.getCompleted());
+        requests.put("rejected", requestExecutor.getRejected());
+        requests.put("timeouts", requestExecutor.getTimeouts());
+        json.put("requests", requests);
+
+        JSONObject render = new JSONObject();
+        render.put("concurrency", renderScheduler.getConcurrency());
+        render.put("active", renderScheduler.getActive());
+        render.put("queued", renderScheduler.getQueued());
+        render.put("queueSize", renderScheduler.getQueueSize());
+        render.put("rendered", renderScheduler.getRendered());
+        render.put("rejected", renderScheduler.getRejected());
+        render.put("expired", renderScheduler.getExpired());
+        render.put("waited", renderScheduler.getWaited());
+        render.put("totalWaitMillis", TimeUnit.NANOSECONDS.toMillis(renderScheduler.getTotalWaitTime()));
+        render.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(renderScheduler.getMaxWaitTime()));
+        render.put("averageRenderMillis", TimeUnit.NANOSECONDS.toMillis(renderScheduler.getAverageRenderTime()));
+        json.put("render", render);
+        return Response.ok(json.toString()).build();
+    }
+
+    @GET
+    @Path("metrics")
+    @Produces("text/plain")
+    @ServiceDescription("Return request stage timings and request counts in the Prometheus text format.")
+    public Response getMetrics() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        RequestMetrics.getInstance().write(out);
+
+        RequestMetrics.write(out, "jtimeseries_chart_cache_hits_total", "counter",
+                "Charts served from the chart cache.", chartCache.getHits());
+        RequestMetrics.write(out, "jtimeseries_chart_cache_misses_total", "counter",
+                "Charts not found in the chart cache.", chartCache.getMisses());
+        RequestMetrics.write(out, "jtimeseries_chart_cache_bytes", "gauge",
+                "Size of the charts in the chart cache.", chartCache.getBytes());
+
+        LocationForecastCache forecastCache = LocationForecastCache.getInstance();
+        RequestMetrics.write(out, "jtimeseries_forecast_cache_hits_total", "counter",
+                "Forecasts served from the locationforecast cache.", forecastCache.getHits());
+        RequestMetrics.write(out, "jtimeseries_forecast_cache_misses_total", "counter",
+                "Forecasts fetched from upstream.", forecastCache.getMisses());
+
+        NetcdfFileCache netcdfCache = NetcdfFileCache.getInstance();
+        RequestMetrics.write(out, "jtimeseries_netcdf_cache_hits_total", "counter",
+                "Netcdf files served from the open file cache.", netcdfCache.getHits());
+        RequestMetrics.write(out, "jtimeseries_netcdf_cache_misses_total", "counter",
+                "Netcdf files that had to be opened.", netcdfCache.getMisses());
+        RequestMetrics.write(out, "jtimeseries_netcdf_cache_evictions_total", "counter",
+                "Netcdf files closed by the open file cache.", netcdfCache.getEvictions());
+        RequestMetrics.write(out, "jtimeseries_netcdf_cache_open", "gauge",
+                "Netcdf files held open by the cache.", netcdfCache.getSize());
+
+        RequestMetrics.write(out, "jtimeseries_request_threads_active", "gauge",
+                "Requests being worked on by the request executor.", requestExecutor.getActive());
+        RequestMetrics.write(out, "jtimeseries_request_queue_length", "gauge",
+                "Requests waiting for a request thread.", requestExecutor.getQueued());
+        RequestMetrics.write(out, "jtimeseries_request_rejected_total", "counter",
+                "Requests rejected because the request queue was full.", requestExecutor.getRejected());
+        RequestMetrics.write(out, "jtimeseries_request_timeouts_total", "counter",
+                "Requests that were not completed in time.", requestExecutor.getTimeouts());
+
+        RequestMetrics.write(out, "jtimeseries_render_active", "gauge",
+                "Charts being encoded.", renderScheduler.getActive());
+        RequestMetrics.write(out, "jtimeseries_render_queue_length", "gauge",
+                "Charts waiting to be encoded.", renderScheduler.getQueued());
+        RequestMetrics.write(out, "jtimeseries_render_rejected_total", "counter",
+                "Charts rejected because the render queue was full.", renderScheduler.getRejected());
+        RequestMetrics.write(out, "jtimeseries_render_expired_total", "counter",
+                "Charts dropped because they could not be encoded in time.", renderScheduler.getExpired());
+
+        return Response.ok(out.toString(), "text/plain; version=0.0.4").build();
+    }
+
     @GET
     @Path("forecast/precipitation")
     @Produces("application/json")
@@ -153,25 +338,32 @@ public class TimeSeriesService {
             @QueryParam("longitude") @DefaultValue("0") double longitude,
             @QueryParam("resolution") @DefaultValue("1") int resolution,
             @QueryParam("term") @DefaultValue("long") String term) {
-        Location location = new Location(longitude, latitude);
-        try {
-            int hh = ("short".equalsIgnoreCase(term))
-                    ? MeteogramWrapper.SHORT_TERM_HOURS : MeteogramWrapper.LONG_TERM_HOURS;
-
-            TimePeriod timePeriod = new TimePeriod(new Date(), hh);
-
-            GenericDataModel model = MeteogramWrapper.getModel(location, timePeriod);
-            NumberPhenomenon precipitation = model.
-                    getNumberPhenomenon(PhenomenonName.Precipitation.nameWithResolution(resolution));
-            return Response.ok(precipitation.toJSON()).build();
-        } catch (ParseException ex) {
-            LogUtils.logException(logger, "Failed to parse data from " + LocationForecastAddressFactory
-                    .getURL(location).toString(), ex);
-        } catch (IOException ex) {
-            LogUtils.logException(logger, "Failed to parse data from " + LocationForecastAddressFactory
-                    .getURL(location).toString(), ex);
-        }
-        return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        long start = System.nanoTime();
+        final Location location = new Location(longitude, latitude);
+        final int hh = ("short".equalsIgnoreCase(term))
+                ? MeteogramWrapper.SHORT_TERM_HOURS : MeteogramWrapper.LONG_TERM_HOURS;
+        final String phenomenonName = PhenomenonName.Precipitation.nameWithResolution(resolution);
+
+        Response response = execute("precipitation", new Callable<Response>() {
+            @Override
+            public Response call() {
+                try {
+                    TimePeriod timePeriod = new TimePeriod(new Date(), hh);
+
+                    GenericDataModel model = MeteogramWrapper.getModel(location, timePeriod);
+                    NumberPhenomenon precipitation = model.getNumberPhenomenon(phenomenonName);
+                    return Response.ok(precipitation.toJSON()).build();
+                } catch (ParseException ex) {
+                    LogUtils.logException(logger, "Failed to parse data from " + LocationForecastAddressFactory
+                            .getURL(location).toString(), ex);
+                } catch (IOException ex) {
+                    LogUtils.logException(logger, "Failed to parse data from " + LocationForecastAddressFactory
+                            .getURL(location).toString(), ex);
+                }
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+            }
+        });
+        return served(PRECIPITATION, "json", start, response);
     }
 
     @POST
@@ -183,8 +375,9 @@ public class TimeSeriesService {
             @QueryParam("longitude") @DefaultValue("0") double longitude,
             @QueryParam("resolution") @DefaultValue("1") int resolution,
             @QueryParam("term") @DefaultValue("long") String term, String forecast) {
+        long start = System.nanoTime();
         if (forecast == null || forecast.isEmpty()) {
-            return Response.status(Response.Status.BAD_REQUEST).build();
+            return served(ARCHIVED_PRECIPITATION, "json", start, Response.status(Response.Status.BAD_REQUEST).build());
         }
 
         try {
@@ -201,20 +394,19 @@ public class TimeSeriesService {
             Date from = precipitation.getStartTime();
             Date to = Utility.getDateWithAddedHours(from, hh);
             model.cutOlderThan(to);
-            return Response.ok(precipitation.toJSON()).build();
+            return served(ARCHIVED_PRECIPITATION, "json", start, Response.ok(precipitation.toJSON()).build());
         } catch (ParseException ex) {
             LogUtils.logException(logger, "Failed to parse provided data", ex);
         } catch (IOException ex) {
             LogUtils.logException(logger, "Failed to parse provided data", ex);
-        } catch (DocumentException ex) {
-            LogUtils.logException(logger, "Failed to parse provided data", ex);
 //        } catch (SAXException ex) {
 //            Logger.getLogger(TimeSeriesService.class.getName()).log(Level.WARNING, "Invalid schema from api.met.no", ex);
 //        } catch (ValidationException ex) {
 //            Logger.getLogger(TimeSeriesService.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
 //            return Response.status(Response.Status.BAD_REQUEST).build();
         }
-        return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        return served(ARCHIVED_PRECIPITATION, "json", start,
+                Response.status(Response.Status.INTERNAL_SERVER_ERROR).build());
     }
 
     @GET
@@ -243,63 +435,78 @@ public class TimeSeriesService {
             @QueryParam("language") @DefaultValue("en") String language,
             @QueryParam("time") @DefaultValue("") String time) {
 
+        long start = System.nanoTime();
         ChartPlottingInfo cpi = new ChartPlottingInfo.Builder(0, 0).altitude(0).width(width)
                 .height(height).showAirTemperature(showTemperature).showPressure(showPressure).timezone(timezone)
                 .showCloudSymbol(showCloudSymbol).showWeatherSymbol(showWeatherSymbol).showWindSymbol(showWindSymbol)
                 .showPrecipitation(showPercipitation).showAccumulatedPrecipitation(showAccumulatedPrecipitation).showWindDirection(showWindDirection)
                 .showWindSpeed(showWindSpeed).windSpeedUnit(windSpeedUnit).showDewpointTemperature(showDewpointTemperature).language(language).build();
 
-        AbstractChartSaver saver = chartSavers.get(format.toLowerCase());
+        final AbstractChartSaver saver = chartSavers.get(format.toLowerCase());
         if (saver == null) {
-            return Response.status(422).build();
+            return served(PROVIDED_METEOGRAM, getFormatLabel(format), start, Response.status(422).build());
         }
 
-        try {
-            Client client = Client.create(new DefaultClientConfig());
-            String locationForecastUrl = getArchivedLocationForecastUrl(latitude, longitude, time);
-            Logger.getLogger(TimeSeriesService.class.getName()).log(Level.INFO, "Fetching locationforecast XML from " + locationForecastUrl);
-            WebResource webResource = client.resource(locationForecastUrl);
-            ClientResponse response = webResource.type(MediaType.APPLICATION_XML).get(ClientResponse.class);
-            String forecast = IOUtils.toString(response.getEntityInputStream());
+        final double forecastLatitude = latitude;
+        final double forecastLongitude = longitude;
+        final String forecastTime = time;
+        final ChartPlottingInfo plottingInfo = cpi;
+        final String chartLanguage = language;
+        final String chartTerm = term;
+        final int chartWidth = width;
+        final int chartHeight = height;
+        final long deadline = requestExecutor.getDeadline();
+        Response response = execute("provided meteogram", new Callable<Response>() {
+            @Override
+            public Response call() {
+                try {
+                    String locationForecastUrl = getArchivedLocationForecastUrl(forecastLatitude, forecastLongitude,
+                            forecastTime);
+                    Logger.getLogger(TimeSeriesService.class.getName()).log(Level.INFO, "Fetching locationforecast XML from " + locationForecastUrl);
+                    String forecast = new String(HttpClientProvider.getBytes(locationForecastUrl), "UTF-8");
 
 // validation fails when new parameters are added, too strict
 //            Schema schema = getLocationForecastSchema();
 //            Validator validator = new LocationForecastValidator(schema);
 //            validator.validate(new SAXSource(new InputSource(new StringReader(forecast))));
 
-            // forecast must become a resource, or getModel must handle xml strings
-            GenericDataModel model = MeteogramWrapper.getModel(new StringReader(forecast));
-            MeteogramWrapper wrapper = new MeteogramWrapper(language);
-            NumberPhenomenon temperature = model.getNumberPhenomenon("AirTemperature"); // need a point-in-time variable here
-            Date from = temperature.getStartTime();
-
-            JFreeChart chart = null;
-
-            if (term.equals("short")) {
-                Date to = Utility.getDateWithAddedHours(from, 48);
-                TimePeriod timePeriod = new TimePeriod(from, to).adapt(3);
-                // Many elements will refuse to render properly if they contain more data than necessary
-                model.cutOlderThan(to);
-                chart = wrapper.createShortTermMeteogram(model, timePeriod, cpi);
-            } else if (term.equals("long")) {
-                Date to = Utility.getDateWithAddedHours(from, 228);
-                TimePeriod timePeriod = new TimePeriod(from, to).adapt(6);
-                chart = wrapper.createLongTermMeteogram(model, timePeriod, cpi);
-            } else {
-                throw new Exception("term must be either \"short\" or \"long\"");
+                    // forecast must become a resource, or getModel must handle xml strings
+                    GenericDataModel model = MeteogramWrapper.getModel(new StringReader(forecast));
+                    MeteogramWrapper wrapper = new MeteogramWrapper(chartLanguage);
+                    NumberPhenomenon temperature = model.getNumberPhenomenon("AirTemperature"); // need a point-in-time variable here
+                    Date from = temperature.getStartTime();
+
+                    JFreeChart chart = null;
+
+                    if (chartTerm.equals("short")) {
+                        Date to = Utility.getDateWithAddedHours(from, 48);
+                        TimePeriod timePeriod = new TimePeriod(from, to).adapt(3);
+                        // Many elements will refuse to render properly if they contain more data than necessary
+                        model.cutOlderThan(to);
+                        chart = wrapper.createShortTermMeteogram(model, timePeriod, plottingInfo);
+                    } else if (chartTerm.equals("long")) {
+                        Date to = Utility.getDateWithAddedHours(from, 228);
+                        TimePeriod timePeriod = new TimePeriod(from, to).adapt(6);
+                        chart = wrapper.createLongTermMeteogram(model, timePeriod, plottingInfo);
+                    } else {
+                        throw new Exception("term must be either \"short\" or \"long\"");
+                    }
+
+                    if (chart != null) {
+                        return renderChart(saver, chart, chartWidth, chartHeight, deadline);
+                    }
+                } catch (RenderRejectedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    Logger.getLogger(TimeSeriesService.class.getName()).log(Level.WARNING, e.getMessage(), e);
+                    return Response.status(Response.Status.BAD_REQUEST).build();
+                }
+
+                // Should never happen:
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
             }
-
-            if (chart != null) {
-                File chartFile = saver.save(chart, width, height);
-                return serveFile(chartFile);
-            }
-        } catch (Exception e) {
-            Logger.getLogger(TimeSeriesService.class.getName()).log(Level.WARNING, e.getMessage(), e);
-            return Response.status(Response.Status.BAD_REQUEST).build();
-        }
-
-        // Should never happen:
-        return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        });
+        return served(PROVIDED_METEOGRAM, getFormatLabel(format), start, response);
     }
 
     @GET
@@ -328,9 +535,10 @@ public class TimeSeriesService {
             @QueryParam("timezone") @DefaultValue("UTC") String timezone,
             @QueryParam("language") @DefaultValue("en") String language) {
 
+        long start = System.nanoTime();
         AbstractChartSaver saver = chartSavers.get(format.toLowerCase());
         if (saver == null) {
-            return Response.status(422).build();
+            return served(METEOGRAM, getFormatLabel(format), start, Response.status(422).build());
         }
 
         ChartPlottingInfo cpi = new ChartPlottingInfo.Builder(longitude, latitude).altitude(altitude).width(width)
@@ -345,17 +553,35 @@ public class TimeSeriesService {
         } else if ("long".equalsIgnoreCase(term)) {
             meteogram = new Meteogram(cpi, MeteogramWrapper.LONG_TERM_HOURS);
         } else {
-            return Response.status(Response.Status.BAD_REQUEST).build();
+            return served(METEOGRAM, getFormatLabel(format), start,
+                    Response.status(Response.Status.BAD_REQUEST).build());
         }
 
-        try {
-            meteogram.drawChart();
-            File chartFile = saver.save(meteogram);
-            return serveFile(chartFile);
-        } catch (Exception e) {
-            LogUtils.logException(logger, "Failed to create meteogram: " + e.getMessage(), e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        String cacheKey = ChartCache.createKey(ChartType.METEOGRAM + "." + term.toLowerCase(), format, cpi.toString());
+        ChartCache.Entry cached = getCachedChart(cacheKey);
+        if (cached != null) {
+            return served(METEOGRAM, getFormatLabel(format), start, serveChart(cached));
         }
+
+        final AbstractChartSaver chartSaver = saver;
+        final AbstractChart chart = meteogram;
+        final String chartKey = cacheKey;
+        final long deadline = requestExecutor.getDeadline();
+        Response response = execute("meteogram", new Callable<Response>() {
+            @Override
+            public Response call() {
+                try {
+                    chart.drawChart();
+                    return serveChart(chartKey, chartSaver, chart, deadline);
+                } catch (RenderRejectedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    LogUtils.logException(logger, "Failed to create meteogram: " + e.getMessage(), e);
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+                }
+            }
+        });
+        return served(METEOGRAM, getFormatLabel(format), start, response);
     }
 
     @GET
@@ -380,9 +606,10 @@ public class TimeSeriesService {
             @QueryParam("timezone") @DefaultValue("UTC") String timezone,
             @QueryParam("language") @DefaultValue("en") String language) {
 
+        long start = System.nanoTime();
         AbstractChartSaver saver = chartSavers.get(format.toLowerCase());
         if (saver == null) {
-            return Response.status(422).build();
+            return served(MARINOGRAM, getFormatLabel(format), start, Response.status(422).build());
         }
 
         ChartPlottingInfo cpi = new ChartPlottingInfo.Builder(longitude, latitude).width(width)
@@ -391,15 +618,31 @@ public class TimeSeriesService {
                 .showCurrentDirection(showCurrentDirection).showCurrentSpeed(showCurrentSpeed)
                 .showWindDirection(showWindDirection).showWindSpeed(showWindSpeed).showDewpointTemperature(showDewpointTemperature)
                 .timezone(timezone).language(language).build();
-        AbstractChart marinogram = new Marinogram(cpi);
-        try {
-            marinogram.drawChart();
-            File chartFile = saver.save(marinogram);
-            return serveFile(chartFile);
-        } catch (Exception e) {
-            LogUtils.logException(logger, "Failed to create marinogram: " + e.getMessage(), e);
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        String cacheKey = ChartCache.createKey(ChartType.MARINOGRAM, format, cpi.toString());
+        ChartCache.Entry cached = getCachedChart(cacheKey);
+        if (cached != null) {
+            return served(MARINOGRAM, getFormatLabel(format), start, serveChart(cached));
         }
+
+        final AbstractChartSaver chartSaver = saver;
+        final AbstractChart marinogram = new Marinogram(cpi);
+        final String chartKey = cacheKey;
+        final long deadline = requestExecutor.getDeadline();
+        Response response = execute("marinogram", new Callable<Response>() {
+            @Override
+            public Response call() {
+                try {
+                    marinogram.drawChart();
+                    return serveChart(chartKey, chartSaver, marinogram, deadline);
+                } catch (RenderRejectedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    LogUtils.logException(logger, "Failed to create marinogram: " + e.getMessage(), e);
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+                }
+            }
+        });
+        return served(MARINOGRAM, getFormatLabel(format), start, response);
     }
 
     /*
@@ -448,9 +691,11 @@ public class TimeSeriesService {
 
     	try {
 			JFreeChart chart = NetcdfMeteogramWrapper.getChart(url, location, parameters, parameterReference, header);
-			File ret = new PngChartSaver().save(chart, width, height);
-			return serveFile(ret);
+			return renderChart(new PngChartSaver(), chart, width, height, requestExecutor.getDeadline());
 		}
+    	catch ( RenderRejectedException e ) {
+    		return createUnavailableResponse(RETRY_AFTER);
+    	}
     	catch ( FileNotFoundException e ) {
     		LogUtils.logException(logger, "Unable to make sense of data: " + e.getMessage(), e);
 			return Response.status(502).build();
@@ -522,19 +767,143 @@ public class TimeSeriesService {
      */
 
     /**
-     * Create the Response object for serving a file.
+     * Run the work of a request on the request executor
+     *
+     * @param what A description of the work, for logging
+     * @param task Creates the response
+     * @return The response of the task, or an error response if the task
+     *         could not be run in time
+     */
+    private Response execute(String what, Callable<Response> task) {
+        try {
+            return requestExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.warning("Too many requests, rejected " + what);
+            return createUnavailableResponse(RETRY_AFTER);
+        } catch (TimeoutException e) {
+            logger.warning("Timed out waiting for " + what);
+            return Response.status(GATEWAY_TIMEOUT).build();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RenderRejectedException) {
+                RenderRejectedException rejected = (RenderRejectedException) e.getCause();
+                logger.warning(rejected.getMessage() + ", dropped " + what);
+                return createUnavailableResponse(rejected.getRetryAfter());
+            }
+            LogUtils.logException(logger, "Failed to create " + what + ": " + e.getCause().getMessage(), e.getCause());
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    /**
+     * Record the time taken to serve a request, and count it in the request
+     * metrics
+     *
+     * @param endpoint The name of the service
+     * @param format The requested format
+     * @param start The value of {@link System#nanoTime()} when the request
+     *            arrived
+     * @param response The response to the request
+     * @return The response
+     */
+    private static Response served(String endpoint, String format, long start, Response response) {
+        RequestMetrics metrics = RequestMetrics.getInstance();
+        metrics.record(Stage.SERVE, start);
+        metrics.countRequest(endpoint, format, response.getStatus());
+        return response;
+    }
+
+    /**
+     * @return The format to count a chart request under. Unsupported formats
+     *         are counted together, so that clients can not create new
+     *         metrics at will.
+     */
+    private static String getFormatLabel(String format) {
+        String label = format.toLowerCase();
+        return chartSavers.containsKey(label) ? label : "unsupported";
+    }
+
+    private static Response createUnavailableResponse(int retryAfter) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", retryAfter).build();
+    }
+
+    /**
+     * Get a chart from the cache
+     *
+     * @param key The cache key of the request
+     * @return The cached chart, or null if it is not cached
+     */
+    private ChartCache.Entry getCachedChart(String key) {
+        if (!chartCache.isEnabled()) {
+            return null;
+        }
+        return chartCache.get(key);
+    }
+
+    /**
+     * Encode and serve a drawn chart. If the chart may be reused it is put in
+     * the cache.
+     *
+     * @param key The cache key of the request
+     * @param saver The image format to use
+     * @param chart The drawn chart
+     * @param deadline The time by which the chart must be encoded, as given by
+     *            {@link RequestExecutor#getDeadline()}
+     * @return A Response object that will serve the chart
+     * @throws RenderRejectedException if there was no time to encode the chart
+     */
+    private Response serveChart(String key, final AbstractChartSaver saver, final AbstractChart chart, long deadline)
+            throws Exception {
+        byte[] data = renderScheduler.render(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return saver.toByteArray(chart);
+            }
+        }, deadline);
+
+        if (chartCache.isEnabled() && chart.getExpires() != null) {
+            long validUntil = Math.min(chart.getExpires().getTime(), System.currentTimeMillis() + chartCacheMaxAge);
+            if (validUntil > System.currentTimeMillis()) {
+                ChartCache.Entry entry = new ChartCache.Entry(data, saver.getMediaType(), saver.getFileName(),
+                        validUntil);
+                chartCache.put(key, entry);
+                return serveChart(entry);
+            }
+        }
+        return createChartResponse(data, saver.getMediaType(), saver.getFileName());
+    }
+
+    /**
+     * Create the Response object for serving a chart from memory.
+     *
+     * @param chart The chart to serve
+     * @return A Response object that will serve the chart with the correct headers set.
+     */
+    private Response serveChart(ChartCache.Entry chart) {
+        return createChartResponse(chart.getData(), chart.getMediaType(), chart.getFileName());
+    }
+
+    /**
+     * Encode and serve a chart that is not to be cached
      *
-     * @param f The file to serve
-     * @return A Response object that will serve the file with the correct headers set.
+     * @throws RenderRejectedException if there was no time to encode the chart
      */
-    private Response serveFile(File f) {
+    private Response renderChart(final AbstractChartSaver saver, final JFreeChart chart, final int width,
+            final int height, long deadline) throws Exception {
+        byte[] data = renderScheduler.render(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return saver.toByteArray(chart, width, height);
+            }
+        }, deadline);
+        return createChartResponse(data, saver.getMediaType(), saver.getFileName());
+    }
 
-        ContentDisposition cd = ContentDisposition.type("inline").fileName(f.getName()).build();
+    private Response createChartResponse(Object entity, String contentType, String fileName) {
 
-        // TODO this way of getting the mime type could be slow. Should be
-        // tested.
-        FileNameMap fileNameMap = URLConnection.getFileNameMap();
-        String mt = fileNameMap.getContentTypeFor(f.getAbsolutePath());
+        ContentDisposition cd = ContentDisposition.type("inline").fileName(fileName).build();
 
         CacheControl cc = new CacheControl();
         cc.setMustRevalidate(true);
@@ -542,21 +911,7 @@ public class TimeSeriesService {
         cacheExtension.put("post-check", "0");
         cacheExtension.put("pre-check", "0");
 
-        // to be able to clean up the temporary files generated by the service
-        // we read all the bytes in the file into memory and this might not be efficient enough.
-        // TODO We need to look into this when we do performance testing.
-        byte[] fileBytes = new byte[(int) f.length()];
-        try {
-            new FileInputStream(f).read(fileBytes);
-        } catch (FileNotFoundException e) {
-            throw new WebApplicationException(e, 500);
-        } catch (IOException e) {
-            throw new WebApplicationException(e, 500);
-        }
-        f.delete();
-
-        String contentType = mt;
-        return Response.ok(fileBytes, mt).header("Content-Disposition", cd).header("Content-Type", contentType)
+        return Response.ok(entity, contentType).header("Content-Disposition", cd).header("Content-Type", contentType)
                 .cacheControl(cc).build();
 
     }
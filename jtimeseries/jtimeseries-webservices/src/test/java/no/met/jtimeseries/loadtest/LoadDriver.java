@@ -0,0 +1,307 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a mix of requests to the service from a number of threads, each
+ * sending its next request as soon as the previous one is answered, and
+ * records the latency and status of each response.
+ */
+public class LoadDriver {
+
+    /**
+     * A kind of request, sent with the given relative frequency
+     */
+    public static class Target {
+        private final String name;
+        private final String query;
+        private final int weight;
+
+        /**
+         * @param name the name of the request in the report
+         * @param query the path and query of the request, with %s for the
+         *            latitude and longitude, in that order
+         * @param weight how often the request is sent, relative to the other
+         *            targets
+         */
+        public Target(String name, String query, int weight) {
+            this.name = name;
+            this.query = query;
+            this.weight = weight;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final String baseUrl;
+    private final List<Target> targets;
+    private final int totalWeight;
+    private final double[][] locations;
+
+    /**
+     * @param baseUrl the address of the service, without a trailing slash
+     * @param targets the requests to send
+     * @param locations the number of different locations to ask for.
+     *            Fewer locations means more hits in the caches of the
+     *            service.
+     * @param seed the seed for choosing locations and requests, so that runs
+     *            can be repeated
+     */
+    public LoadDriver(String baseUrl, List<Target> targets, int locations, long seed) {
+        this.baseUrl = baseUrl;
+        this.targets = targets;
+        int weight = 0;
+        for (Target target : targets) {
+            weight += target.weight;
+        }
+        this.totalWeight = weight;
+
+        // locations along the coast of Norway
+        Random random = new Random(seed);
+        this.locations = new double[locations][];
+        for (int i = 0; i < locations; i++) {
+            this.locations[i] = new double[] { 58 + random.nextDouble() * 12, 5 + random.nextDouble() * 20 };
+        }
+    }
+
+    /**
+     * Send requests until the time is up
+     *
+     * @param threads the number of concurrent clients
+     * @param warmup how long to send requests before starting to record, in
+     *            milliseconds
+     * @param duration how long to record, in milliseconds
+     * @param seed the seed for choosing locations and requests
+     * @return the recorded responses
+     */
+    public Report run(int threads, long warmup, long duration, long seed) throws InterruptedException {
+        long measureStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmup);
+        long measureEnd = measureStart + TimeUnit.MILLISECONDS.toNanos(duration);
+
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(new Random(seed + i), measureStart, measureEnd);
+            workers[i].setName("load-" + (i + 1));
+            workers[i].start();
+        }
+
+        Report report = new Report(targets, TimeUnit.MILLISECONDS.toNanos(duration));
+        for (Worker worker : workers) {
+            worker.join();
+            report.add(worker.recorders);
+        }
+        return report;
+    }
+
+    private class Worker extends Thread {
+        private final Random random;
+        private final long measureStart;
+        private final long measureEnd;
+        private final Recorder[] recorders = new Recorder[targets.size()];
+        private final byte[] buffer = new byte[16 * 1024];
+
+        Worker(Random random, long measureStart, long measureEnd) {
+            this.random = random;
+            this.measureStart = measureStart;
+            this.measureEnd = measureEnd;
+            for (int i = 0; i < recorders.length; i++) {
+                recorders[i] = new Recorder();
+            }
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            while (now < measureEnd) {
+                int target = chooseTarget();
+                double[] location = locations[random.nextInt(locations.length)];
+                String query = String.format(Locale.ROOT, targets.get(target).query, location[0], location[1]);
+
+                long start = System.nanoTime();
+                int status = send(query);
+                now = System.nanoTime();
+                if (start >= measureStart && now <= measureEnd) {
+                    recorders[target].record(now - start, status);
+                }
+            }
+        }
+
+        private int chooseTarget() {
+            int pick = random.nextInt(totalWeight);
+            for (int i = 0; i < targets.size(); i++) {
+                pick -= targets.get(i).weight;
+                if (pick < 0) {
+                    return i;
+                }
+            }
+            return targets.size() - 1;
+        }
+
+        /**
+         * Send a request and read the whole response
+         *
+         * @return the status of the response, or 0 if there was none
+         */
+        private int send(String query) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + query).openConnection();
+                connection.setConnectTimeout(10000);
+                connection.setReadTimeout(120000);
+                int status = connection.getResponseCode();
+                InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+                if (in != null) {
+                    // read to the end, so that the connection is reused
+                    while (in.read(buffer) >= 0) {
+                        continue;
+                    }
+                    in.close();
+                }
+                return status;
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * The latencies and statuses of the responses to one target, recorded by
+     * one thread
+     */
+    private static class Recorder {
+        private long[] latencies = new long[1024];
+        private int count = 0;
+        private final Map<Integer, Integer> statuses = new TreeMap<Integer, Integer>();
+
+        void record(long latency, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            Integer seen = statuses.get(status);
+            statuses.put(status, seen == null ? 1 : seen + 1);
+        }
+    }
+
+    /**
+     * The responses recorded by all threads
+     */
+    public static class Report {
+        private final List<Target> targets;
+        private final long duration;
+        private final List<long[]> latencies = new ArrayList<long[]>();
+        private final List<Map<Integer, Integer>> statuses = new ArrayList<Map<Integer, Integer>>();
+
+        Report(List<Target> targets, long duration) {
+            this.targets = targets;
+            this.duration = duration;
+            for (int i = 0; i < targets.size(); i++) {
+                latencies.add(new long[0]);
+                statuses.add(new TreeMap<Integer, Integer>());
+            }
+        }
+
+        void add(Recorder[] recorders) {
+            for (int i = 0; i < recorders.length; i++) {
+                long[] merged = Arrays.copyOf(latencies.get(i), latencies.get(i).length + recorders[i].count);
+                System.arraycopy(recorders[i].latencies, 0, merged, latencies.get(i).length, recorders[i].count);
+                latencies.set(i, merged);
+                for (Map.Entry<Integer, Integer> entry : recorders[i].statuses.entrySet()) {
+                    Integer seen = statuses.get(i).get(entry.getKey());
+                    statuses.get(i).put(entry.getKey(), seen == null ? entry.getValue() : seen + entry.getValue());
+                }
+            }
+        }
+
+        /**
+         * Print throughput, latency percentiles and response statuses for
+         * each target, and for all of them together
+         */
+        public void print(PrintStream out) {
+            out.printf(Locale.ROOT, "%-14s %9s %8s %9s %9s %9s %9s %9s %9s%n", "request", "count", "errors",
+                    "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            long[] all = new long[0];
+            int allErrors = 0;
+            for (int i = 0; i < targets.size(); i++) {
+                int errors = countErrors(statuses.get(i));
+                print(out, targets.get(i).getName(), latencies.get(i), errors);
+                long[] merged = Arrays.copyOf(all, all.length + latencies.get(i).length);
+                System.arraycopy(latencies.get(i), 0, merged, all.length, latencies.get(i).length);
+                all = merged;
+                allErrors += errors;
+            }
+            print(out, "all", all, allErrors);
+
+            out.println();
+            out.println("response statuses (0 means no response):");
+            for (int i = 0; i < targets.size(); i++) {
+                out.println("  " + targets.get(i).getName() + ": " + statuses.get(i));
+            }
+        }
+
+        private void print(PrintStream out, String name, long[] latencies, int errors) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            double seconds = duration / 1e9;
+            out.printf(Locale.ROOT, "%-14s %9d %8d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, sorted.length,
+                    errors, sorted.length / seconds, percentile(sorted, 0.5), percentile(sorted, 0.9),
+                    percentile(sorted, 0.99), percentile(sorted, 0.999), percentile(sorted, 1));
+        }
+
+        private static int countErrors(Map<Integer, Integer> statuses) {
+            int errors = 0;
+            for (Map.Entry<Integer, Integer> entry : statuses.entrySet()) {
+                if (entry.getKey() < 200 || entry.getKey() >= 300) {
+                    errors += entry.getValue();
+                }
+            }
+            return errors;
+        }
+
+        /**
+         * @return the latency below which the given fraction of the sorted
+         *         latencies are, in milliseconds
+         */
+        static double percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.loadtest;
+
+import static no.met.jtimeseries.Constant.JTIMESERIES_ENV;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import no.met.halo.common.ConfigUtils;
+import no.met.jtimeseries.service.TimeSeriesService;
+
+import com.sun.jersey.api.container.httpserver.HttpServerFactory;
+import com.sun.jersey.api.core.DefaultResourceConfig;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.api.json.JSONConfiguration;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Load test of the web service, without any external dependencies.
+ *
+ * Starts the service in an embedded http server, with api.met.no replaced by
+ * a {@link StubForecastServer} replaying recorded forecasts. Then sends a mix
+ * of meteogram, marinogram and precipitation requests, and reports the
+ * throughput, the latency percentiles and the garbage collection work.
+ *
+ * The service must be configured to fetch forecasts from the stub. The test
+ * configuration does this, so the test classes must come first on the class
+ * path:
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) \
+ *     no.met.jtimeseries.loadtest.LoadTest --threads=32 --duration=60
+ * </pre>
+ *
+ * Options, with their defaults:
+ * <ul>
+ * <li>--port=18080 the port of the service</li>
+ * <li>--container-threads=200 the request threads of the embedded server</li>
+ * <li>--threads=16 the number of concurrent clients</li>
+ * <li>--warmup=20 seconds of load before recording starts</li>
+ * <li>--duration=60 seconds of recorded load</li>
+ * <li>--mix=meteogram:70,marinogram:10,precipitation:20 the relative
+ * frequency of each request</li>
+ * <li>--format=png the format of the charts</li>
+ * <li>--locations=1000 the number of different locations requested</li>
+ * <li>--latency=50 the average response time of the stub, in milliseconds</li>
+ * <li>--error-rate=0 the fraction of stub responses that fail</li>
+ * <li>--payloads=dir a directory with recorded responses, locationforecast.json
+ * and oceanforecast.xml, to replay instead of the bundled ones</li>
+ * <li>--seed=1 the seed for choosing locations and requests</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    private static final Map<String, String> QUERIES = new HashMap<String, String>();
+    static {
+        QUERIES.put("meteogram", "/meteogram?latitude=%.4f&longitude=%.4f&format=${format}");
+        QUERIES.put("longmeteogram", "/meteogram?latitude=%.4f&longitude=%.4f&term=long&format=${format}");
+        QUERIES.put("marinogram", "/marinogram?latitude=%.4f&longitude=%.4f&format=${format}");
+        QUERIES.put("precipitation", "/forecast/precipitation?latitude=%.4f&longitude=%.4f");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int port = Integer.parseInt(get(options, "port", "18080"));
+        int containerThreads = Integer.parseInt(get(options, "container-threads", "200"));
+        int threads = Integer.parseInt(get(options, "threads", "16"));
+        long warmup = Long.parseLong(get(options, "warmup", "20")) * 1000;
+        long duration = Long.parseLong(get(options, "duration", "60")) * 1000;
+        String mix = get(options, "mix", "meteogram:70,marinogram:10,precipitation:20");
+        String format = get(options, "format", "png");
+        int locations = Integer.parseInt(get(options, "locations", "1000"));
+        long latency = Long.parseLong(get(options, "latency", "50"));
+        double errorRate = Double.parseDouble(get(options, "error-rate", "0"));
+        String payloads = get(options, "payloads", null);
+        long seed = Long.parseLong(get(options, "seed", "1"));
+
+        ConfigUtils cfg = new ConfigUtils("/config/jtimeseries.properties", JTIMESERIES_ENV);
+        String server = cfg.getRequired("datasource.server");
+        if (!"localhost".equals(server) && !"127.0.0.1".equals(server)) {
+            throw new IllegalStateException("The service would fetch forecasts from " + server
+                    + ", put the test configuration first on the class path");
+        }
+
+        StubForecastServer stub = new StubForecastServer(Integer.parseInt(cfg.getRequired("datasource.port")),
+                latency, errorRate);
+        stub.addForecast(cfg.getRequired("datasource.meteogram.path"),
+                readPayload(payloads, "locationforecast.json", "/locationforecast/complete.json"),
+                "application/json");
+        stub.addForecast(cfg.getRequired("datasource.marinogram.path"),
+                readPayload(payloads, "oceanforecast.xml", "/oceanforecast/forecast.xml"), "application/xml");
+        stub.start();
+
+        // configured like the servlet in web.xml
+        ResourceConfig config = new DefaultResourceConfig(TimeSeriesService.class);
+        config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, true);
+        config.getFeatures().put(ResourceConfig.FEATURE_DISABLE_WADL, true);
+        HttpServer service = HttpServerFactory.create("http://localhost:" + port + "/", config);
+        ExecutorService containerExecutor = Executors.newFixedThreadPool(containerThreads);
+        service.setExecutor(containerExecutor);
+        service.start();
+
+        try {
+            LoadDriver driver = new LoadDriver("http://localhost:" + port, parseMix(mix, format), locations, seed);
+            System.out.println("Sending " + mix + " from " + threads + " threads, warming up for " + warmup / 1000
+                    + " s and recording for " + duration / 1000 + " s");
+
+            // leave out the garbage collection during warmup
+            GcSnapshot[] before = new GcSnapshot[1];
+            Thread snapshot = startSnapshot(before, warmup);
+            LoadDriver.Report report = driver.run(threads, warmup, duration, seed);
+            snapshot.join();
+            GcSnapshot after = new GcSnapshot();
+
+            System.out.println();
+            report.print(System.out);
+            System.out.println();
+            after.printSince(before[0], duration);
+            System.out.println();
+            System.out.println("stub: " + stub.getRequests() + " requests, " + stub.getErrors() + " failed");
+        } finally {
+            service.stop(0);
+            containerExecutor.shutdownNow();
+            stub.stop();
+        }
+    }
+
+    private static Thread startSnapshot(final GcSnapshot[] snapshot, final long delay) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                snapshot[0] = new GcSnapshot();
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --option=value, got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static String get(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Parse a mix like "meteogram:70,marinogram:10,precipitation:20"
+     */
+    static List<LoadDriver.Target> parseMix(String mix, String format) {
+        List<LoadDriver.Target> targets = new ArrayList<LoadDriver.Target>();
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            String query = QUERIES.get(nameAndWeight[0]);
+            if (query == null || nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("Unknown request in mix: " + part + ", expected one of "
+                        + QUERIES.keySet() + " followed by :weight");
+            }
+            targets.add(new LoadDriver.Target(nameAndWeight[0], query.replace("${format}", format),
+                    Integer.parseInt(nameAndWeight[1])));
+        }
+        return targets;
+    }
+
+    /**
+     * Read a recorded response from the payload directory if given, or else
+     * the bundled one
+     */
+    private static byte[] readPayload(String directory, String name, String resource) throws IOException {
+        InputStream in;
+        if (directory != null) {
+            in = new FileInputStream(new File(directory, name));
+        } else {
+            in = LoadTest.class.getResourceAsStream(resource);
+            if (in == null) {
+                throw new FileNotFoundException(resource);
+            }
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The garbage collection work and heap use at a point in time
+     */
+    private static class GcSnapshot {
+        private final Map<String, long[]> collectors = new HashMap<String, long[]>();
+        private final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+        GcSnapshot() {
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collectors.put(gc.getName(), new long[] { gc.getCollectionCount(), gc.getCollectionTime() });
+            }
+        }
+
+        void printSince(GcSnapshot before, long duration) {
+            System.out.println("garbage collection while recording:");
+            for (Map.Entry<String, long[]> entry : collectors.entrySet()) {
+                long[] start = before.collectors.get(entry.getKey());
+                long count = entry.getValue()[0] - (start != null ? start[0] : 0);
+                long time = entry.getValue()[1] - (start != null ? start[1] : 0);
+                System.out.printf(Locale.ROOT, "  %-20s %6d collections %8d ms (%.1f%% of the time)%n", entry.getKey(), count,
+                        time, 100.0 * time / duration);
+            }
+            System.out.printf(Locale.ROOT, "  heap used %d MB of %d MB%n", heap.getUsed() >> 20, heap.getCommitted() >> 20);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import no.met.jtimeseries.chart.Utility;
+
+import org.apache.http.client.utils.DateUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A stand-in for api.met.no, replaying recorded locationforecast and
+ * oceanforecast responses for any location.
+ *
+ * The times in the recorded responses are moved so that the forecasts start
+ * at the current hour. Responses can be delayed, and can be made to fail, to
+ * see how the service copes with a slow or unreliable upstream.
+ */
+public class StubForecastServer {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Pattern TIME = Pattern.compile("\\d{4}-\\d\\d-\\d\\dT\\d\\d:\\d\\d:\\d\\dZ");
+
+    // how long the replayed forecasts may be cached by the service
+    private static final long EXPIRES = Utility.MILLIS_PER_HOUR;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Random random = new Random();
+    private final long latency;
+    private final double errorRate;
+    private final String lastModified = DateUtils.formatDate(new Date());
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * @param port the port to listen to, on localhost
+     * @param latency the average time to wait before responding, in
+     *            milliseconds. The actual time varies between half and one
+     *            and a half times this.
+     * @param errorRate the fraction of requests to fail with 500 Internal
+     *            Server Error
+     */
+    public StubForecastServer(int port, long latency, double errorRate) throws IOException {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Replay a recorded response for all requests below the given path
+     *
+     * @param path the path of the forecast api, like
+     *            "/weatherapi/locationforecast/2.0/complete"
+     * @param document the recorded response
+     * @param contentType the media type of the response
+     */
+    public void addForecast(String path, byte[] document, String contentType) throws ParseException {
+        server.createContext(path, new ReplayHandler(shiftTimes(document, System.currentTimeMillis()), contentType));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the number of requests received
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requests deliberately failed
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Move all times in the document by the same whole number of hours, so
+     * that the first time is the current hour
+     */
+    static byte[] shiftTimes(byte[] document, long now) throws ParseException {
+        String text = new String(document, UTF8);
+        Matcher matcher = TIME.matcher(text);
+        if (!matcher.find()) {
+            return document;
+        }
+        long shift = Utility.truncateToHourUTC(now) - Utility.truncateToHourUTC(Utility.parseDateUTC(matcher.group()));
+
+        StringBuffer shifted = new StringBuffer(text.length());
+        do {
+            long time = Utility.parseDateUTC(matcher.group()) + shift;
+            matcher.appendReplacement(shifted, Utility.formatDateUTC(time));
+        } while (matcher.find());
+        matcher.appendTail(shifted);
+        return shifted.toString().getBytes(UTF8);
+    }
+
+    private class ReplayHandler implements HttpHandler {
+
+        private final byte[] document;
+        private final String contentType;
+
+        ReplayHandler(byte[] document, String contentType) {
+            this.document = document;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try {
+                if (latency > 0) {
+                    Thread.sleep(latency / 2 + (long) (random.nextDouble() * latency));
+                }
+                if (random.nextDouble() < errorRate) {
+                    errors.incrementAndGet();
+                    exchange.sendResponseHeaders(500, -1);
+                    return;
+                }
+                if (exchange.getRequestHeaders().getFirst("If-Modified-Since") != null) {
+                    exchange.getResponseHeaders().set("Expires", getExpires());
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+                exchange.getResponseHeaders().set("Expires", getExpires());
+                exchange.getResponseHeaders().set("Last-Modified", lastModified);
+                exchange.sendResponseHeaders(200, document.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(document);
+                out.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private String getExpires() {
+            return DateUtils.formatDate(new Date(System.currentTimeMillis() + EXPIRES));
+        }
+    }
+}
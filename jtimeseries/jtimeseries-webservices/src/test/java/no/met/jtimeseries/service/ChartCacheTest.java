@@ -0,0 +1,118 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ChartCacheTest {
+
+    private static ChartCache.Entry entry(int size, long expiresIn) {
+        return new ChartCache.Entry(new byte[size], "image/png", "chart.png", System.currentTimeMillis() + expiresIn);
+    }
+
+    @Test
+    public void testGet() {
+        ChartCache cache = new ChartCache(1000);
+        ChartCache.Entry e = entry(10, 60000);
+        cache.put("a", e);
+
+        assertSame(e, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        ChartCache cache = new ChartCache(100);
+        cache.put("a", entry(40, 60000));
+        cache.put("b", entry(40, 60000));
+        cache.get("a");
+        cache.put("c", entry(40, 60000));
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(80, cache.getBytes());
+        assertEquals(2, cache.getSize());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testReplace() {
+        ChartCache cache = new ChartCache(100);
+        cache.put("a", entry(40, 60000));
+        cache.put("a", entry(30, 60000));
+        assertEquals(30, cache.getBytes());
+        assertEquals(1, cache.getSize());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void testOversizedEntryReplacesOld() {
+        ChartCache cache = new ChartCache(100);
+        cache.put("a", entry(40, 60000));
+        cache.put("a", entry(101, 60000));
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getBytes());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testExpiredEntryIsRemoved() {
+        ChartCache cache = new ChartCache(100);
+        cache.put("a", entry(40, -1));
+
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getBytes());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testDisabled() {
+        ChartCache cache = new ChartCache(0);
+        cache.put("a", entry(0, 60000));
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testClear() {
+        ChartCache cache = new ChartCache(100);
+        cache.put("a", entry(40, 60000));
+        cache.clear();
+
+        assertEquals(0, cache.getBytes());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testCreateKey() {
+        assertEquals("meteogram.short.png:p", ChartCache.createKey("meteogram.short", "PNG", "p"));
+    }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.service;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import no.met.jtimeseries.service.RenderScheduler.RenderRejectedException;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RenderSchedulerTest {
+
+    private static final long LATER = TimeUnit.SECONDS.toNanos(10);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    private static Callable<String> render(final String result) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Start a render on another thread, that holds its turn until released
+     */
+    private Thread startBlockedRender(final RenderScheduler scheduler, final AtomicReference<Object> result) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    result.set(scheduler.render(new Callable<String>() {
+                        @Override
+                        public String call() throws InterruptedException {
+                            release.await();
+                            return "blocked";
+                        }
+                    }, System.nanoTime() + LATER));
+                } catch (Exception e) {
+                    result.set(e);
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitActive(RenderScheduler scheduler, int active) throws InterruptedException {
+        while (scheduler.getActive() < active) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testRender() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(2, 2);
+        assertEquals("chart", scheduler.render(render("chart"), System.nanoTime() + LATER));
+        assertEquals(1, scheduler.getRendered());
+        assertEquals(0, scheduler.getWaited());
+        assertEquals(0, scheduler.getActive());
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(1, 0);
+        AtomicReference<Object> result = new AtomicReference<Object>();
+        Thread blocked = startBlockedRender(scheduler, result);
+        awaitActive(scheduler, 1);
+
+        try {
+            scheduler.render(render("chart"), System.nanoTime() + LATER);
+            fail("Expected the render to be rejected");
+        } catch (RenderRejectedException e) {
+            assertTrue(e.getRetryAfter() >= 1);
+        }
+        assertEquals(1, scheduler.getRejected());
+        assertEquals(0, scheduler.getQueued());
+
+        release.countDown();
+        blocked.join(1000);
+        assertEquals("blocked", result.get());
+    }
+
+    @Test
+    public void testDropsRenderPastDeadline() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(1, 4);
+        AtomicReference<Object> result = new AtomicReference<Object>();
+        Thread blocked = startBlockedRender(scheduler, result);
+        awaitActive(scheduler, 1);
+
+        long start = System.nanoTime();
+        try {
+            scheduler.render(render("chart"), start + TimeUnit.MILLISECONDS.toNanos(20));
+            fail("Expected the render to be dropped");
+        } catch (RenderRejectedException e) {
+            // expected
+        }
+        assertEquals(1, scheduler.getExpired());
+        assertEquals(0, scheduler.getQueued());
+
+        release.countDown();
+        blocked.join(1000);
+    }
+
+    @Test
+    public void testWaitsForTurn() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(1, 4);
+        AtomicReference<Object> result = new AtomicReference<Object>();
+        Thread blocked = startBlockedRender(scheduler, result);
+        awaitActive(scheduler, 1);
+
+        Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    // release at once
+                }
+                release.countDown();
+            }
+        };
+        releaser.start();
+        assertEquals("chart", scheduler.render(render("chart"), System.nanoTime() + LATER));
+        blocked.join(1000);
+
+        assertEquals(2, scheduler.getRendered());
+        assertEquals(1, scheduler.getWaited());
+        assertTrue(scheduler.getMaxWaitTime() > 0);
+        assertEquals(scheduler.getMaxWaitTime(), scheduler.getTotalWaitTime());
+    }
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.service;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RequestExecutorTest {
+
+    private RequestExecutor executor;
+
+    private final CountDownLatch upstream = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        upstream.countDown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A request that waits for the upstream service to respond
+     */
+    private Callable<String> slowRequest(final CountDownLatch started) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws InterruptedException {
+                started.countDown();
+                upstream.await();
+                return "slow";
+            }
+        };
+    }
+
+    private static Callable<String> request(final String result) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return result;
+            }
+        };
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        executor = new RequestExecutor(2, 2, 1000);
+        assertEquals("fast", executor.execute(request("fast")));
+        // the pool counts the task as completed just after its result is handed over
+        long deadline = System.currentTimeMillis() + 1000;
+        while (executor.getCompleted() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, executor.getCompleted());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        executor = new RequestExecutor(1, 1, 50);
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            executor.execute(slowRequest(started));
+            fail("Expected a timeout");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertEquals(1, executor.getTimeouts());
+
+        // the request that timed out keeps running until upstream responds
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertEquals(1, executor.getActive());
+        upstream.countDown();
+        assertEquals("fast", executor.execute(request("fast")));
+    }
+
+    @Test
+    public void testRejectsWhenFull() throws Exception {
+        executor = new RequestExecutor(1, 1, 5000);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean queuedDone = new AtomicBoolean();
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(slowRequest(started));
+                } catch (Exception e) {
+                    // ignored
+                }
+            }
+        };
+        first.start();
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        Thread second = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    queuedDone.set("queued".equals(executor.execute(request("queued"))));
+                } catch (Exception e) {
+                    // ignored
+                }
+            }
+        };
+        second.start();
+        while (executor.getQueued() == 0) {
+            Thread.sleep(1);
+        }
+
+        try {
+            executor.execute(request("rejected"));
+            fail("Expected the request to be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(1, executor.getRejected());
+
+        upstream.countDown();
+        first.join(1000);
+        second.join(1000);
+        assertTrue(queuedDone.get());
+    }
+}
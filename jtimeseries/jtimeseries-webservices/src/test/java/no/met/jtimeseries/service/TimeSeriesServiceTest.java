@@ -0,0 +1,151 @@
+/*******************************************************************************
+ *   Copyright (C) 2016 MET Norway
+ *   Contact information:
+ *   Norwegian Meteorological Institute
+ *   Henrik Mohns Plass 1
+ *   0313 OSLO
+ *   NORWAY
+ *
+ *   This file is part of jTimeseries
+ *   jTimeseries is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *   jTimeseries is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU General Public License for more details.
+ *   You should have received a copy of the GNU General Public License
+ *   along with jTimeseries; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *******************************************************************************/
+package no.met.jtimeseries.service;
+
+import static no.met.jtimeseries.Constant.JTIMESERIES_ENV;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.Arrays;
+
+import no.met.halo.common.ConfigUtils;
+import no.met.jtimeseries.loadtest.StubForecastServer;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.jersey.api.container.httpserver.HttpServerFactory;
+import com.sun.jersey.api.core.DefaultResourceConfig;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.api.json.JSONConfiguration;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the service in an embedded http server, fetching forecasts from a
+ * {@link StubForecastServer} as set up by the test configuration.
+ */
+public class TimeSeriesServiceTest {
+
+    private static StubForecastServer stub;
+    private static HttpServer service;
+    private static String baseUrl;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        ConfigUtils cfg = new ConfigUtils("/config/jtimeseries.properties", JTIMESERIES_ENV);
+        stub = new StubForecastServer(Integer.parseInt(cfg.getRequired("datasource.port")), 0, 0);
+        stub.addForecast(cfg.getRequired("datasource.meteogram.path"), readResource("/locationforecast/complete.json"),
+                "application/json");
+        stub.start();
+
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+
+        ResourceConfig config = new DefaultResourceConfig(TimeSeriesService.class);
+        config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, true);
+        config.getFeatures().put(ResourceConfig.FEATURE_DISABLE_WADL, true);
+        baseUrl = "http://localhost:" + port;
+        service = HttpServerFactory.create(baseUrl + "/", config);
+        service.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (service != null) {
+            service.stop(0);
+        }
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        InputStream in = TimeSeriesServiceTest.class.getResourceAsStream(name);
+        assertNotNull("Missing test resource " + name, in);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        try {
+            assertEquals(path, 200, connection.getResponseCode());
+            InputStream in = connection.getInputStream();
+            try {
+                return read(in);
+            } finally {
+                in.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return the value of a metric without labels
+     */
+    private static long getMetric(String name) throws IOException {
+        String metrics = new String(get("/metrics"), "UTF-8");
+        for (String line : metrics.split("\n")) {
+            if (line.startsWith(name + " ")) {
+                return Long.parseLong(line.substring(name.length() + 1).trim());
+            }
+        }
+        fail("No metric " + name);
+        return 0;
+    }
+
+    @Test
+    public void testRepeatedMeteogramIsCached() throws IOException {
+        long hits = getMetric("jtimeseries_chart_cache_hits_total");
+        long misses = getMetric("jtimeseries_chart_cache_misses_total");
+
+        String path = "/meteogram?latitude=59.9423&longitude=10.72&format=png";
+        byte[] first = get(path);
+        byte[] second = get(path);
+
+        assertTrue(first.length > 0);
+        assertTrue(Arrays.equals(first, second));
+        assertEquals(misses + 1, getMetric("jtimeseries_chart_cache_misses_total"));
+        assertEquals(hits + 1, getMetric("jtimeseries_chart_cache_hits_total"));
+    }
+}